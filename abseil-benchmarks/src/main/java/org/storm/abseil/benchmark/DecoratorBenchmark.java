@@ -0,0 +1,66 @@
+package org.storm.abseil.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.runnable.DelayRunnable;
+import org.storm.abseil.runnable.MonitorRunnable;
+import org.storm.abseil.supplier.PulseSupplier;
+
+/**
+ * Tasks per second, and time per task, of empty tasks on 4 threads by the decorators stacked on the tasks and their
+ * supplier; none, a client {@link MonitorRunnable}, a zero length {@link DelayRunnable}, a {@link PulseSupplier} of 4
+ * task bursts or all of them.
+ * 
+ * <pre>
+ * $ mvn package
+ * $ java -jar target/benchmarks.jar DecoratorBenchmark
+ * </pre>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecoratorBenchmark {
+  static final int THREADS = 4;
+
+  @Param({ "none", "monitor", "delay", "pulse", "all" })
+  String           _stack;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DecoratorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor process() throws Exception {
+    boolean all = "all".equals(_stack);
+    Runnable task = Tasks.spin(0);
+    if (all || "delay".equals(_stack)) task = new DelayRunnable(task, 0, 1, TimeUnit.MILLISECONDS);
+    if (all || "monitor".equals(_stack)) task = new MonitorRunnable(task, new Monitor());
+
+    Supplier<Runnable> tasks = Tasks.count(Tasks.TASKS, task);
+    if (all || "pulse".equals(_stack)) tasks = PulseSupplier.decorate(tasks, THREADS);
+
+    Abseil abseil = Abseil.builder().minThreads(THREADS).maxThreads(THREADS).build();
+    return Tasks.process(abseil, tasks);
+  }
+}
@@ -0,0 +1,65 @@
+package org.storm.abseil.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.storm.abseil.Monitor;
+
+/**
+ * Cost of recording a task in a shared {@link Monitor} as the number of recording threads grows; the per operation
+ * time should stay flat from 1 to 64 threads.
+ * 
+ * <pre>
+ * $ mvn package
+ * $ java -jar target/benchmarks.jar MonitorBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MonitorBenchmark {
+  final Monitor _monitor = new Monitor();
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MonitorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  private void record() {
+    long startedAt = _monitor.startTask();
+    _monitor.success();
+    _monitor.stopTask(startedAt);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void record1() {
+    record();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void record64() {
+    record();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void record8() {
+    record();
+  }
+}
@@ -0,0 +1,64 @@
+package org.storm.abseil.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+
+/**
+ * Tasks per second, and time per task, of the whole {@link Abseil} pipeline; supplier, dispatch loop, monitoring and
+ * executor. Empty tasks measure the dispatch overhead alone, 1 micro second tasks the overhead relative to a short task
+ * and 100 micro second tasks how the pool scales with threads. Each invocation processes {@link Tasks#TASKS} tasks
+ * through a new abseil, so pool start up and shut down are included but amortized.
+ * 
+ * <pre>
+ * $ mvn package
+ * $ java -jar target/benchmarks.jar PipelineBenchmark
+ * </pre>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+  @Param({ "0", "1", "100" })
+  long     _taskMicros;
+
+  @Param({ "1", "4", "16" })
+  int      _threads;
+
+  Runnable _task;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PipelineBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    _task = Tasks.spin(_taskMicros);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor process() throws Exception {
+    Abseil abseil = Abseil.builder().minThreads(_threads).maxThreads(_threads).build();
+    return Tasks.process(abseil, Tasks.count(Tasks.TASKS, _task));
+  }
+}
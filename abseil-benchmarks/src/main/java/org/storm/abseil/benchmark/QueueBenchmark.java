@@ -0,0 +1,98 @@
+package org.storm.abseil.benchmark;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.storm.abseil.Abseil;
+import org.storm.abseil.AbseilBuilder;
+import org.storm.abseil.Monitor;
+
+/**
+ * Tasks per second, and time per task, of 1 micro second tasks on 4 threads by the work queue between the dispatch
+ * loop and the pool and by what happens when that queue is full; the dispatch thread runs the task
+ * ({@link CallerRunsPolicy}, the default) or waits for room in the queue.
+ * 
+ * <pre>
+ * $ mvn package
+ * $ java -jar target/benchmarks.jar QueueBenchmark
+ * </pre>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueBenchmark {
+  static final int                      THREADS = 4;
+
+  /**
+   * Blocks the dispatch loop until the queue has room for the task
+   */
+  static final RejectedExecutionHandler BLOCK   = (task, executor) -> {
+    try {
+      executor.getQueue().put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted waiting for room in the queue", e);
+    }
+  };
+
+  @Param({ "callerRuns", "block" })
+  String                                _handler;
+
+  @Param({ "linked", "array", "synchronous", "priority" })
+  String                                _queue;
+
+  Runnable                              _task;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(QueueBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    _task = Tasks.spin(1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor process() throws Exception {
+    AbseilBuilder builder = Abseil.builder().minThreads(THREADS).maxThreads(THREADS);
+    builder.rejectedExecutionHandler("block".equals(_handler) ? BLOCK : new CallerRunsPolicy());
+
+    switch (_queue) {
+      case "array":
+        builder.workQueue(new ArrayBlockingQueue<>(THREADS));
+        break;
+      case "synchronous":
+        builder.workQueue(new SynchronousQueue<>());
+        break;
+      case "priority":
+        builder.prioritized(THREADS);
+        break;
+      default:
+        // linked queue of maxThreads capacity
+    }
+    return Tasks.process(builder.build(), Tasks.count(Tasks.TASKS, _task));
+  }
+}
@@ -0,0 +1,155 @@
+package org.storm.abseil.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+
+/**
+ * Dispatch rate of the {@link Abseil#process(java.util.function.Supplier)} loop; the running check, supplier, monitor
+ * and in-flight count of every task. The direct benchmark runs the empty tasks on the processor thread itself so
+ * nothing but the loop is measured. The pooled benchmark runs them on workers that each read the abseil state, adding
+ * the contention of other threads checking the state while the loop does.
+ * <p>
+ * The locked benchmarks are the baseline; the same loop and tasks also read a {@link LockedState} wherever the abseil
+ * read its state when it was guarded by a lock, once per loop iteration and once per pooled task. The difference in
+ * rate is the cost of the lock on the dispatch loop.
+ * </p>
+ *
+ * <pre>
+ * $ mvn package
+ * $ java -jar target/benchmarks.jar StateDispatchBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StateDispatchBenchmark {
+  /**
+   * Runs every task on the thread handing it over
+   */
+  static final class DirectExecutor extends AbstractExecutorService {
+    private volatile boolean _shutdown;
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return _shutdown;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return _shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return _shutdown;
+    }
+
+    @Override
+    public void shutdown() {
+      _shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      _shutdown = true;
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * State guarded by a lock, as the abseil kept it before it was lock free
+   */
+  static final class LockedState {
+    private final Lock _lock  = new ReentrantLock();
+
+    private Object     _state = Boolean.TRUE;
+
+    Object get() {
+      _lock.lock();
+      try {
+        return _state;
+      } finally {
+        _lock.unlock();
+      }
+    }
+  }
+
+  /** workers of the pooled benchmark */
+  static final int POOL_THREADS = 4;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StateDispatchBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  /**
+   * @return the tasks, reading the locked state before each like the locked loop did
+   */
+  static Supplier<Runnable> locked(LockedState state, Supplier<Runnable> tasks) {
+    return () -> {
+      state.get();
+      return tasks.get();
+    };
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor direct() throws Exception {
+    Abseil abseil = new Abseil(new DirectExecutor(), Integer.MAX_VALUE, TimeUnit.MILLISECONDS);
+    return Tasks.process(abseil, Tasks.count(Tasks.TASKS, () -> {}));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor pooled() throws Exception {
+    final Abseil abseil = Abseil.builder().minThreads(POOL_THREADS).maxThreads(POOL_THREADS).build();
+    return Tasks.process(abseil, Tasks.count(Tasks.TASKS, () -> abseil.getState()));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor directLocked() throws Exception {
+    Abseil abseil = new Abseil(new DirectExecutor(), Integer.MAX_VALUE, TimeUnit.MILLISECONDS);
+    LockedState state = new LockedState();
+    return Tasks.process(abseil, locked(state, Tasks.count(Tasks.TASKS, () -> {})));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Tasks.TASKS)
+  public Monitor pooledLocked() throws Exception {
+    final Abseil abseil = Abseil.builder().minThreads(POOL_THREADS).maxThreads(POOL_THREADS).build();
+    final LockedState state = new LockedState();
+    return Tasks.process(abseil, locked(state, Tasks.count(Tasks.TASKS, () -> {
+      abseil.getState();
+      state.get();
+    })));
+  }
+}
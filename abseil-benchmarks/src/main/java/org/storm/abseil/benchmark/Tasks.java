@@ -0,0 +1,56 @@
+package org.storm.abseil.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+
+/**
+ * Synthetic tasks of the pipeline benchmarks. Tasks spin rather than sleep so micro second tasks are actually micro
+ * seconds long.
+ */
+final class Tasks {
+  /** tasks processed by each benchmark invocation; amortizes starting and stopping the abseil */
+  static final int TASKS = 10_000;
+
+  /**
+   * @param tasks
+   *          - number of times to supply the task
+   * @param task
+   *          - to supply
+   * @return supplier of the task, null after the given number of tasks
+   */
+  static Supplier<Runnable> count(int tasks, Runnable task) {
+    int[] supplied = { 0 };
+    return () -> (supplied[0]++ < tasks) ? task : null;
+  }
+
+  /**
+   * Processes the tasks and waits for the abseil to finish
+   * 
+   * @return monitor of the processed tasks
+   */
+  static Monitor process(Abseil abseil, Supplier<Runnable> tasks) throws Exception {
+    return abseil.process(tasks).get(1, TimeUnit.HOURS);
+  }
+
+  /**
+   * @param micros
+   *          - runtime of the task
+   * @return task that busy spins for the given time, an empty task for 0
+   */
+  static Runnable spin(long micros) {
+    if (micros <= 0) return () -> {};
+
+    final long nanos = TimeUnit.MICROSECONDS.toNanos(micros);
+    return () -> {
+      long deadline = System.nanoTime() + nanos;
+      while (System.nanoTime() < deadline) {
+        Thread.onSpinWait();
+      }
+    };
+  }
+
+  private Tasks() {}
+}
@@ -1,13 +1,46 @@
 package org.storm.abseil;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
+import javax.management.ObjectName;
+
+import org.storm.abseil.event.RejectionEvent;
+import org.storm.abseil.event.StateEvent;
+import org.storm.abseil.runnable.BatchRunnable;
+import org.storm.abseil.runnable.CallableRunnable;
+import org.storm.abseil.runnable.DecoratedRunnable;
 import org.storm.abseil.runnable.MonitorRunnable;
+import org.storm.abseil.runnable.RetryRunnable;
+import org.storm.abseil.runnable.TimeBoxedRunnable;
+import org.storm.abseil.supplier.BatchSupplier;
+import org.storm.abseil.supplier.CircuitBreakerSupplier;
+import org.storm.abseil.supplier.RateLimitedSupplier;
+import org.storm.abseil.utils.RateLimiter;
+import org.storm.abseil.utils.TimerWheel;
+import org.storm.abseil.utils.TimerWheel.Timeout;
 
 /**
  * <p>
@@ -32,84 +65,108 @@ public class Abseil {
    */
   private class AbseilTaskExecutor implements Runnable {
     /** executor that does the work of executing the strategy tasks */
-    final ExecutorService _executor;
+    final ExecutorService    _executor;
+
+    /** max runtime passed, the processor stops taking tasks and shuts down */
+    private volatile boolean _expired;
+
+    /** processor stopped taking tasks, an expiry no longer interrupts it */
+    private boolean          _stopped;
 
     private AbseilTaskExecutor(ExecutorService executor) {
       _executor = executor;
     }
 
+    /**
+     * Max runtime passed; wakes the processor to shut down, the drain runs on the processor rather than the timer
+     */
+    private synchronized void expire() {
+      if (_stopped) return;
+      _expired = true;
+      _processor.interrupt();
+    }
+
     /**
      * @return current state of this {@link Abseil}
      */
     private State getState() {
-      _stateLock.lock();
-
-      try {
-        State currentState = _state;
-        return currentState;
-      } finally {
-        _stateLock.unlock();
-      }
+      return _state.get();
     }
 
     /**
-     * setup task resources
+     * Runs unless shutdown before the processor started
      */
     private void init() {
-      if (getState().is(State.INIT)) {
-        transitionTo(State.STARTING);
-        _monitor.before();
-        transitionTo(State.RUNNING);
-      }
+      transition(State.STARTING, State.RUNNING);
+    }
+
+    /**
+     * @return true while running and the max runtime hasn't passed
+     */
+    private boolean isRunning() {
+      return !_expired && getState().is(State.RUNNING);
     }
 
     /**
-     * Processes the {@link RunnableSupplier} by submitting a new command for each {@link Runnable} of the
-     * {@link RunnableSupplier}.
+     * Processes the tasks by submitting each monitored command, a single task or a batch of tasks, until there are none
+     * left or this {@link Abseil} stops running.
      */
     @Override
     public void run() {
       init();
 
       try {
-        Runnable task = null;
-        while (getState().is(State.RUNNING) && (task = _tasks.get()) != null) {
-          _executor.execute(new MonitorRunnable(task, _monitor));
+        Runnable command = null;
+        while (isRunning() && (command = _commands.get()) != null) {
+          try {
+            if (_bulkhead != null) _bulkhead.execute(Abseil.this::dispatch, command);
+            else if (_limiter == null) dispatch(command);
+            else _limiter.execute(Abseil.this::dispatch, command);
+          } catch (RejectedExecutionException e) {
+            throw e;
+          } catch (RuntimeException e) {
+            // failed command run by this thread (CallerRunsPolicy), already recorded by the monitor
+          }
         }
+      } catch (RejectedExecutionException e) {
+        // expected when a blocked dispatch is interrupted by shutdown or the max runtime
+        if (isRunning()) throw e;
       } finally {
+        stopped();
         shutdown();
       }
     }
 
     /**
-     * Shutdown this task.
+     * Shutdown this task; the tasks in-flight drain, those still running at the drain timeout are interrupted.
      * 
-     * @param graceful
-     *          - (true) allow running tasks to finish. (false) stop running tasks.
      * @return if the executor was shutdown
      */
     private boolean shutdown() {
-      if (getState().is(State.RUNNING)) {
-        transitionTo(State.SHUTTING_DOWN);
-
+      // only one caller wins the transition and does the shutdown
+      if (transitionTo(State.SHUTTING_DOWN)) {
         try {
           // stop new tasks from being processed
           _executor.shutdown();
 
-          // terminate timeout by min|average_execution|max
-          long wait = _monitor.getAverage() * _monitor.getActive();
-          long median = Math.min(Math.max(wait, MIN_TERMINATE_WAIT), MAX_TERMINATE_WAIT);
-
-          // Wait for tasks to respond to being cancelled
-          if (!_executor.awaitTermination(median, TimeUnit.MILLISECONDS)) _executor.shutdownNow();
+          // complete the moment the last task drains, interrupt the stragglers and give them a moment to record
+          if (!awaitDrained(_drainTimeout)) {
+            _executor.shutdownNow();
+            awaitDrained(INTERRUPT_GRACE);
+          }
         } catch (InterruptedException e) {
           _executor.shutdownNow();
           return false;
         } finally {
-          transitionTo(State.SHUTDOWN);
+          transition(State.SHUTTING_DOWN, State.SHUTDOWN);
+          release();
+          if (_results != null) _results.complete();
           _monitor.after();
-          _future.onComplete(_monitor);
-          kill();
+          if (_bulkhead != null) _bulkhead.after();
+          _future.complete(_monitor);
+
+          // nothing to kill if never started
+          if (_processor.getState() != Thread.State.NEW) kill();
         }
       }
 
@@ -117,20 +174,65 @@ public class Abseil {
     }
 
     /**
-     * Transitions current state to the desired state
+     * Processor stopped taking tasks; clears the interrupt of an expiry so it doesn't cut the drain short
+     */
+    private synchronized void stopped() {
+      _stopped = true;
+      if (_expired) Thread.interrupted();
+    }
+
+    /**
+     * Transitions from the expected state to the desired state
+     * 
+     * @param expect
+     *          - state that must be current for the transition to happen
+     * @param state
+     *          - to transition to
+     * @return true if transitioned, false if the current state wasn't the expected state
+     */
+    private boolean transition(final State expect, final State state) {
+      if (!expect.canTransitionTo(state)) throw new IllegalStateException(expect + " -> " + state);
+      if (!_state.compareAndSet(expect, state)) return false;
+      if (_recorded != null) StateEvent.record(_recorded, expect, state);
+      return true;
+    }
+
+    /**
+     * Transitions current state to the desired state if the transition is legal from the current state
      * 
      * @param state
      *          - to transition to
-     * @return previous state
+     * @return true if transitioned, false if the transition isn't legal from the current state
      */
-    private State transitionTo(final State state) {
-      _stateLock.lock();
+    private boolean transitionTo(final State state) {
+      State current;
+      do {
+        current = _state.get();
+        if (!current.canTransitionTo(state)) return false;
+      } while (!_state.compareAndSet(current, state));
+      if (_recorded != null) StateEvent.record(_recorded, current, state);
+      return true;
+    }
+  }
+
+  /**
+   * Command handed to the executor, in-flight until it has run
+   */
+  private final class InflightRunnable extends DecoratedRunnable {
+    /** started running, on a worker or on the dispatching thread */
+    private boolean _ran;
+
+    InflightRunnable(Runnable command) {
+      super(command);
+    }
+
+    @Override
+    public void run() {
+      _ran = true;
       try {
-        State prev = _state;
-        _state = state;
-        return prev;
+        runDecorated();
       } finally {
-        _stateLock.unlock();
+        drained();
       }
     }
   }
@@ -145,6 +247,29 @@ public class Abseil {
     SHUTTING_DOWN,
     STARTING;
 
+    /**
+     * Checks the legality of a transition from this state; INIT -> STARTING -> RUNNING -> SHUTTING_DOWN -> SHUTDOWN.
+     * Shutting down may also start before running, in which case the abseil never runs.
+     * 
+     * @param state
+     *          - to transition to
+     * @return true if this state can transition to the argument state, false otherwise
+     */
+    boolean canTransitionTo(State state) {
+      switch (this) {
+        case INIT:
+          return state == STARTING || state == SHUTTING_DOWN;
+        case STARTING:
+          return state == RUNNING || state == SHUTTING_DOWN;
+        case RUNNING:
+          return state == SHUTTING_DOWN;
+        case SHUTTING_DOWN:
+          return state == SHUTDOWN;
+        default:
+          return false;
+      }
+    }
+
     /**
      * Checks this state against the provided state
      * 
@@ -157,17 +282,69 @@ public class Abseil {
     }
   }
 
-  /** period sleep duration for the timeout daemon */
-  private static final Long _timeoutSleep      = TimeUnit.MILLISECONDS.toMillis(500);
+  /** abseils that are processing; shutdown by a single JVM shutdown hook */
+  private static final Set<Abseil>   _live              = ConcurrentHashMap.newKeySet();
+
+  /** longest wait for a signal before checking the executor terminated, a terminated executor doesn't signal */
+  static final long                  DRAIN_CHECK_NANOS  = TimeUnit.MILLISECONDS.toNanos(10);
 
-  static final Long         MAX_TERMINATE_WAIT = TimeUnit.SECONDS.toMillis(5);
+  /** default time in-flight tasks have to drain once shutting down before they are interrupted */
+  public static final long           DRAIN_TIMEOUT      = TimeUnit.SECONDS.toMillis(3);
 
-  static final Long         MIN_TERMINATE_WAIT = TimeUnit.SECONDS.toMillis(3);
+  /** time interrupted tasks have to record their outcome before the monitor completes, millis */
+  static final long                  INTERRUPT_GRACE    = 100;
+
+  /** numbers the unnamed abseils */
+  private static final AtomicInteger _sequence          = new AtomicInteger();
+
+  /** default most results of callables waiting to be consumed */
+  public static final int            RESULTS_CAPACITY   = 1024;
+
+  static {
+    // short circuit shutdown of all live abseils
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      _live.parallelStream().forEach(Abseil::shutdown);
+    }, "Abseil - shutdown"));
+  }
+
+  /**
+   * @return abseils that are processing
+   */
+  static Set<Abseil> live() {
+    return Collections.unmodifiableSet(_live);
+  }
+
+  /**
+   * @param executor
+   *          - of the tasks
+   * @return most threads recording the tasks at once, the workers and the processor running rejected tasks;
+   *         {@link Integer#MAX_VALUE} when the executor doesn't tell
+   */
+  private static int recorders(ExecutorService executor) {
+    long workers = Integer.MAX_VALUE;
+    if (executor instanceof ThreadPoolExecutor) workers = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+    if (executor instanceof ForkJoinPool) workers = ((ForkJoinPool) executor).getParallelism();
+    return (int) Math.min(Integer.MAX_VALUE, workers + 1);
+  }
 
   public static AbseilBuilder builder() {
     return new AbseilBuilder();
   }
 
+  /**
+   * Runs the tasks on a work-stealing pool with a worker per available processor. Meant for CPU bound tasks given as a
+   * {@link Spliterator}; see {@link #process(Spliterator)}.
+   * 
+   * @param maxRuntime
+   *          - when this {@link Abseil} stops running if the tasks are done or not
+   * @param unit
+   *          - of the maxRuntime
+   * @return a fork join {@link Abseil}
+   */
+  public static Abseil forkJoinAbseil(long maxRuntime, TimeUnit unit) {
+    return builder().forkJoin().maxRuntime(maxRuntime, unit).build();
+  }
+
   /**
    * At any point, at most tasks will be actively processing. If additional tasks are submitted when all threads are
    * active, they will wait in the queue until a thread is available. If any thread terminates due to a failure during
@@ -233,26 +410,94 @@ public class Abseil {
     return builder().minThreads(1).maxThreads(1).maxRuntime(maxRuntime, unit).build();
   }
 
-  private final AbseilTaskExecutor _executor;
+  /**
+   * Runs every task on its own virtual thread (platform thread on JVMs without virtual threads). At any point, at most
+   * maxConcurrent tasks will be running; the supplier isn't asked for more tasks until a running task completes. Meant
+   * for blocking I/O bound tasks where far more concurrent tasks are needed than platform threads can provide.
+   * 
+   * @param maxConcurrent
+   *          - maximum number of running tasks
+   * @param maxRuntime
+   *          - when this {@link Abseil} stops running if the tasks are done or not
+   * @param unit
+   *          - of the maxRuntime
+   * @return a virtual task {@link Abseil}
+   */
+  public static Abseil virtualTaskAbseil(int maxConcurrent, long maxRuntime, TimeUnit unit) {
+    return builder().virtualThreads().maxThreads(maxConcurrent).maxRuntime(maxRuntime, unit).build();
+  }
+
+  /** most tasks handed to a worker at a time */
+  private int                               _batchSize = 1;
+
+  /** decorates the tasks with a circuit breaker, null when not breaking */
+  private UnaryOperator<Supplier<Runnable>> _breaker;
 
-  private final AbseilFuture       _future;
+  /** isolates the tasks in lanes, null when there are no lanes */
+  private Bulkhead                          _bulkhead;
+
+  /** monitored commands to execute; null when there are no more */
+  private Supplier<Runnable>                _commands;
+
+  private final Lock                        _drainLock = new ReentrantLock();
+
+  /** signalled when the last in-flight task drains while shutting down */
+  private final Condition                   _drained   = _drainLock.newCondition();
+
+  /** millis in-flight tasks have to drain once shutting down */
+  private long                              _drainTimeout;
+
+  private final AbseilTaskExecutor          _executor;
+
+  private final AbseilFuture                _future;
+
+  /** tasks handed to the executor that haven't finished running */
+  private final AtomicInteger               _inflight  = new AtomicInteger();
+
+  /** adapts the in-flight task limit, null when concurrency is fixed */
+  private AdaptiveLimiter                   _limiter;
+
+  /** name the limiter is registered under with JMX while running, null when not registered */
+  private volatile ObjectName               _limiterMBean;
+
+  /** name the monitor is registered under with JMX while running, null when not registered */
+  private volatile ObjectName               _mbean;
 
   /** max runtime millis the abseil should run */
-  private final Long               _maxRuntime;
+  private final Long                        _maxRuntime;
 
   /** monitor task executions */
-  private final Monitor            _monitor;
+  private final Monitor                     _monitor;
+
+  /** names the abseil in JMX and the metrics */
+  private String                            _name;
 
   /** abseil process that is run apart from the main thread and can be stopped if the abseil task is unresponsive */
-  private Thread                   _processor;
+  private Thread                            _processor;
+
+  /** name the tasks and state transitions are recorded under as flight recorder events, null when not recorded */
+  private String                            _recorded;
+
+  /** max runtime deadline in the shared timer wheel */
+  private volatile Timeout                  _timeout;
+
+  /** results of the callables, null when processing runnables */
+  private AbseilResults<?>                  _results;
+
+  /** paces the tasks, null when not rate limited */
+  private RateLimiter                       _rateLimiter;
+
+  /** retries due to be dispatched */
+  private final Queue<Runnable>             _retries   = new ConcurrentLinkedQueue<>();
 
-  /** state of this abseil */
-  private State                    _state     = State.INIT;
+  /** retries failed tasks, null when not retrying */
+  private RetryRunnable.Policy              _retryPolicy;
 
-  /** locks state mutation to prevent overlapping transitions */
-  private final Lock               _stateLock = new ReentrantLock();
+  /** time budget of each task, nanos; 0 when unlimited */
+  private long                              _taskTimeout;
 
-  private Supplier<Runnable>       _tasks;
+  /** state of this abseil, transitioned lock free */
+  private final AtomicReference<State>      _state     = new AtomicReference<>(State.INIT);
 
   /**
    * Builder CTOR
@@ -261,6 +506,16 @@ public class Abseil {
    */
   Abseil(AbseilBuilder builder) {
     this(builder.getExecutorService(), builder.getMaxRuntimeMillis(), TimeUnit.MILLISECONDS);
+    _batchSize = builder.getBatchSize();
+    _drainTimeout = builder.getDrainTimeoutMillis();
+    _breaker = builder.getCircuitBreaker(_monitor);
+    _bulkhead = builder.getBulkhead(_monitor);
+    _limiter = builder.getLimiter();
+    _rateLimiter = builder.getRateLimiter();
+    _taskTimeout = builder.getTaskTimeoutNanos();
+    _retryPolicy = builder.getRetryPolicy();
+    if (builder.getName() != null) _name = builder.getName();
+    if (builder.isFlightRecorder()) record();
   }
 
   /**
@@ -278,10 +533,127 @@ public class Abseil {
     _maxRuntime = unit.toMillis(maxRuntime);
     _executor = new AbseilTaskExecutor(executorService);
     _processor = new Thread(_executor, "Abseil - processor");
-    _monitor = new Monitor();
+    _drainTimeout = DRAIN_TIMEOUT;
+    _monitor = new Monitor(recorders(executorService));
+    _name = "abseil-" + _sequence.incrementAndGet();
     _future = new AbseilFuture(this);
   }
 
+  /**
+   * Waits for the in-flight tasks to drain; a terminated executor has drained even if it discarded tasks
+   * 
+   * @param millis
+   *          - most time to wait
+   * @return true if drained, false if tasks are still running
+   */
+  private boolean awaitDrained(long millis) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    _drainLock.lock();
+    try {
+      while (_inflight.get() > 0 && !_executor._executor.isTerminated()) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) return false;
+        _drained.awaitNanos(Math.min(remaining, DRAIN_CHECK_NANOS));
+      }
+      return true;
+    } finally {
+      _drainLock.unlock();
+    }
+  }
+
+  /**
+   * Hands a command to the executor, in-flight until it has run
+   * 
+   * @throws RejectedExecutionException
+   *           if rejected by the executor
+   */
+  private void dispatch(Runnable command) {
+    // a shutdown executor may discard rather than reject, a lane would lose the task
+    if (_executor._executor.isShutdown()) throw new RejectedExecutionException("Abseil " + _name + " is shutdown");
+
+    InflightRunnable inflight = new InflightRunnable(command);
+    _inflight.incrementAndGet();
+    try {
+      _executor._executor.execute(inflight);
+    } catch (RejectedExecutionException e) {
+      if (!inflight._ran) drained();
+      throw e;
+    }
+  }
+
+  /**
+   * Counts down an in-flight task, signalling the shutdown when the last one drains
+   */
+  private void drained() {
+    if (_inflight.decrementAndGet() > 0 || getState().is(State.RUNNING)) return;
+
+    _drainLock.lock();
+    try {
+      _drained.signalAll();
+    } finally {
+      _drainLock.unlock();
+    }
+  }
+
+  /**
+   * @return the lanes the tasks are isolated in, null when there are no lanes
+   * @see AbseilBuilder#lanes(java.util.function.Function)
+   */
+  public Bulkhead getBulkhead() {
+    return _bulkhead;
+  }
+
+  /**
+   * @return most tasks this abseil runs at a time; the current limit when adaptive
+   */
+  int getConcurrency() {
+    if (_limiter != null) return _limiter.getLimit();
+
+    ExecutorService executor = _executor._executor;
+    if (executor instanceof ThreadPoolExecutor) return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+    if (executor instanceof VirtualTaskExecutor) return ((VirtualTaskExecutor) executor).getMaxConcurrent();
+    if (executor instanceof ForkJoinPool) return ((ForkJoinPool) executor).getParallelism();
+    return 1;
+  }
+
+  /**
+   * @return monitor of the tasks, as they are processed
+   */
+  Monitor getMonitor() {
+    return _monitor;
+  }
+
+  /**
+   * @return name of this abseil in JMX and the metrics
+   * @see AbseilBuilder#name(String)
+   */
+  public String getName() {
+    return _name;
+  }
+
+  /**
+   * @return tasks handed to the executor that haven't finished running
+   */
+  public int getInflight() {
+    return _inflight.get();
+  }
+
+  /**
+   * @return the adaptive concurrency limiter and its decisions, null when concurrency is fixed
+   * @see AbseilBuilder#adaptiveConcurrency(int, int)
+   */
+  public AdaptiveLimiter getLimiter() {
+    return _limiter;
+  }
+
+  /**
+   * @return the task rate limiter, to change the rate while running; null when not rate limited
+   * @see AbseilBuilder#rateLimit(double, int)
+   */
+  public RateLimiter getRateLimiter() {
+    return _rateLimiter;
+  }
+
   /**
    * @return current {@link State} of this {@link Abseil}
    */
@@ -304,10 +676,78 @@ public class Abseil {
    * @param runnable
    * @see #process(Supplier)
    */
-  public Future<Monitor> process(final Runnable runnable) {
+  public CompletableFuture<Monitor> process(final Runnable runnable) {
     return process(() -> runnable);
   }
 
+  /**
+   * <p>
+   * Process the batches of the {@link BatchSupplier}, asking for at most {@link AbseilBuilder#batchSize(int)} tasks at
+   * a time. Each batch is run by a single worker, one task after the other, and every task is monitored, time boxed and
+   * recorded like a single task. Processing terminates under the same conditions as {@link #process(Supplier)}; a null
+   * or empty batch ends the tasks.
+   * </p>
+   * 
+   * @param batches
+   *          - of tasks to process
+   */
+  public CompletableFuture<Monitor> process(final BatchSupplier batches) {
+    return start(() -> {
+      List<Runnable> batch = batches.get(_batchSize);
+      if (batch == null || batch.isEmpty()) return null;
+      if (_rateLimiter != null && !_rateLimiter.acquire(batch.size())) return null;
+      if (_taskTimeout > 0) {
+        List<Runnable> boxed = new ArrayList<>(batch.size());
+        for (Runnable task : batch) {
+          boxed.add(timeBox(task));
+        }
+        batch = boxed;
+      }
+      return new BatchRunnable(batch, _monitor, _recorded);
+    });
+  }
+
+  /**
+   * <p>
+   * Process the tasks of the {@link Spliterator} with work-stealing; requires {@link AbseilBuilder#forkJoin()}. The
+   * tasks are split in halves that idle workers steal until each worker has a few ranges to run, so there is no single
+   * dispatch thread or shared queue. Every task is monitored and a failed task is recorded without stopping the rest.
+   * </p>
+   * <p>
+   * Processing terminates when the tasks are done or under the same conditions as {@link #process(Supplier)}; the
+   * workers stop splitting and running tasks once this {@link Abseil} stops running.
+   * </p>
+   * 
+   * @param tasks
+   *          - to process, such as {@link java.util.List#spliterator()} or {@link java.util.stream.Stream#spliterator()}
+   * @throws IllegalStateException
+   *           if this {@link Abseil} wasn't built with {@link AbseilBuilder#forkJoin()}
+   */
+  public CompletableFuture<Monitor> process(final Spliterator<? extends Runnable> tasks) {
+    if (!(_executor._executor instanceof ForkJoinPool)) {
+      throw new IllegalStateException("Spliterators require a fork join abseil, see AbseilBuilder.forkJoin()");
+    }
+
+    final int parallelism = ((ForkJoinPool) _executor._executor).getParallelism();
+    final SpliteratorAction root = new SpliteratorAction(tasks, _monitor, _executor::isRunning,
+        SpliteratorAction.threshold(tasks, parallelism));
+
+    // the root is the only command, the processor waits for it before shutting down
+    return start(new Supplier<Runnable>() {
+      private boolean _submitted;
+
+      @Override
+      public Runnable get() {
+        if (_submitted) {
+          root.quietlyJoin();
+          return null;
+        }
+        _submitted = true;
+        return root::invoke;
+      }
+    });
+  }
+
   /**
    * <p>
    * Process the {@link Supplier<Runnable}s. Processing of tasks will terminate under 4 conditions...
@@ -318,35 +758,274 @@ public class Abseil {
    * <li>The client calls {@link #shutdown()}</li>
    * <li>The program is forcefully terminated; example CNTRL + C.
    * </ul>
+   * <p>
+   * When the {@link AbseilBuilder#batchSize(int)} is more than 1 the tasks are processed in batches; see
+   * {@link #process(BatchSupplier)}.
+   * </p>
+   * <p>
+   * When the {@link AbseilBuilder#circuitBreaker(double, int, long, TimeUnit)} is set tasks aren't pulled from the
+   * supplier while the breaker is open.
+   * </p>
+   * <p>
+   * An abseil processes once; every process method throws an {@link IllegalStateException} if this abseil has already
+   * processed or has been shutdown.
+   * </p>
    */
-  public Future<Monitor> process(final Supplier<Runnable> tasks) {
-    _tasks = tasks;
-    final long startAt = System.currentTimeMillis();
+  public CompletableFuture<Monitor> process(final Supplier<Runnable> tasks) {
+    final Supplier<Runnable> breaking = (_breaker == null) ? tasks : _breaker.apply(tasks);
+    if (_batchSize > 1) return process(BatchSupplier.of(breaking));
 
-    // start timeout daemon
-    Thread timeoutDaemon = new Thread(() -> {
-      try {
-        while ((System.currentTimeMillis() - startAt) < _maxRuntime) {
-          Thread.sleep(_timeoutSleep);
+    final Supplier<Runnable> supplier = (_rateLimiter == null) ? breaking : new RateLimitedSupplier(breaking,
+        _rateLimiter);
+    return start(() -> {
+      Runnable task = supplier.get();
+      if (task == null) return null;
+
+      // a probe is decided by its time box
+      Runnable command = new MonitorRunnable(CircuitBreakerSupplier.decorateTask(task, this::timeBox), _monitor,
+          _recorded);
+      if (_bulkhead != null) command = _bulkhead.route(CircuitBreakerSupplier.unwrap(task), command);
+      return (_retryPolicy == null) ? command : new RetryRunnable(command, _retryPolicy, this::resubmit, _monitor);
+    });
+  }
+
+  /**
+   * Process the {@link Callable}s of the supplier like {@link #process(Supplier)}, streaming their results.
+   * 
+   * @param tasks
+   *          - callables to process, null when there are no more
+   * @return stream of the results, at most {@link #RESULTS_CAPACITY} waiting to be consumed
+   * @see #processCallables(Supplier, int)
+   */
+  public <T> AbseilResults<T> processCallables(final Supplier<Callable<T>> tasks) {
+    return processCallables(tasks, RESULTS_CAPACITY);
+  }
+
+  /**
+   * <p>
+   * Process the {@link Callable}s of the supplier like {@link #process(Supplier)}, streaming their results. The
+   * results are buffered up to the capacity; once it is full the workers block until results are consumed so the tasks
+   * are processed only as fast as the results are consumed. Every call is monitored, failed calls are recorded in the
+   * {@link Monitor} and have no result.
+   * </p>
+   * <p>
+   * A failed call ends with no result rather than an error, so calls can't be retried or probe a circuit breaker, and
+   * lanes key runnables rather than callables; an abseil built with any of them can't process callables.
+   * </p>
+   * 
+   * @param tasks
+   *          - callables to process, null when there are no more
+   * @param capacity
+   *          - most results waiting to be consumed
+   * @return stream of the results, consumed as an {@link java.util.Iterator} or a
+   *         {@link java.util.concurrent.Flow.Publisher}
+   * @throws IllegalStateException
+   *           if this abseil retries, breaks or routes tasks to lanes, or has already processed or been shutdown
+   */
+  public <T> AbseilResults<T> processCallables(final Supplier<Callable<T>> tasks, int capacity) {
+    if (_retryPolicy != null) throw new IllegalStateException("Callables can't be retried");
+    if (_breaker != null) throw new IllegalStateException("Callables can't be broken by a circuit breaker");
+    if (_bulkhead != null) throw new IllegalStateException("Callables can't be routed to lanes");
+
+    final AbseilResults<T> results = new AbseilResults<>(capacity, _monitor);
+    results.setMonitor(start(() -> {
+      if (_rateLimiter != null && !_rateLimiter.acquire()) return null;
+      Callable<T> task = tasks.get();
+      return (task == null) ? null : timeBox(new CallableRunnable<>(task, _monitor, results::publish, _recorded));
+    }, results));
+    return results;
+  }
+
+  /**
+   * Dispatches due retries ahead of the commands and, once the commands run out, waits for the pending retries and the
+   * tasks queued in lanes
+   * 
+   * @param commands
+   *          - monitored commands to execute, null when there are no more
+   * @return the commands and their retries, null when there are no more of either and nothing is queued
+   */
+  private Supplier<Runnable> draining(final Supplier<Runnable> commands) {
+    return new Supplier<Runnable>() {
+      private boolean _exhausted;
+
+      @Override
+      public Runnable get() {
+        for (;;) {
+          // lanes with tasks handed back while no worker was free, and none running, are drained by the dispatch loop
+          if (_bulkhead != null) _bulkhead.drain(Abseil.this::dispatch);
+
+          Runnable retry = _retries.poll();
+          if (retry != null) return retry;
+
+          if (!_exhausted) {
+            Runnable command = commands.get();
+            if (command != null) return command;
+            _exhausted = true;
+          }
+
+          // in-flight first; a failing task schedules its retry, and a lane task takes the next task of its lane,
+          // before it stops being in-flight
+          long pending = _inflight.get();
+          if (_retryPolicy != null) pending += _retryPolicy.getPending();
+          if (_bulkhead != null) pending += _bulkhead.getQueued();
+          if (pending == 0 || !getState().is(State.RUNNING)) return null;
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+          if (Thread.currentThread().isInterrupted()) return null;
         }
-        shutdown();
-      } catch (InterruptedException e) {
-        kill();
       }
-    }, "Abseil - timeout");
-    timeoutDaemon.setDaemon(true);
-    timeoutDaemon.start();
+    };
+  }
 
-    // setup short circuit shutdown
-    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-      shutdown();
-    }));
+  /**
+   * Gives up the queued retries, they aren't dispatched once the abseil stopped running
+   */
+  private void dropRetries() {
+    for (Runnable retry = _retries.poll(); retry != null; retry = _retries.poll()) {
+      ((RetryRunnable) retry).drop();
+    }
+  }
+
+  /**
+   * Releases what was registered to run; the timeout, the limiter updates, the live abseils, the JMX beans and the
+   * queued retries. Safe to call more than once.
+   */
+  private void release() {
+    if (_timeout != null) _timeout.cancel();
+    if (_limiter != null) _limiter.stop();
+    _live.remove(this);
+    AbseilMetrics.unregister(_mbean);
+    AbseilMetrics.unregister(_limiterMBean);
+    dropRetries();
+  }
+
+  /**
+   * Queues a due retry to be dispatched ahead of new tasks, or gives it up once the abseil stopped running
+   * 
+   * @param retry
+   *          - {@link RetryRunnable} that is due
+   */
+  private void resubmit(Runnable retry) {
+    _retries.add(retry);
+    // stopped while queueing may have missed it
+    if (!getState().is(State.RUNNING)) dropRetries();
+  }
+
+  /**
+   * Start processing the commands
+   * 
+   * @param commands
+   *          - monitored commands to execute, null when there are no more
+   * @throws IllegalStateException
+   *           if this abseil has already processed or has been shutdown
+   */
+  private CompletableFuture<Monitor> start(final Supplier<Runnable> commands) {
+    return start(commands, null);
+  }
+
+  /**
+   * Start processing the commands
+   * 
+   * @param commands
+   *          - monitored commands to execute, null when there are no more
+   * @param results
+   *          - of the commands to complete on shutdown, null when processing runnables
+   * @throws IllegalStateException
+   *           if this abseil has already processed or has been shutdown
+   */
+  private CompletableFuture<Monitor> start(final Supplier<Runnable> commands, final AbseilResults<?> results) {
+    if (!_executor.transition(State.INIT, State.STARTING)) {
+      throw new IllegalStateException("Abseil " + _name + " is " + getState() + ", an abseil processes only once");
+    }
+
+    _results = results;
+    _commands = (_retryPolicy == null && _bulkhead == null) ? commands : draining(commands);
+    _monitor.before();
+    if (_bulkhead != null) _bulkhead.before();
+    _live.add(this);
+    _mbean = AbseilMetrics.register(this);
+    _limiterMBean = AbseilMetrics.registerLimiter(this);
+    if (_limiter != null) _limiter.start(_monitor);
+
+    // shutdown on the processor rather than the timer thread, tasks may take seconds to drain
+    _timeout = TimerWheel.shared().schedule(_executor::expire, _maxRuntime, TimeUnit.MILLISECONDS);
+
+    // shutdown while starting may have missed what was just registered
+    if (!getState().is(State.STARTING)) {
+      release();
+      return _future;
+    }
 
     // start processing
     _processor.start();
     return _future;
   }
 
+  /**
+   * Process the tasks of a reactive {@link Flow.Publisher}; the tasks are requested only as workers are free to run
+   * them. Processing terminates when the publisher completes or fails or under the same conditions as
+   * {@link #process(Supplier)}.
+   * 
+   * @param tasks
+   *          - publisher of the tasks to process
+   * @see #subscriber()
+   */
+  public CompletableFuture<Monitor> subscribe(final Flow.Publisher<? extends Runnable> tasks) {
+    AbseilSubscriber subscriber = subscriber();
+    tasks.subscribe(subscriber);
+    return subscriber.getMonitor();
+  }
+
+  /**
+   * Starts processing the tasks of a subscriber, for a {@link Flow.Publisher} to be subscribed to. The subscriber
+   * requests a task for every free worker and another as each task completes; see {@link AbseilSubscriber}. When the
+   * {@link AbseilBuilder#circuitBreaker(double, int, long, TimeUnit)} is set tasks aren't taken from the subscriber
+   * while the breaker is open.
+   * <p>
+   * A worker's slot is freed when its task completes, while a retried task runs again and a task in a lane may wait
+   * for, or be rejected by, its lane; an abseil that retries or routes tasks to lanes can't subscribe.
+   * </p>
+   * 
+   * @return subscriber of the tasks to process
+   * @throws IllegalStateException
+   *           if this abseil retries or routes tasks to lanes, or has already processed or been shutdown
+   * @see #subscribe(Flow.Publisher)
+   */
+  public AbseilSubscriber subscriber() {
+    if (_retryPolicy != null) throw new IllegalStateException("Subscribed tasks can't be retried");
+    if (_bulkhead != null) throw new IllegalStateException("Subscribed tasks can't be routed to lanes");
+
+    final AbseilSubscriber subscriber = new AbseilSubscriber(this::getConcurrency);
+    final Supplier<Runnable> tasks = subscriber::next;
+    final Supplier<Runnable> breaking = (_breaker == null) ? tasks : _breaker.apply(tasks);
+    subscriber.setMonitor(start(() -> {
+      if (_rateLimiter != null && !_rateLimiter.acquire()) return null;
+      Runnable task = breaking.get();
+      return (task == null) ? null : new MonitorRunnable(CircuitBreakerSupplier.decorateTask(task, this::timeBox),
+          _monitor, _recorded);
+    }));
+    return subscriber;
+  }
+
+  /**
+   * @param task
+   *          - to time box
+   * @return the task decorated with the task time budget, the task itself when unlimited
+   */
+  private Runnable timeBox(Runnable task) {
+    return (_taskTimeout > 0) ? new TimeBoxedRunnable(task, _taskTimeout, TimeUnit.NANOSECONDS, _monitor) : task;
+  }
+
+  /**
+   * Records the tasks, state transitions and rejected tasks of this abseil as flight recorder events
+   */
+  private void record() {
+    _recorded = _name;
+    if (_executor._executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor executor = (ThreadPoolExecutor) _executor._executor;
+      executor.setRejectedExecutionHandler(RejectionEvent.recorded(executor.getRejectedExecutionHandler(), _name));
+    }
+  }
+
   /**
    * Shutdown this abseil
    */
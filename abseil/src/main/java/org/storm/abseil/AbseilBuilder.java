@@ -1,13 +1,25 @@
 package org.storm.abseil;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.storm.abseil.runnable.RetryRunnable;
+import org.storm.abseil.supplier.CircuitBreakerSupplier;
+import org.storm.abseil.utils.RateLimiter;
 
 /**
  * Builds {@link Abseil}s with logical defaults but can be customized to a clients requirements.
@@ -16,31 +28,246 @@ import java.util.concurrent.TimeUnit;
  */
 public class AbseilBuilder {
 
-  private ThreadFactory            _factory;
-  private RejectedExecutionHandler _handler;
-  private Long                     _keepAliveMillis;
-  private Long                     _maxRuntimeMillis;
-  private Integer                  _minThreads, _maxThreads;
-  private BlockingQueue<Runnable>  _queue;
+  private Integer                    _adaptiveMin, _adaptiveMax;
+  private Integer                    _batchSize;
+  private Long                       _breakerCoolDownNanos;
+  private Double                     _breakerRate;
+  private Integer                    _breakerWindow;
+  private Long                       _drainTimeoutMillis;
+  private ThreadFactory              _factory;
+  private boolean                    _flightRecorder;
+  private boolean                    _forkJoin;
+  private RejectedExecutionHandler   _handler;
+  private Long                       _keepAliveMillis;
+  private Function<Runnable, String> _laneKey;
+  private Map<String, int[]>         _lanes;
+  private Long                       _maxRuntimeMillis;
+  private Integer                    _minThreads, _maxThreads;
+  private String                     _name;
+  private Integer                    _priorityCapacity;
+  private BlockingQueue<Runnable>    _queue;
+  private Double                     _rate;
+  private Integer                    _rateBurst;
+  private RetryRunnable.Policy       _retry;
+  private Long                       _taskTimeoutNanos;
+  private boolean                    _virtualThreads;
 
   public AbseilBuilder() {}
 
-  public Abseil build() {
-    return new Abseil(this);
+  /**
+   * Continuously resizes the number of in-flight tasks between min and max, driven by the latency and failure rate
+   * observed by the {@link Monitor}, to find the most concurrency the tasks' dependencies take before slowing down.
+   * Starts at min and replaces {@link #minThreads(int)} and {@link #maxThreads(int)}.
+   * 
+   * @param min
+   *          - lowest concurrency
+   * @param max
+   *          - highest concurrency
+   * @return this builder for further configuration
+   * @see AdaptiveLimiter
+   */
+  public AbseilBuilder adaptiveConcurrency(int min, int max) {
+    _adaptiveMin = min;
+    _adaptiveMax = max;
+    return this;
+  }
+
+  /**
+   * Runs the tasks on a work-stealing {@link ForkJoinPool} of {@link #maxThreads(int)} workers, defaulting to the
+   * available processors. Meant for CPU bound tasks given as a {@link java.util.Spliterator} to
+   * {@link Abseil#process(java.util.Spliterator)}, where idle workers steal halves of the remaining tasks rather than
+   * waiting on the single dispatch thread.
+   * <p>
+   * Tasks from {@link Abseil#process(java.util.function.Supplier)} are submitted to the pool's unbounded queues; bound
+   * them with {@link #adaptiveConcurrency(int, int)} or {@link #rateLimit(double, int)}.
+   * </p>
+   * 
+   * @return this builder for further configuration
+   */
+  public AbseilBuilder forkJoin() {
+    _forkJoin = true;
+    return this;
+  }
+
+  /**
+   * Time the in-flight tasks have to drain once the abseil shuts down, because its tasks ran out, its max runtime
+   * passed or it was shut down; tasks still running after are interrupted. The monitor completes the moment the last
+   * task drains, or shortly after the interrupt; a task ignoring the interrupt may record its outcome after the monitor
+   * completed. Defaults to {@link Abseil#DRAIN_TIMEOUT}.
+   * 
+   * @param time
+   *          - tasks have to drain, 0 to interrupt them right away
+   * @param unit
+   *          - of time
+   * @return this builder for further configuration
+   */
+  public AbseilBuilder drainTimeout(long time, TimeUnit unit) {
+    if (time < 0) throw new IllegalArgumentException("time must be >= 0");
+    _drainTimeoutMillis = unit.toMillis(time);
+    return this;
+  }
+
+  /**
+   * Records the abseil as Java Flight Recorder events, category Abseil: each monitored task with its runtime, outcome
+   * and time queued before it started, each state transition and each task rejected by the executor and handled by its
+   * {@link #rejectedExecutionHandler(RejectedExecutionHandler)}. Nothing is recorded, and nothing is paid, unless set;
+   * once set the events cost next to nothing while no recording has them enabled.
+   * 
+   * @return this builder for further configuration
+   * @see org.storm.abseil.event.TaskEvent
+   */
+  public AbseilBuilder flightRecorder() {
+    _flightRecorder = true;
+    return this;
   }
 
   ExecutorService getExecutorService() {
+    if (_forkJoin) {
+      int parallelism = (_maxThreads == null || _maxThreads <= 0) ? Runtime.getRuntime().availableProcessors()
+          : _maxThreads;
+      ForkJoinWorkerThreadFactory factory = (pool) -> {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("Abseil - fork join " + worker.getPoolIndex());
+        return worker;
+      };
+      return new ForkJoinPool(parallelism, factory, null, false);
+    }
+
     // capture and set executor attributes
     int minThreads = (_minThreads == null || _minThreads <= 0) ? 1 : _minThreads;
     int maxThreads = (_maxThreads == null || _maxThreads <= 0) ? 1 : _maxThreads;
+    if (_adaptiveMax != null) minThreads = maxThreads = _adaptiveMax;
+
+    if (_virtualThreads) return new VirtualTaskExecutor(maxThreads, _factory);
+
     long keepAliveMillis = (_keepAliveMillis == null || _keepAliveMillis <= 0) ? TimeUnit.SECONDS.toMillis(1)
         : _keepAliveMillis;
     BlockingQueue<Runnable> queue = (_queue == null) ? new LinkedBlockingQueue<>(maxThreads) : _queue;
+    if (_priorityCapacity != null) queue = new PriorityTaskQueue(_priorityCapacity);
     ThreadFactory factory = (_factory == null) ? ((r) -> new Thread(r, "Abseil - task")) : _factory;
     RejectedExecutionHandler handler = (_handler == null) ? new CallerRunsPolicy() : _handler;
 
-    return new ThreadPoolExecutor(minThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, queue, factory,
-        handler);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(minThreads, maxThreads, keepAliveMillis,
+        TimeUnit.MILLISECONDS, queue, factory, handler);
+
+    // the limiter bounds the in-flight tasks, idle threads beyond the limit time out
+    if (_adaptiveMax != null) executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Most tasks handed to a worker at a time. Batching amortizes the queue handoff and wrapping of each task over the
+   * batch; for many short tasks where dispatch overhead dominates. Defaults to 1, no batching.
+   * <p>
+   * A batch is dispatched as one unit, so batching can't be combined with what dispatches tasks one at a time;
+   * {@link #lanes(Function)}, {@link #retry(int, long, long, TimeUnit)} and {@link #prioritized(int)}.
+   * </p>
+   * 
+   * @param batchSize
+   * @return this builder for further configuration
+   * @see Abseil#process(org.storm.abseil.supplier.BatchSupplier)
+   */
+  public AbseilBuilder batchSize(int batchSize) {
+    _batchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * @return a new abseil
+   * @throws IllegalStateException
+   *           if batching is combined with lanes, retries or prioritized tasks, see {@link #batchSize(int)}
+   */
+  public Abseil build() {
+    if (getBatchSize() > 1) {
+      if (_lanes != null) throw new IllegalStateException("Batched tasks can't be routed to lanes");
+      if (_retry != null) throw new IllegalStateException("Batched tasks can't be retried");
+      if (_priorityCapacity != null) throw new IllegalStateException("Batched tasks can't be prioritized");
+    }
+    return new Abseil(this);
+  }
+
+  /**
+   * Stops pulling tasks from the supplier while they fail; once the failure rate of the last window of completed tasks
+   * reaches the threshold no tasks are dispatched for the cool-down, then a few probe tasks are dispatched and
+   * processing resumes if they all succeed. Task outcomes are those recorded by the {@link Monitor}. Callables aren't
+   * broken, see {@link Abseil#processCallables(java.util.function.Supplier, int)}.
+   * 
+   * @param failureRate
+   *          - 0.0 to 1.0, of the window that opens the breaker
+   * @param window
+   *          - number of most recently completed tasks the failure rate is taken over
+   * @param coolDown
+   *          - time no tasks are dispatched once the breaker opens
+   * @param unit
+   *          - of coolDown
+   * @return this builder for further configuration
+   * @see CircuitBreakerSupplier
+   */
+  public AbseilBuilder circuitBreaker(double failureRate, int window, long coolDown, TimeUnit unit) {
+    _breakerRate = failureRate;
+    _breakerWindow = window;
+    _breakerCoolDownNanos = unit.toNanos(coolDown);
+    return this;
+  }
+
+  int getBatchSize() {
+    return (_batchSize == null || _batchSize <= 0) ? 1 : _batchSize;
+  }
+
+  long getDrainTimeoutMillis() {
+    return (_drainTimeoutMillis == null) ? Abseil.DRAIN_TIMEOUT : _drainTimeoutMillis;
+  }
+
+  /**
+   * @param monitor
+   *          - of the abseil, signals the task outcomes
+   * @return decorates the task supplier with a circuit breaker, null when not breaking
+   */
+  UnaryOperator<Supplier<Runnable>> getCircuitBreaker(Monitor monitor) {
+    if (_breakerRate == null) return null;
+    return (tasks) -> new CircuitBreakerSupplier(tasks, monitor, _breakerRate, _breakerWindow, _breakerCoolDownNanos,
+        TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param monitor
+   *          - of the abseil
+   * @return bulkhead of the lanes, null when there are no lanes
+   */
+  Bulkhead getBulkhead(Monitor monitor) {
+    if (_lanes == null) return null;
+    if (_laneKey == null) throw new IllegalStateException("Lanes need a key, see lanes(Function)");
+
+    Bulkhead bulkhead = new Bulkhead(_laneKey, monitor);
+    for (Map.Entry<String, int[]> lane : _lanes.entrySet()) {
+      bulkhead.add(lane.getKey(), lane.getValue()[0], lane.getValue()[1]);
+    }
+    return bulkhead;
+  }
+
+  AdaptiveLimiter getLimiter() {
+    return (_adaptiveMax == null) ? null : new AdaptiveLimiter(_adaptiveMin, _adaptiveMax);
+  }
+
+  RateLimiter getRateLimiter() {
+    return (_rate == null) ? null : new RateLimiter(_rate, (_rateBurst == null || _rateBurst <= 0) ? 1 : _rateBurst);
+  }
+
+  RetryRunnable.Policy getRetryPolicy() {
+    // a budget of its own, abseils built alike don't share retries
+    return (_retry == null) ? null : new RetryRunnable.Policy(_retry);
+  }
+
+  long getTaskTimeoutNanos() {
+    return (_taskTimeoutNanos == null || _taskTimeoutNanos <= 0) ? 0 : _taskTimeoutNanos;
+  }
+
+  boolean isFlightRecorder() {
+    return _flightRecorder;
+  }
+
+  String getName() {
+    return _name;
   }
 
   long getMaxRuntimeMillis() {
@@ -60,7 +287,44 @@ public class AbseilBuilder {
   }
 
   /**
-   * Total time the Abseil should run before shutting down gracefully.
+   * Adds a bulkhead lane; tasks keyed to the lane, by {@link #lanes(Function)}, run at most maxConcurrent at a time and
+   * at most queueCapacity wait for a slot, so a slow dependency only ever takes the threads of its own lane.
+   * 
+   * @param name
+   *          - of the lane, the key of its tasks
+   * @param maxConcurrent
+   *          - most tasks of the lane running at any given time
+   * @param queueCapacity
+   *          - most tasks of the lane waiting for a slot; tasks beyond are rejected
+   * @return this builder for further configuration
+   * @see Bulkhead
+   */
+  public AbseilBuilder lane(String name, int maxConcurrent, int queueCapacity) {
+    if (_lanes == null) _lanes = new LinkedHashMap<>();
+    _lanes.put(name, new int[] { maxConcurrent, queueCapacity });
+    return this;
+  }
+
+  /**
+   * Routes the tasks of {@link Abseil#process(java.util.function.Supplier)} to the {@link #lane(String, int, int)}s. The
+   * lanes share the {@link #maxThreads(int)} of the abseil and replace {@link #adaptiveConcurrency(int, int)}; each
+   * lane's tasks are recorded by its own {@link Monitor} as well as the abseil's. Can't be combined with
+   * {@link #batchSize(int)}, and callables and subscribed tasks aren't routed, see
+   * {@link Abseil#processCallables(java.util.function.Supplier, int)} and {@link Abseil#subscriber()}.
+   * 
+   * @param key
+   *          - name of the lane of a task, null or an unknown name to run the task outside the lanes
+   * @return this builder for further configuration
+   * @see Abseil#getBulkhead()
+   */
+  public AbseilBuilder lanes(Function<Runnable, String> key) {
+    _laneKey = key;
+    return this;
+  }
+
+  /**
+   * Total time the Abseil should run before shutting down gracefully. The processor is interrupted and does the
+   * shutdown, so a supplier ignoring the interrupt holds the shutdown off until it returns.
    * 
    * @param time
    * @param unit
@@ -81,16 +345,141 @@ public class AbseilBuilder {
     return this;
   }
 
+  /**
+   * Names the abseil in JMX and the metrics; defaults to abseil-&lt;n&gt;. An abseil named the same as a running abseil
+   * isn't registered with JMX.
+   * 
+   * @param name
+   *          - of the abseil
+   * @return this builder for further configuration
+   * @see AbseilMetrics
+   */
+  public AbseilBuilder name(String name) {
+    _name = name;
+    return this;
+  }
+
+  /**
+   * <p>
+   * Queues the tasks waiting for a thread earliest deadline first instead of first in, first out; the deadlines of
+   * {@link org.storm.abseil.runnable.PrioritizedRunnable}s. Urgent tasks pass queued bulk tasks while bulk tasks age
+   * past newer urgent tasks once they have waited long enough, so neither starves. The latency of each priority is
+   * recorded by the {@link Monitor}.
+   * </p>
+   * <p>
+   * Replaces {@link #workQueue(BlockingQueue)}. Ordering only happens among queued tasks so the capacity should cover
+   * the mix of tasks to be ordered; tasks still in the supplier can't be passed.
+   * </p>
+   * 
+   * @param capacity
+   *          - most tasks waiting for a thread
+   * @return this builder for further configuration
+   */
+  public AbseilBuilder prioritized(int capacity) {
+    _priorityCapacity = capacity;
+    return this;
+  }
+
+  /**
+   * Supplies tasks at a steady rate with a token bucket paced to the nanosecond; for driving dependencies at exactly
+   * their contracted throughput. The rate can be changed while running through {@link Abseil#getRateLimiter()}.
+   * 
+   * @param tasksPerSecond
+   *          - steady rate of tasks
+   * @param burst
+   *          - tasks that can be supplied at once after being idle or falling behind
+   * @return this builder for further configuration
+   * @see org.storm.abseil.supplier.RateLimitedSupplier
+   */
+  public AbseilBuilder rateLimit(double tasksPerSecond, int burst) {
+    _rate = tasksPerSecond;
+    _rateBurst = burst;
+    return this;
+  }
+
   public AbseilBuilder rejectedExecutionHandler(RejectedExecutionHandler handler) {
     _handler = handler;
     return this;
   }
 
+  /**
+   * Retries failed tasks with exponential backoff and full jitter, at most 10% of the attempts being retries; see
+   * {@link #retry(int, long, long, TimeUnit, double)}.
+   * 
+   * @param maxAttempts
+   *          - most attempts of a task, including the first
+   * @param baseDelay
+   *          - before the first retry, doubled for each retry after
+   * @param maxDelay
+   *          - longest delay before a retry
+   * @param unit
+   *          - of the delays
+   * @return this builder for further configuration
+   */
+  public AbseilBuilder retry(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+    return retry(maxAttempts, baseDelay, maxDelay, unit, 0.1);
+  }
+
+  /**
+   * Retries the failed tasks of {@link Abseil#process(java.util.function.Supplier)} with exponential backoff and full
+   * jitter. Retries wait on a timer, not a thread, and are dispatched ahead of new tasks when due; the abseil waits for
+   * pending retries before shutting down once the tasks run out. Retries, and give-ups, are counted by the
+   * {@link Monitor}. Callables and subscribed tasks aren't retried, see
+   * {@link Abseil#processCallables(java.util.function.Supplier, int)} and {@link Abseil#subscriber()}.
+   * 
+   * @param maxAttempts
+   *          - most attempts of a task, including the first
+   * @param baseDelay
+   *          - before the first retry, doubled for each retry after
+   * @param maxDelay
+   *          - longest delay before a retry
+   * @param unit
+   *          - of the delays
+   * @param budget
+   *          - most retries as a ratio of all recent attempts; limits retry storms when a dependency fails
+   * @return this builder for further configuration
+   * @see RetryRunnable
+   */
+  public AbseilBuilder retry(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit, double budget) {
+    _retry = new RetryRunnable.Policy(maxAttempts, baseDelay, maxDelay, unit, budget);
+    return this;
+  }
+
+  /**
+   * Time budget of every task; a task over budget is interrupted, to free its thread, and counted as a timeout by the
+   * {@link Monitor}. Budgets are tracked by a single shared timer. Not applied to {@link #forkJoin()} spliterator tasks.
+   * 
+   * @param time
+   *          - most time a task may run
+   * @param unit
+   *          - of time
+   * @return this builder for further configuration
+   * @see org.storm.abseil.runnable.TimeBoxedRunnable
+   */
+  public AbseilBuilder taskTimeout(long time, TimeUnit unit) {
+    _taskTimeoutNanos = unit.toNanos(time);
+    return this;
+  }
+
   public AbseilBuilder threadFactory(ThreadFactory factory) {
     _factory = factory;
     return this;
   }
 
+  /**
+   * Runs every task on its own virtual thread, falling back to platform threads on JVMs without virtual threads. The
+   * number of concurrently running tasks is limited by {@link #maxThreads(int)} with a semaphore instead of a pool of
+   * threads and a work queue, so {@link #minThreads(int)}, {@link #keepAlive(long, TimeUnit)},
+   * {@link #workQueue(BlockingQueue)} and {@link #rejectedExecutionHandler(RejectedExecutionHandler)} are ignored.
+   * Best suited to tasks that spend most of their time blocked on I/O.
+   * 
+   * @return this builder for further configuration
+   */
+  public AbseilBuilder virtualThreads() {
+    _virtualThreads = true;
+    return this;
+  }
+
   public AbseilBuilder workQueue(BlockingQueue<Runnable> queue) {
     _queue = queue;
     return this;
@@ -0,0 +1,237 @@
+package org.storm.abseil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * Exposes the {@link Monitor}s of the running {@link Abseil}s. Each abseil registers its monitor as a
+ * {@link MonitorMXBean} when it starts and unregisters it when it shuts down, so the abseils show up in any JMX console
+ * under {@value #DOMAIN}. An abseil with adaptive concurrency registers its {@link AdaptiveLimiterMXBean} alongside.
+ * </p>
+ * <p>
+ * Optionally an embedded endpoint, on the JDK http server, serves the monitors of all running abseils in the Prometheus
+ * text format; throughput is the rate of the task counters, latency a summary of the task runtimes, and for adaptive
+ * abseils the concurrency limit with the count of its increases and decreases. Each sample is labelled with the name of
+ * its abseil.
+ * </p>
+ *
+ * <pre>
+ * HttpServer server = AbseilMetrics.serve(new InetSocketAddress(9404));
+ * // curl http://localhost:9404/metrics
+ * server.stop(0);
+ * </pre>
+ *
+ * @author Timothy Storm
+ */
+public final class AbseilMetrics {
+  /** Prometheus text format */
+  static final String        CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  /** JMX domain of the monitors */
+  public static final String DOMAIN       = "org.storm.abseil";
+
+  /** path the metrics are served on */
+  public static final String PATH         = "/metrics";
+
+  /** latency quantiles served */
+  static final double[]      QUANTILES    = { 0.5, 0.9, 0.99, 0.999 };
+
+  /**
+   * Appends a counter or gauge of every abseil
+   */
+  private static <T> void append(StringBuilder out, Map<Abseil, T> values, String name, String type, String help,
+      ToLongFunction<T> value) {
+    header(out, name, type, help);
+    for (Map.Entry<Abseil, T> entry : values.entrySet()) {
+      sample(out, name, entry.getKey(), null, Long.toString(value.applyAsLong(entry.getValue())));
+    }
+  }
+
+  /**
+   * Escapes a Prometheus label value
+   */
+  static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * @return the monitors of all running abseils in the Prometheus text format
+   */
+  public static String format() {
+    // snapshot each monitor once so the samples of an abseil are consistent with each other
+    Map<Abseil, Monitor> monitors = new LinkedHashMap<>();
+    Map<Abseil, AdaptiveLimiter> limiters = new LinkedHashMap<>();
+    for (Abseil abseil : Abseil.live()) {
+      monitors.put(abseil, abseil.getMonitor().snapshot());
+      if (abseil.getLimiter() != null) limiters.put(abseil, abseil.getLimiter());
+    }
+
+    StringBuilder out = new StringBuilder();
+    append(out, monitors, "abseil_tasks_started_total", "counter", "Tasks started.", Monitor::getTotal);
+    append(out, monitors, "abseil_tasks_completed_total", "counter", "Tasks completed, successfully or not.",
+        Monitor::getCompleted);
+    append(out, monitors, "abseil_tasks_failed_total", "counter", "Tasks that failed.", Monitor::getFail);
+    append(out, monitors, "abseil_tasks_timed_out_total", "counter", "Tasks that exceeded their time budget.",
+        Monitor::getTimeouts);
+    append(out, monitors, "abseil_task_retries_total", "counter", "Retries scheduled.", Monitor::getRetries);
+    append(out, monitors, "abseil_tasks_active", "gauge", "Tasks started but not completed.", Monitor::getActive);
+
+    String latency = "abseil_task_duration_seconds";
+    header(out, latency, "summary", "Task runtimes.");
+    for (Map.Entry<Abseil, Monitor> entry : monitors.entrySet()) {
+      Monitor monitor = entry.getValue();
+      for (double quantile : QUANTILES) {
+        sample(out, latency, entry.getKey(), Double.toString(quantile),
+            seconds(monitor.getPercentile(quantile * 100.0)));
+      }
+      sample(out, latency + "_sum", entry.getKey(), null, seconds(monitor.getAggregateNanos()));
+      sample(out, latency + "_count", entry.getKey(), null, Long.toString(monitor.getCompleted()));
+    }
+
+    header(out, latency + "_max", "gauge", "Longest task runtime.");
+    for (Map.Entry<Abseil, Monitor> monitor : monitors.entrySet()) {
+      sample(out, latency + "_max", monitor.getKey(), null, seconds(monitor.getValue().getMax()));
+    }
+
+    if (!limiters.isEmpty()) {
+      append(out, limiters, "abseil_concurrency_limit", "gauge", "Adaptive limit of in-flight tasks.",
+          AdaptiveLimiter::getLimit);
+      append(out, limiters, "abseil_concurrency_limit_increases_total", "counter", "Times the limit was increased.",
+          AdaptiveLimiter::getIncreases);
+      append(out, limiters, "abseil_concurrency_limit_decreases_total", "counter", "Times the limit was decreased.",
+          AdaptiveLimiter::getDecreases);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Answers a scrape with the current metrics
+   */
+  private static void handle(HttpExchange exchange) throws IOException {
+    try {
+      byte[] body = format().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static void header(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  /**
+   * @param abseil
+   *          - to name the monitor by
+   * @return name of the abseil's monitor MXBean
+   */
+  static ObjectName objectName(Abseil abseil) throws JMException {
+    return objectName(abseil, "Monitor");
+  }
+
+  /**
+   * @param abseil
+   *          - to name the MXBean by
+   * @param type
+   *          - of the MXBean; Monitor or Limiter
+   * @return name of the abseil's MXBean of the type
+   */
+  static ObjectName objectName(Abseil abseil, String type) throws JMException {
+    return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(abseil.getName()));
+  }
+
+  /**
+   * Registers the monitor of an abseil with the platform MBeanServer; an abseil named the same as a running abseil
+   * isn't registered
+   *
+   * @param abseil
+   *          - whose monitor to register
+   * @return name the monitor is registered under, null if it couldn't be registered
+   */
+  static ObjectName register(Abseil abseil) {
+    return register(abseil, "Monitor", abseil.getMonitor());
+  }
+
+  private static ObjectName register(Abseil abseil, String type, Object mbean) {
+    try {
+      ObjectName name = objectName(abseil, type);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+      return name;
+    } catch (JMException | SecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Registers the adaptive limiter of an abseil with the platform MBeanServer, like {@link #register(Abseil)}
+   *
+   * @param abseil
+   *          - whose limiter to register
+   * @return name the limiter is registered under, null if the abseil has no limiter or it couldn't be registered
+   */
+  static ObjectName registerLimiter(Abseil abseil) {
+    return (abseil.getLimiter() == null) ? null : register(abseil, "Limiter", abseil.getLimiter());
+  }
+
+  private static void sample(StringBuilder out, String name, Abseil abseil, String quantile, String value) {
+    out.append(name).append("{abseil=\"").append(escape(abseil.getName())).append('"');
+    if (quantile != null) out.append(",quantile=\"").append(quantile).append('"');
+    out.append("} ").append(value).append('\n');
+  }
+
+  private static String seconds(long nanos) {
+    return Double.toString(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * Starts serving the metrics of all running abseils on {@link #PATH}. The server runs until stopped.
+   *
+   * @param address
+   *          - to listen on, port 0 for any free port
+   * @return the started server; {@link HttpServer#getAddress()} for the port, {@link HttpServer#stop(int)} when done
+   * @throws IOException
+   *           if the address can't be listened on
+   */
+  public static HttpServer serve(InetSocketAddress address) throws IOException {
+    HttpServer server = HttpServer.create(address, 0);
+    server.createContext(PATH, AbseilMetrics::handle);
+    server.start();
+    return server;
+  }
+
+  /**
+   * Unregisters a monitor or limiter registered by {@link #register(Abseil)} or {@link #registerLimiter(Abseil)}
+   *
+   * @param name
+   *          - the MXBean is registered under, nothing is done when null
+   */
+  static void unregister(ObjectName name) {
+    if (name == null) return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (JMException | SecurityException e) {
+      // already gone
+    }
+  }
+
+  private AbseilMetrics() {}
+}
@@ -0,0 +1,438 @@
+package org.storm.abseil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.storm.abseil.Abseil.State;
+import org.storm.abseil.utils.Time;
+
+/**
+ * <p>
+ * Staged pipeline (SEDA) of {@link Abseil}s; items from a source flow through stages such as parse, enrich and
+ * persist. Each stage has its own workers, {@link Monitor} and bounded queue of items waiting for it.
+ * </p>
+ * <p>
+ * A worker hands its output to the next stage by waiting for room in the stage's queue, so a slow stage backs up the
+ * stages before it all the way to the source; no more items are in memory than the queues and workers hold. A stage
+ * completes once the stage before it has completed and its queue is empty; the last stage completing completes the
+ * pipeline. The max runtime is of the whole pipeline; once it is up the first stage stops taking items from the source
+ * and each later stage stops once the stage before it has drained, so the items in-flight are still handed on. Items a
+ * stage never processed, because it was shutdown or the max runtime was up, are counted as dropped.
+ * </p>
+ *
+ * <pre>
+ * AbseilPipeline pipeline = AbseilPipeline.from(lines)
+ *     .stage("parse", 4, 1024, Parser::parse)
+ *     .stage("enrich", 8, 1024, Enricher::enrich)
+ *     .sink("persist", 2, 256, dao::save)
+ *     .maxRuntime(10, TimeUnit.MINUTES).build();
+ * Map&lt;String, Monitor&gt; monitors = pipeline.start().get();
+ * </pre>
+ *
+ * @author Timothy Storm
+ */
+public class AbseilPipeline {
+  /**
+   * Builds a pipeline one stage at a time
+   *
+   * @param <T>
+   *          - type of the items the next stage takes
+   */
+  public static class Builder<T> {
+    private Long              _maxRuntimeMillis;
+
+    private final Supplier<?> _source;
+
+    private final List<Stage> _stages;
+
+    private Builder(Supplier<?> source, List<Stage> stages, Long maxRuntimeMillis) {
+      _source = source;
+      _stages = stages;
+      _maxRuntimeMillis = maxRuntimeMillis;
+    }
+
+    /**
+     * @return the pipeline of the stages so far
+     * @throws IllegalStateException
+     *           if there are no stages
+     */
+    public AbseilPipeline build() {
+      if (_stages.isEmpty()) throw new IllegalStateException("A pipeline needs at least one stage");
+      long maxRuntime = (_maxRuntimeMillis == null) ? Integer.MAX_VALUE : _maxRuntimeMillis;
+      return new AbseilPipeline(_source, _stages, maxRuntime);
+    }
+
+    /**
+     * Time the pipeline runs before shutting down gracefully; the first stage stops taking items from the source, then
+     * each later stage stops once the stage before it has drained, dropping the items still waiting for it
+     *
+     * @param time
+     * @param unit
+     * @return this builder for further configuration
+     */
+    public Builder<T> maxRuntime(long time, TimeUnit unit) {
+      _maxRuntimeMillis = unit.toMillis(time);
+      return this;
+    }
+
+    /**
+     * Adds a last stage that consumes the items
+     *
+     * @param name
+     *          - of the stage, names its abseil
+     * @param threads
+     *          - workers of the stage
+     * @param capacity
+     *          - most items waiting for the stage; the first stage pulls from the source as its workers free up
+     * @param work
+     *          - consumes an item
+     * @return this builder for further configuration
+     * @throws IllegalArgumentException
+     *           if a stage by the name was already added
+     */
+    public Builder<Void> sink(String name, int threads, int capacity, Consumer<? super T> work) {
+      return stage(name, threads, capacity, (item) -> {
+        work.accept(item);
+        return null;
+      });
+    }
+
+    /**
+     * Adds a stage that transforms the items
+     *
+     * @param name
+     *          - of the stage, names its abseil
+     * @param threads
+     *          - workers of the stage
+     * @param capacity
+     *          - most items waiting for the stage; the first stage pulls from the source as its workers free up
+     * @param work
+     *          - transforms an item for the next stage, null to pass nothing on
+     * @return this builder for further configuration
+     * @throws IllegalArgumentException
+     *           if a stage by the name was already added
+     */
+    @SuppressWarnings("unchecked")
+    public <O> Builder<O> stage(String name, int threads, int capacity, Function<? super T, ? extends O> work) {
+      for (Stage stage : _stages) {
+        if (Objects.equals(stage._name, name)) throw new IllegalArgumentException("Duplicate stage " + name);
+      }
+      _stages.add(new Stage(name, threads, capacity, (Function<Object, Object>) work));
+      return new Builder<>(_source, _stages, _maxRuntimeMillis);
+    }
+  }
+
+  /**
+   * Workers, {@link Monitor} and queue of one step of the pipeline
+   */
+  public static class Stage {
+    private Abseil                         _abseil;
+
+    private final int                      _capacity;
+
+    /** the stage's abseil completed, its tasks that haven't started never will */
+    private volatile boolean               _completed;
+
+    /** end of the max runtime of the pipeline, nanos */
+    private volatile long                  _deadline;
+
+    /** items handed to the stage that it never processed */
+    private final LongAdder                _dropped   = new LongAdder();
+
+    private final String                   _name;
+
+    /** next stage, null for the last */
+    private Stage                          _next;
+
+    /** previous stage, null for the first */
+    private Stage                          _previous;
+
+    /** items waiting for the stage, null for the first stage */
+    private BlockingQueue<Object>          _queue;
+
+    /** start of the stage, nanos */
+    private volatile long                  _started;
+
+    private final int                      _threads;
+
+    /** tasks of items taken by the stage that haven't started */
+    private final LongAdder                _unstarted = new LongAdder();
+
+    private final Function<Object, Object> _work;
+
+    Stage(String name, int threads, int capacity, Function<Object, Object> work) {
+      if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+      if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+      _name = name;
+      _threads = threads;
+      _capacity = capacity;
+      _work = work;
+    }
+
+    /**
+     * Counts the items still waiting once the stage completed as dropped, and from then on the tasks never started
+     */
+    private Monitor completed(Monitor monitor) {
+      while (_queue != null && _queue.poll() != null) {
+        _dropped.increment();
+      }
+      _completed = true;
+      return monitor;
+    }
+
+    public int getCapacity() {
+      return _capacity;
+    }
+
+    /**
+     * @return items handed to the stage that it never processed; refused or left waiting because it was shutdown
+     */
+    public long getDropped() {
+      return _completed ? _dropped.sum() + _unstarted.sum() : _dropped.sum();
+    }
+
+    /**
+     * @return monitor of the items processed by the stage, as they are processed
+     */
+    public Monitor getMonitor() {
+      return _abseil.getMonitor();
+    }
+
+    public String getName() {
+      return _name;
+    }
+
+    /**
+     * @return items waiting for the stage
+     */
+    public int getQueued() {
+      return (_queue == null) ? 0 : _queue.size();
+    }
+
+    public int getThreads() {
+      return _threads;
+    }
+
+    /**
+     * @return items completed per second since the stage started
+     */
+    public double getThroughput() {
+      long started = _started;
+      if (started == 0) return 0;
+      long elapsed = System.nanoTime() - started;
+      return (elapsed <= 0) ? 0 : getMonitor().getCompleted() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * @return task of the next item waiting for this stage, null once the previous stage has shutdown and no item is
+     *         waiting or the max runtime is up
+     */
+    private Runnable next() {
+      try {
+        for (;;) {
+          // the previous stage shuts down after its last item was queued; the items waiting past the max runtime are
+          // dropped once this stage completes
+          if (_previous._abseil.getState().is(State.SHUTDOWN) && (_queue.isEmpty() || System.nanoTime()
+              - _deadline >= 0)) return null;
+
+          Object item = _queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (item != null && stopped()) {
+            _dropped.increment();
+            return null;
+          }
+          if (item != null) return task(item);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+
+    /**
+     * Waits for room in the queue of this stage; the upstream worker handing over the item blocks meanwhile
+     *
+     * @throws RejectedExecutionException
+     *           if this stage stopped or the worker is interrupted while waiting; the item is counted as dropped
+     */
+    private void put(Object item) {
+      try {
+        while (!_queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (stopped()) throw rejected("Stage " + _name + " stopped", null);
+        }
+
+        // queued as the stage stopped taking items; unless already counted with the rest of the queue
+        if (stopped() && _queue.remove(item)) throw rejected("Stage " + _name + " stopped", null);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw rejected("Interrupted waiting for stage " + _name, e);
+      }
+    }
+
+    private RejectedExecutionException rejected(String message, Throwable cause) {
+      _dropped.increment();
+      return new RejectedExecutionException(message, cause);
+    }
+
+    /**
+     * @return if the stage no longer takes items from its queue
+     */
+    private boolean stopped() {
+      State state = _abseil.getState();
+      return state.is(State.SHUTTING_DOWN) || state.is(State.SHUTDOWN);
+    }
+
+    /**
+     * @return the item processed by this stage and handed to the next
+     */
+    private Runnable task(Object item) {
+      _unstarted.increment();
+      return () -> {
+        _unstarted.decrement();
+        Object output = _work.apply(item);
+        if (output != null && _next != null) _next.put(output);
+      };
+    }
+
+    @Override
+    public String toString() {
+      Monitor monitor = getMonitor();
+      StringBuilder str = new StringBuilder(_name).append("=[");
+      str.append("threads=").append(getThreads()).append(", ");
+      str.append("queued=").append(getQueued()).append("/").append(getCapacity()).append(", ");
+      str.append("completed=").append(monitor.getCompleted()).append(", ");
+      str.append("fail=").append(monitor.getFail()).append(", ");
+      str.append("dropped=").append(getDropped()).append(", ");
+      str.append("throughput=").append(String.format("%.1f/s", getThroughput())).append(", ");
+      str.append("p99=").append(Time.formatNanos(monitor.getP99()));
+      return str.append("]").toString();
+    }
+  }
+
+  /** longest wait on a queue before checking the stage on the other side */
+  static final long         POLL_MILLIS = 10;
+
+  /** of the whole pipeline */
+  private final long        _maxRuntimeMillis;
+
+  /** of the items, null when there are no more */
+  private final Supplier<?> _source;
+
+  private final List<Stage> _stages;
+
+  /**
+   * @param source
+   *          - of the items, null when there are no more
+   * @return builder of a pipeline of the items of the source
+   */
+  public static <T> Builder<T> from(Supplier<T> source) {
+    return new Builder<>(source, new ArrayList<>(), null);
+  }
+
+  private AbseilPipeline(Supplier<?> source, List<Stage> stages, long maxRuntimeMillis) {
+    _source = source;
+    _stages = Collections.unmodifiableList(new ArrayList<>(stages));
+    _maxRuntimeMillis = maxRuntimeMillis;
+
+    Stage previous = null;
+    for (Stage stage : _stages) {
+      AbseilBuilder builder = Abseil.builder().name(stage._name).minThreads(stage._threads).maxThreads(stage._threads);
+      // only the first stage is cut off, the others complete once the stage before them has and their queue is empty
+      // or the max runtime is up
+      if (previous == null) builder.maxRuntime(maxRuntimeMillis, TimeUnit.MILLISECONDS);
+      stage._abseil = builder.build();
+      if (previous != null) {
+        previous._next = stage;
+        stage._previous = previous;
+        stage._queue = new ArrayBlockingQueue<>(stage._capacity);
+      }
+      previous = stage;
+    }
+  }
+
+  /**
+   * @param name
+   *          - of the stage
+   * @return the stage, null if none by the name
+   */
+  public Stage getStage(String name) {
+    for (Stage stage : _stages) {
+      if (stage._name.equals(name)) return stage;
+    }
+    return null;
+  }
+
+  /**
+   * @return the stages in order
+   */
+  public List<Stage> getStages() {
+    return _stages;
+  }
+
+  /**
+   * Shuts every stage down, the first stage first; each drains its in-flight items, the items still waiting for a stage
+   * are dropped
+   */
+  public void shutdown() {
+    boolean interrupted = false;
+    for (Stage stage : _stages) {
+      stage._abseil.shutdown();
+      // a shutdown interrupts its caller, which would cut the drain of the next stage short
+      interrupted |= Thread.interrupted();
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Starts every stage, the last stage first so each stage has a consumer before it produces
+   *
+   * @return monitors of the stages by name, in order, once the last stage completes
+   */
+  public CompletableFuture<Map<String, Monitor>> start() {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_maxRuntimeMillis);
+    final List<CompletableFuture<Monitor>> completed = new ArrayList<>();
+    for (int i = _stages.size() - 1; i > 0; i--) {
+      Stage stage = _stages.get(i);
+      stage._deadline = deadline;
+      stage._started = System.nanoTime();
+      completed.add(0, stage._abseil.process(stage::next).thenApply(stage::completed));
+    }
+
+    final Stage first = _stages.get(0);
+    first._started = System.nanoTime();
+    completed.add(0, first._abseil.process(() -> {
+      Object item = _source.get();
+      return (item == null) ? null : first.task(item);
+    }).thenApply(first::completed));
+
+    return CompletableFuture.allOf(completed.toArray(new CompletableFuture<?>[0])).thenApply((done) -> {
+      Map<String, Monitor> monitors = new LinkedHashMap<>();
+      for (int i = 0; i < _stages.size(); i++) {
+        monitors.put(_stages.get(i)._name, completed.get(i).join());
+      }
+      return monitors;
+    });
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder str = new StringBuilder("[");
+    for (Stage stage : _stages) {
+      if (str.length() > 1) str.append(", ");
+      str.append(stage);
+    }
+    return str.append("]").toString();
+  }
+}
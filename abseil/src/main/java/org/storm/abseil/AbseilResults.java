@@ -0,0 +1,287 @@
+package org.storm.abseil;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Bounded stream of the results of {@link Abseil#processCallables(java.util.function.Supplier)}. Results wait in a
+ * buffer of fixed capacity until consumed; when the buffer is full the workers block handing over their results, the
+ * work queue fills and the {@link Abseil} stops asking for tasks. The tasks run only as fast as the results are
+ * consumed and memory stays bounded.
+ * </p>
+ * <p>
+ * The results have a single consumer, either as a blocking {@link Iterator} or as a {@link Flow.Publisher} that
+ * delivers, on its own thread, no more results than requested. The stream ends when the abseil shuts down and every
+ * buffered result has been consumed. Failed tasks and null results aren't streamed; failures are in the
+ * {@link Monitor}.
+ * </p>
+ * <p>
+ * A subscriber that throws cancels its subscription; the error is kept, see {@link #getError()}, and the results it
+ * didn't consume are counted as dropped by the monitor.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class AbseilResults<T> implements Iterator<T>, Flow.Publisher<T> {
+  /**
+   * Delivers the results to a subscriber as they are requested
+   */
+  private class Delivery implements Flow.Subscription, Runnable {
+    private volatile boolean                  _cancelled;
+
+    private final AtomicLong                  _demand = new AtomicLong();
+
+    /** requested a non-positive number of results */
+    private volatile IllegalArgumentException _illegal;
+
+    private final Flow.Subscriber<? super T>  _subscriber;
+
+    private volatile Thread                   _thread;
+
+    Delivery(Flow.Subscriber<? super T> subscriber) {
+      _subscriber = subscriber;
+    }
+
+    @Override
+    public void cancel() {
+      _cancelled = true;
+      discard();
+
+      Thread thread = _thread;
+      if (thread != null && thread != Thread.currentThread()) thread.interrupt();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) _illegal = new IllegalArgumentException("request must be > 0: " + n);
+      else _demand.accumulateAndGet(n, (demand, more) -> (demand + more < 0) ? Long.MAX_VALUE : demand + more);
+      LockSupport.unpark(_thread);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+      _thread = Thread.currentThread();
+      try {
+        _subscriber.onSubscribe(this);
+        while (!_cancelled) {
+          if (_illegal != null) {
+            cancel();
+            _subscriber.onError(_illegal);
+            return;
+          }
+          if (_demand.get() == 0) {
+            LockSupport.park(this);
+            continue;
+          }
+
+          Object result = take();
+          if (result == END) {
+            _subscriber.onComplete();
+            return;
+          }
+          _demand.decrementAndGet();
+          _subscriber.onNext((T) result);
+        }
+      } catch (InterruptedException e) {
+        // cancelled
+      } catch (Throwable t) {
+        // a failing subscriber can't be signalled again, keep its error and drop the rest
+        _error = t;
+        cancel();
+      }
+    }
+  }
+
+  /** end of the results */
+  private static final Object                 END       = new Object();
+
+  /** the single consumer; the iterator or a subscriber */
+  private final AtomicReference<Object>       _consumer = new AtomicReference<>();
+
+  /** the consumer went away, results are dropped */
+  private volatile boolean                    _discard;
+
+  private volatile boolean                    _done;
+
+  /** thrown by the subscriber, null if none */
+  private volatile Throwable                  _error;
+
+  private volatile CompletableFuture<Monitor> _monitor;
+
+  /** next result of the iterator, null if not taken yet */
+  private Object                              _next;
+
+  /** free space in the buffer, the buffer has one more slot for the end */
+  private final Semaphore                     _permits;
+
+  private final BlockingQueue<Object>         _results;
+
+  /** counts the dropped results */
+  private final Monitor                       _tasks;
+
+  /**
+   * @param capacity
+   *          - most results buffered before the workers block
+   * @param tasks
+   *          - monitor of the tasks, counts the results dropped
+   */
+  AbseilResults(int capacity, Monitor tasks) {
+    if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+    _tasks = tasks;
+    _permits = new Semaphore(capacity);
+    _results = new ArrayBlockingQueue<>(capacity + 1);
+  }
+
+  /**
+   * Claims this stream for the consumer
+   *
+   * @throws IllegalStateException
+   *           if another consumer has it
+   */
+  private void claim(Object consumer) {
+    if (!_consumer.compareAndSet(null, consumer) && _consumer.get() != consumer) {
+      throw new IllegalStateException("Results already have a consumer");
+    }
+  }
+
+  /**
+   * Ends the stream once the buffered results are consumed; called when the abseil shuts down
+   */
+  void complete() {
+    _done = true;
+    _results.offer(END);
+  }
+
+  /**
+   * Drops the buffered and future results, releasing blocked workers
+   */
+  private void discard() {
+    _discard = true;
+    long dropped = 0;
+    for (Object result = _results.poll(); result != null; result = _results.poll()) {
+      if (result != END) dropped++;
+    }
+    _tasks.dropped(dropped);
+    _permits.release(Integer.MAX_VALUE / 2);
+  }
+
+  /**
+   * @return error thrown by the subscriber, which cancelled its subscription; null if none
+   */
+  public Throwable getError() {
+    return _error;
+  }
+
+  /**
+   * @return monitor of the tasks once the abseil has shutdown
+   */
+  public CompletableFuture<Monitor> getMonitor() {
+    return _monitor;
+  }
+
+  /**
+   * Blocks until the next result is available or the stream has ended. An interrupt while waiting ends the iteration
+   * with the interrupt status set.
+   */
+  @Override
+  public boolean hasNext() {
+    claim(this);
+    if (_next == null) {
+      try {
+        _next = take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return _next != END;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    T result = (T) _next;
+    _next = null;
+    return result;
+  }
+
+  /**
+   * Buffers a result, blocking while the buffer is full; called by the workers
+   *
+   * @param result
+   *          - of a task, null results are dropped
+   */
+  void publish(T result) {
+    if (result == null || _done) return;
+    if (_discard) {
+      _tasks.dropped(1);
+      return;
+    }
+
+    try {
+      _permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    if (_discard) {
+      _tasks.dropped(1);
+    } else if (!_done) {
+      _results.offer(result);
+      // discarded while offering, the discard missed it
+      if (_discard && _results.remove(result)) _tasks.dropped(1);
+    }
+  }
+
+  void setMonitor(CompletableFuture<Monitor> monitor) {
+    _monitor = monitor;
+  }
+
+  /**
+   * Delivers the results on a new "Abseil - results" thread. Cancelling the subscription drops the rest of the results
+   * so the workers don't block; the abseil keeps running until done.
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super T> subscriber) {
+    Objects.requireNonNull(subscriber);
+    try {
+      claim(subscriber);
+    } catch (IllegalStateException e) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+      });
+      subscriber.onError(e);
+      return;
+    }
+
+    Thread delivery = new Thread(new Delivery(subscriber), "Abseil - results");
+    delivery.setDaemon(true);
+    delivery.start();
+  }
+
+  /**
+   * @return the next result or {@link #END}, which stays in the buffer for the next take
+   */
+  private Object take() throws InterruptedException {
+    Object result = _results.take();
+    if (result == END) _results.offer(END);
+    else _permits.release();
+    return result;
+  }
+}
@@ -0,0 +1,157 @@
+package org.storm.abseil;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.storm.abseil.runnable.DecoratedRunnable;
+
+/**
+ * <p>
+ * {@link Flow.Subscriber} of tasks for an {@link Abseil}; see {@link Abseil#subscriber()} and
+ * {@link Abseil#subscribe(Flow.Publisher)}. Tasks are requested only for free worker slots, the concurrency of the abseil
+ * less the tasks requested but not yet completed, and a completed task requests the next. The publisher drives the
+ * pace through demand rather than being polled and the executor never has more tasks than workers, so tasks are never
+ * run by the dispatch thread.
+ * </p>
+ * <p>
+ * Processing ends when the publisher completes or fails, see {@link #getError()}, or when the abseil stops running,
+ * which cancels the subscription.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class AbseilSubscriber implements Flow.Subscriber<Runnable> {
+  /** end of the tasks */
+  private static final Runnable               END          = () -> {};
+
+  private volatile Throwable                  _error;
+
+  private volatile CompletableFuture<Monitor> _monitor;
+
+  /** tasks requested but not yet completed */
+  private final AtomicInteger                 _outstanding = new AtomicInteger();
+
+  /** concurrency of the abseil */
+  private final IntSupplier                   _slots;
+
+  private volatile Flow.Subscription          _subscription;
+
+  /** delivered tasks waiting to be dispatched; never more than requested */
+  private final BlockingQueue<Runnable>       _tasks       = new LinkedBlockingQueue<>();
+
+  /**
+   * @param slots
+   *          - concurrency of the abseil, read every time a task completes so it may change
+   */
+  AbseilSubscriber(IntSupplier slots) {
+    _slots = slots;
+  }
+
+  /**
+   * Frees the slot of a completed task and requests the next
+   */
+  private void completed() {
+    _outstanding.decrementAndGet();
+    requestFree();
+  }
+
+  /**
+   * @return failure signalled by the publisher, null if none
+   */
+  public Throwable getError() {
+    return _error;
+  }
+
+  /**
+   * @return monitor of the tasks once the abseil has shutdown
+   */
+  public CompletableFuture<Monitor> getMonitor() {
+    return _monitor;
+  }
+
+  /**
+   * Waits for the next task; called by the abseil dispatch thread
+   *
+   * @return the task, freeing its slot when done, or null when there are no more
+   */
+  Runnable next() {
+    Runnable next;
+    try {
+      next = _tasks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      next = END;
+    }
+
+    final Runnable task = next;
+    if (task == END) {
+      Flow.Subscription subscription = _subscription;
+      if (subscription != null) subscription.cancel();
+      return null;
+    }
+    return new DecoratedRunnable(task) {
+      @Override
+      public void run() {
+        try {
+          runDecorated();
+        } finally {
+          completed();
+        }
+      }
+    };
+  }
+
+  @Override
+  public void onComplete() {
+    _tasks.add(END);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    _error = throwable;
+    _tasks.add(END);
+  }
+
+  @Override
+  public void onNext(Runnable task) {
+    _tasks.add(Objects.requireNonNull(task));
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    Objects.requireNonNull(subscription);
+    if (_subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    _subscription = subscription;
+    requestFree();
+  }
+
+  /**
+   * Requests a task for every free slot
+   */
+  private void requestFree() {
+    Flow.Subscription subscription = _subscription;
+    if (subscription == null) return;
+
+    for (;;) {
+      int outstanding = _outstanding.get();
+      int free = _slots.getAsInt() - outstanding;
+      if (free <= 0) return;
+      if (_outstanding.compareAndSet(outstanding, outstanding + free)) {
+        subscription.request(free);
+        return;
+      }
+    }
+  }
+
+  void setMonitor(CompletableFuture<Monitor> monitor) {
+    _monitor = monitor;
+  }
+}
@@ -0,0 +1,312 @@
+package org.storm.abseil;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.storm.abseil.runnable.DecoratedRunnable;
+import org.storm.abseil.utils.Time;
+import org.storm.abseil.utils.TimerWheel;
+
+/**
+ * <p>
+ * Limits the number of in-flight tasks of an {@link Abseil} and continuously resizes the limit, between a min and max,
+ * to find the knee of the latency curve; the most concurrency a downstream dependency takes before it slows down.
+ * </p>
+ * <p>
+ * Every window the task latency and failure rate are sampled from the {@link Monitor} (AIMD):
+ * </p>
+ * <ul>
+ * <li>failure rate over {@link #MAX_FAILURE_RATE} or average latency over {@link #TOLERANCE} times the baseline
+ * (lowest latency seen) - the limit is decreased by {@link #DECREASE}</li>
+ * <li>otherwise, if the limit was reached during the window - the limit is increased by its square root</li>
+ * </ul>
+ * <p>
+ * The decisions are exposed by the getters and {@link #toString()}, and while the abseil runs through JMX and the
+ * Prometheus endpoint of {@link AbseilMetrics}.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class AdaptiveLimiter implements AdaptiveLimiterMXBean {
+  /**
+   * Command holding a slot, freed once it has run
+   */
+  private final class LimitedRunnable extends DecoratedRunnable {
+    /** started running, on a worker or on the executing thread */
+    private boolean _ran;
+
+    LimitedRunnable(Runnable command) {
+      super(command);
+    }
+
+    @Override
+    public void run() {
+      _ran = true;
+      try {
+        runDecorated();
+      } finally {
+        release();
+      }
+    }
+  }
+
+  /** multiplicative decrease of the limit */
+  static final double         DECREASE         = 0.9;
+
+  /** failure rate of a window that decreases the limit */
+  static final double         MAX_FAILURE_RATE = 0.1;
+
+  /** completed tasks needed to judge a window */
+  static final int            MIN_SAMPLES      = 10;
+
+  /** latency, relative to the baseline, that decreases the limit */
+  static final double         TOLERANCE        = 1.5;
+
+  /** sampling window */
+  static final long           WINDOW_MILLIS    = 100;
+
+  /** signalled when in-flight tasks drop below the limit */
+  private final Condition     _available;
+
+  /** lowest window latency, nanos; creeps up slowly so it follows a drifting dependency */
+  private long                _baseline        = Long.MAX_VALUE;
+
+  private final AtomicLong    _decreases       = new AtomicLong();
+
+  private final AtomicInteger _inflight        = new AtomicInteger();
+
+  private final AtomicLong    _increases       = new AtomicLong();
+
+  /** last window values, timer thread only */
+  private long                _lastAggregate, _lastCompleted, _lastFails;
+
+  /** average latency of the last judged window, nanos */
+  private volatile long       _latency;
+
+  private volatile int        _limit;
+
+  private final Lock          _lock            = new ReentrantLock();
+
+  private final int           _min, _max;
+
+  /** most in-flight tasks during the current window */
+  private final AtomicInteger _peak            = new AtomicInteger();
+
+  private volatile boolean    _stopped;
+
+  /** dispatchers waiting for a free slot */
+  private final AtomicInteger _waiters         = new AtomicInteger();
+
+  /**
+   * @param min
+   *          - lowest limit, also the starting limit
+   * @param max
+   *          - highest limit
+   */
+  public AdaptiveLimiter(int min, int max) {
+    if (min <= 0 || max < min) throw new IllegalArgumentException("0 < min <= max required");
+    _min = min;
+    _max = max;
+    _limit = min;
+    _available = _lock.newCondition();
+  }
+
+  /**
+   * Waits for a free slot
+   *
+   * @throws RejectedExecutionException
+   *           if interrupted while waiting
+   */
+  void acquire() {
+    for (;;) {
+      int inflight = _inflight.get();
+      if (inflight < _limit) {
+        if (_inflight.compareAndSet(inflight, inflight + 1)) {
+          if (inflight + 1 > _peak.get()) _peak.accumulateAndGet(inflight + 1, Math::max);
+          return;
+        }
+        continue;
+      }
+
+      _lock.lock();
+      try {
+        _waiters.incrementAndGet();
+        while (_inflight.get() >= _limit) {
+          _available.await();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException("Interrupted waiting for a slot", e);
+      } finally {
+        _waiters.decrementAndGet();
+        _lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Executes the command once a slot is free, freeing the slot when the command completes
+   *
+   * @param executor
+   *          - to execute the command with
+   * @param command
+   *          - to execute
+   * @throws RejectedExecutionException
+   *           if interrupted while waiting for a slot or rejected by the executor
+   */
+  void execute(Executor executor, Runnable command) {
+    acquire();
+    LimitedRunnable limited = new LimitedRunnable(command);
+    try {
+      executor.execute(limited);
+    } catch (RuntimeException e) {
+      // a rejected command run by the caller has already freed its slot
+      if (!limited._ran) release();
+      throw e;
+    }
+  }
+
+  /**
+   * @return lowest window latency seen, nanos; 0 before the first judged window
+   */
+  public long getBaseline() {
+    long baseline = _baseline;
+    return (baseline == Long.MAX_VALUE) ? 0 : baseline;
+  }
+
+  /**
+   * @return number of times the limit was decreased
+   */
+  public long getDecreases() {
+    return _decreases.get();
+  }
+
+  /**
+   * @return tasks currently in-flight
+   */
+  public int getInflight() {
+    return _inflight.get();
+  }
+
+  /**
+   * @return number of times the limit was increased
+   */
+  public long getIncreases() {
+    return _increases.get();
+  }
+
+  /**
+   * @return average latency of the last judged window, nanos
+   */
+  public long getLatency() {
+    return _latency;
+  }
+
+  /**
+   * @return current concurrency limit
+   */
+  public int getLimit() {
+    return _limit;
+  }
+
+  public int getMax() {
+    return _max;
+  }
+
+  public int getMin() {
+    return _min;
+  }
+
+  void release() {
+    _inflight.decrementAndGet();
+    if (_waiters.get() > 0) signal();
+  }
+
+  private void signal() {
+    _lock.lock();
+    try {
+      _available.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Samples the monitor every window until stopped
+   *
+   * @param monitor
+   *          - of the limited tasks
+   */
+  void start(Monitor monitor) {
+    if (_stopped) return;
+    TimerWheel.shared().schedule(() -> {
+      update(monitor);
+      start(monitor);
+    }, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops sampling the monitor
+   */
+  void stop() {
+    _stopped = true;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder str = new StringBuilder("[");
+    str.append("limit=").append(getLimit()).append(", ");
+    str.append("inflight=").append(getInflight()).append(", ");
+    str.append("latency=").append(Time.formatNanos(getLatency())).append(", ");
+    str.append("baseline=").append(Time.formatNanos(getBaseline())).append(", ");
+    str.append("increases=").append(getIncreases()).append(", ");
+    str.append("decreases=").append(getDecreases());
+    return str.append("]").toString();
+  }
+
+  /**
+   * Judges the window since the last update and resizes the limit
+   *
+   * @param monitor
+   *          - of the limited tasks
+   */
+  void update(Monitor monitor) {
+    // completed before aggregate, the latency may only be over estimated
+    long completed = monitor.getCompleted();
+    long aggregate = monitor.getAggregateNanos();
+    long fails = monitor.getFail();
+
+    long samples = completed - _lastCompleted;
+    if (samples < MIN_SAMPLES) return;
+
+    long latency = (aggregate - _lastAggregate) / samples;
+    double failureRate = (double) (fails - _lastFails) / samples;
+    _lastCompleted = completed;
+    _lastAggregate = aggregate;
+    _lastFails = fails;
+
+    _latency = latency;
+    _baseline = (_baseline == Long.MAX_VALUE) ? latency : Math.min(latency, _baseline + (_baseline / 1000) + 1);
+
+    int limit = _limit;
+    boolean saturated = _peak.getAndSet(_inflight.get()) >= limit;
+
+    if (failureRate > MAX_FAILURE_RATE || latency > _baseline * TOLERANCE) {
+      int decreased = Math.max(_min, (int) (limit * DECREASE));
+      if (decreased < limit) {
+        _limit = decreased;
+        _decreases.incrementAndGet();
+      }
+    } else if (saturated && limit < _max) {
+      _limit = Math.min(_max, limit + Math.max(1, (int) Math.sqrt(limit)));
+      _increases.incrementAndGet();
+      signal();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.storm.abseil;
+
+/**
+ * Management interface of an {@link AdaptiveLimiter}; each running {@link Abseil} with adaptive concurrency registers
+ * its limiter with the platform MBeanServer as {@value AbseilMetrics#DOMAIN}:type=Limiter,name=&lt;abseil name&gt; until
+ * it shuts down. Latencies are nanos.
+ *
+ * @author Timothy Storm
+ * @see AbseilMetrics
+ */
+public interface AdaptiveLimiterMXBean {
+  long getBaseline();
+
+  /**
+   * @return number of times the limit was decreased
+   */
+  long getDecreases();
+
+  int getInflight();
+
+  /**
+   * @return number of times the limit was increased
+   */
+  long getIncreases();
+
+  long getLatency();
+
+  /**
+   * @return current concurrency limit
+   */
+  int getLimit();
+
+  int getMax();
+
+  int getMin();
+}
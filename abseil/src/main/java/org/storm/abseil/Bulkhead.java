@@ -0,0 +1,343 @@
+package org.storm.abseil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.storm.abseil.runnable.DecoratedRunnable;
+import org.storm.abseil.runnable.LaneRunnable;
+
+/**
+ * <p>
+ * Isolates the tasks of an {@link Abseil} in named lanes so a slow dependency can't take every worker. Tasks are routed
+ * to a lane by a key function; each lane has its own concurrency limit, queue and {@link Monitor} while all lanes share
+ * the threads, and max runtime, of the abseil. Tasks whose key isn't a lane run outside the lanes.
+ * </p>
+ * <p>
+ * A task is executed when its lane has a free slot, otherwise it waits in the lane's queue and is executed as a task of
+ * the lane completes. The dispatch loop never waits on, or runs, the tasks of a lane; a task the executor would run on
+ * the thread handing it over, such as with a CallerRunsPolicy, is handed back to the head of its lane's queue until a
+ * worker is free. A task that finds its lane's queue full is rejected and recorded as a task failing at once with a
+ * {@link RejectedExecutionException} by the monitors of the lane and the abseil; rejections aren't task outcomes, so
+ * they don't trip a circuit breaker.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class Bulkhead {
+  /**
+   * Concurrency limit, queue and {@link Monitor} of the tasks of one key
+   */
+  public static class Lane {
+    /**
+     * Task of the lane holding a slot of the lane until it has run
+     */
+    private final class Slot extends DecoratedRunnable {
+      /** handing the task to the executor, null once handed over */
+      private volatile Thread _caller = Thread.currentThread();
+
+      private final Executor  _executor;
+
+      /** run by the thread handing it over, so handed back to the lane instead */
+      private boolean         _handedBack;
+
+      Slot(Runnable command, Executor executor) {
+        super(command);
+        _executor = executor;
+      }
+
+      @Override
+      public void run() {
+        if (_caller == Thread.currentThread()) {
+          _handedBack = true;
+          _queued.incrementAndGet();
+          _queue.offerFirst(decorated());
+          _inflight.decrementAndGet();
+          return;
+        }
+
+        try {
+          runDecorated();
+        } finally {
+          _inflight.decrementAndGet();
+          drain(_executor);
+        }
+      }
+    }
+
+    private final int             _capacity;
+
+    private final AtomicInteger   _inflight = new AtomicInteger();
+
+    private final int             _limit;
+
+    private final Monitor         _monitor;
+
+    /** of the abseil, also records rejected tasks */
+    private final Monitor         _parent;
+
+    private final String          _name;
+
+    private final AtomicInteger   _queued   = new AtomicInteger();
+
+    private final Deque<Runnable> _queue    = new ConcurrentLinkedDeque<>();
+
+    private final AtomicLong      _rejected = new AtomicLong();
+
+    /**
+     * @param name
+     *          - of the lane, the key of its tasks
+     * @param limit
+     *          - most tasks of the lane running at any given time
+     * @param capacity
+     *          - most tasks of the lane waiting for a slot
+     * @param parent
+     *          - monitor of the abseil
+     */
+    Lane(String name, int limit, int capacity, Monitor parent) {
+      if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+      if (capacity < 0) throw new IllegalArgumentException("capacity must be >= 0");
+      _name = name;
+      _limit = limit;
+      _capacity = capacity;
+      _monitor = new Monitor(limit);
+      _parent = parent;
+    }
+
+    /**
+     * Executes queued tasks while the lane has free slots, until the executor hands a task back
+     */
+    private void drain(Executor executor) {
+      while (!_queue.isEmpty()) {
+        int inflight = _inflight.get();
+        if (inflight >= _limit) return;
+        if (!_inflight.compareAndSet(inflight, inflight + 1)) continue;
+
+        Runnable command = _queue.poll();
+        if (command == null) {
+          _inflight.decrementAndGet();
+          continue;
+        }
+        _queued.decrementAndGet();
+
+        Slot slot = new Slot(command, executor);
+        try {
+          executor.execute(slot);
+        } catch (RejectedExecutionException e) {
+          if (!slot._handedBack) {
+            _inflight.decrementAndGet();
+            reject(e);
+          }
+        } finally {
+          slot._caller = null;
+        }
+
+        // no worker is free, the lane drains again as one of its tasks completes or the abseil drains the lanes
+        if (slot._handedBack) return;
+      }
+    }
+
+    /**
+     * Queues the command and executes it if the lane has a free slot
+     */
+    void execute(Executor executor, Runnable command) {
+      if (_queued.incrementAndGet() > _capacity + Math.max(0, _limit - _inflight.get())) {
+        _queued.decrementAndGet();
+        reject(new RejectedExecutionException("Lane " + _name + " is full"));
+        return;
+      }
+      _queue.add(command);
+      drain(executor);
+    }
+
+    public int getCapacity() {
+      return _capacity;
+    }
+
+    /**
+     * @return tasks of the lane currently running
+     */
+    public int getInflight() {
+      return _inflight.get();
+    }
+
+    public int getLimit() {
+      return _limit;
+    }
+
+    /**
+     * @return monitor of the tasks of the lane
+     */
+    public Monitor getMonitor() {
+      return _monitor;
+    }
+
+    public String getName() {
+      return _name;
+    }
+
+    /**
+     * @return tasks of the lane waiting for a slot
+     */
+    public int getQueued() {
+      return _queued.get();
+    }
+
+    /**
+     * @return tasks rejected because the lane was full
+     */
+    public long getRejected() {
+      return _rejected.get();
+    }
+
+    private void reject(RejectedExecutionException error) {
+      _rejected.incrementAndGet();
+      _monitor.rejected(error);
+      _parent.rejected(error);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder str = new StringBuilder(_name).append("=[");
+      str.append("limit=").append(getLimit()).append(", ");
+      str.append("inflight=").append(getInflight()).append(", ");
+      str.append("queued=").append(getQueued()).append(", ");
+      str.append("rejected=").append(getRejected()).append(", ");
+      str.append("monitor=").append(getMonitor());
+      return str.append("]").toString();
+    }
+  }
+
+  /** routes the tasks to their lane by name */
+  private final Function<Runnable, String> _key;
+
+  private final Map<String, Lane>          _lanes = new LinkedHashMap<>();
+
+  /** of the abseil */
+  private final Monitor                    _monitor;
+
+  /**
+   * @param key
+   *          - name of the lane of a task, null or an unknown name for none
+   * @param monitor
+   *          - of the abseil
+   */
+  Bulkhead(Function<Runnable, String> key, Monitor monitor) {
+    _key = key;
+    _monitor = monitor;
+  }
+
+  /**
+   * @param name
+   *          - of the lane, the key of its tasks
+   * @param limit
+   *          - most tasks of the lane running at any given time
+   * @param capacity
+   *          - most tasks of the lane waiting for a slot
+   * @return this bulkhead
+   */
+  Bulkhead add(String name, int limit, int capacity) {
+    _lanes.put(name, new Lane(name, limit, capacity, _monitor));
+    return this;
+  }
+
+  /**
+   * Stops the monitors of the lanes
+   */
+  void after() {
+    for (Lane lane : _lanes.values()) {
+      lane._monitor.after();
+    }
+  }
+
+  /**
+   * Starts the monitors of the lanes
+   */
+  void before() {
+    for (Lane lane : _lanes.values()) {
+      lane._monitor.before();
+    }
+  }
+
+  /**
+   * Executes the queued tasks of the lanes with free slots; a lane whose tasks were handed back, while no worker was
+   * free, and that has none running waits for this
+   *
+   * @param executor
+   *          - to execute the tasks with
+   */
+  void drain(Executor executor) {
+    for (Lane lane : _lanes.values()) {
+      lane.drain(executor);
+    }
+  }
+
+  /**
+   * Executes the command in the lane it was routed to, or directly when it wasn't routed
+   *
+   * @param executor
+   *          - to execute the command with
+   * @param command
+   *          - to execute
+   * @throws RejectedExecutionException
+   *           if the executor rejects a command that isn't in a lane
+   */
+  void execute(Executor executor, Runnable command) {
+    LaneRunnable routed = LaneRunnable.find(command);
+    Lane lane = (routed == null) ? null : _lanes.get(routed.getLane());
+    if (lane == null) executor.execute(command);
+    else lane.execute(executor, command);
+  }
+
+  /**
+   * @param name
+   *          - of the lane
+   * @return the lane, null if there is no lane of the name
+   */
+  public Lane getLane(String name) {
+    return _lanes.get(name);
+  }
+
+  public Collection<Lane> getLanes() {
+    return Collections.unmodifiableCollection(_lanes.values());
+  }
+
+  /**
+   * @return tasks of all lanes waiting for a slot
+   */
+  public int getQueued() {
+    int queued = 0;
+    for (Lane lane : _lanes.values()) {
+      queued += lane.getQueued();
+    }
+    return queued;
+  }
+
+  /**
+   * Routes the task to its lane
+   *
+   * @param task
+   *          - to key
+   * @param command
+   *          - monitored command of the task
+   * @return the command monitored by its lane, the command itself when the task isn't in a lane
+   */
+  Runnable route(Runnable task, Runnable command) {
+    String key = _key.apply(task);
+    Lane lane = (key == null) ? null : _lanes.get(key);
+    return (lane == null) ? command : new LaneRunnable(command, lane.getName(), lane.getMonitor());
+  }
+
+  @Override
+  public String toString() {
+    return _lanes.values().toString();
+  }
+}
@@ -0,0 +1,270 @@
+package org.storm.abseil;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Bounded aggregation of task failures. Failures are grouped by exception type and the top frame of their stack trace;
+ * each group keeps a count, the first and last time it was seen and a small random sample of the actual
+ * {@link Throwable}s. Memory stays constant no matter how many tasks fail.
+ * </p>
+ * <p>
+ * Once {@link #MAX_GROUPS} groups exist new failures are grouped by exception type alone and, when that is full too,
+ * into a single overflow group.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class Failures implements Serializable {
+  /**
+   * Counts of a failure group without its samples; compact, and holds nothing but strings and numbers so it is safe to
+   * send to another process
+   */
+  public static final class Count implements Serializable {
+    private static final long serialVersionUID = -4387361079722014655L;
+
+    private final long        _count;
+
+    private final long        _first;
+
+    private final String      _frame;
+
+    private final long        _last;
+
+    private final String      _type;
+
+    private Count(Failure failure) {
+      _type = failure.getType();
+      _frame = failure.getFrame();
+      _count = failure.getCount();
+      _first = failure.getFirst();
+      _last = failure.getLast();
+    }
+
+    @Override
+    public String toString() {
+      return _type + (_frame == null ? "" : " at " + _frame) + " x" + _count;
+    }
+  }
+
+  /**
+   * Failures of the same exception type thrown from the same frame
+   */
+  public static class Failure implements Serializable {
+    private static final long                     serialVersionUID = 2590787931002000766L;
+
+    private final LongAdder                       _count           = new LongAdder();
+
+    /** first failure, millis */
+    private final AtomicLong                      _first           = new AtomicLong(Long.MAX_VALUE);
+
+    /** top stack frame of the failures, null if not grouped by frame */
+    private final String                          _frame;
+
+    /** last failure, millis */
+    private final AtomicLong                      _last            = new AtomicLong(Long.MIN_VALUE);
+
+    /** reservoir sample of the failures */
+    private final AtomicReferenceArray<Throwable> _samples         = new AtomicReferenceArray<>(SAMPLES);
+
+    private final String                          _type;
+
+    Failure(String type, String frame) {
+      _type = type;
+      _frame = frame;
+    }
+
+    /**
+     * @return number of failures
+     */
+    public long getCount() {
+      return _count.sum();
+    }
+
+    /**
+     * @return time of the first failure, millis
+     */
+    public long getFirst() {
+      return _first.get();
+    }
+
+    /**
+     * @return top stack frame of the failures, null if they aren't grouped by frame
+     */
+    public String getFrame() {
+      return _frame;
+    }
+
+    /**
+     * @return time of the last failure, millis
+     */
+    public long getLast() {
+      return _last.get();
+    }
+
+    /**
+     * @return a random sample of the failures, at most {@link Failures#SAMPLES}
+     */
+    public List<Throwable> getSamples() {
+      List<Throwable> samples = new ArrayList<>(SAMPLES);
+      for (int i = 0; i < SAMPLES; i++) {
+        Throwable sample = _samples.get(i);
+        if (sample != null) samples.add(sample);
+      }
+      return samples;
+    }
+
+    /**
+     * @return exception type name of the failures
+     */
+    public String getType() {
+      return _type;
+    }
+
+    private void merge(Count other) {
+      _count.add(other._count);
+      _first.accumulateAndGet(other._first, Math::min);
+      _last.accumulateAndGet(other._last, Math::max);
+    }
+
+    private void merge(Failure other) {
+      _count.add(other.getCount());
+      _first.accumulateAndGet(other.getFirst(), Math::min);
+      _last.accumulateAndGet(other.getLast(), Math::max);
+      for (Throwable sample : other.getSamples()) {
+        sample(sample, ThreadLocalRandom.current().nextLong(getCount()) + 1);
+      }
+    }
+
+    private void record(Throwable error, long at) {
+      _count.increment();
+      if (at < _first.get()) _first.accumulateAndGet(at, Math::min);
+      if (at > _last.get()) _last.accumulateAndGet(at, Math::max);
+      sample(error, getCount());
+    }
+
+    /**
+     * Reservoir sampling; the nth failure replaces a random sample with a probability of SAMPLES / n
+     */
+    private void sample(Throwable error, long n) {
+      if (n <= SAMPLES) {
+        _samples.compareAndSet((int) n - 1, null, error);
+      } else {
+        long i = ThreadLocalRandom.current().nextLong(n);
+        if (i < SAMPLES) _samples.set((int) i, error);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return _type + (_frame == null ? "" : " at " + _frame) + " x" + getCount();
+    }
+  }
+
+  /** most failure groups kept */
+  public static final int                      MAX_GROUPS       = 128;
+
+  /** most throwables sampled per group */
+  public static final int                      SAMPLES          = 4;
+
+  /** group type of failures that didn't fit in any other group */
+  static final String                          OVERFLOW         = "overflow";
+
+  private static final long                    serialVersionUID = -1706934006210312931L;
+
+  private final ConcurrentMap<String, Failure> _groups          = new ConcurrentHashMap<>();
+
+  private final LongAdder                      _total           = new LongAdder();
+
+  /**
+   * @return counts of the failure groups, without their samples
+   */
+  Count[] counts() {
+    List<Count> counts = new ArrayList<>(_groups.size());
+    for (Failure failure : _groups.values()) {
+      counts.add(new Count(failure));
+    }
+    return counts.toArray(new Count[0]);
+  }
+
+  /**
+   * @return total number of failures
+   */
+  public long getCount() {
+    return _total.sum();
+  }
+
+  /**
+   * @return failure groups
+   */
+  public Collection<Failure> getFailures() {
+    return Collections.unmodifiableCollection(_groups.values());
+  }
+
+  /**
+   * Finds or creates the group of the type and frame, falling back to coarser groups when full
+   */
+  private Failure group(String type, String frame) {
+    String key = (frame == null) ? type : type + '@' + frame;
+    Failure failure = _groups.get(key);
+    if (failure != null) return failure;
+
+    if (_groups.size() < MAX_GROUPS) return _groups.computeIfAbsent(key, (k) -> new Failure(type, frame));
+    if (frame != null) return group(type, null);
+    return _groups.computeIfAbsent(OVERFLOW, (k) -> new Failure(OVERFLOW, null));
+  }
+
+  /**
+   * Adds the failures of another aggregation to this aggregation
+   *
+   * @param other
+   *          - failures to add
+   * @return this aggregation
+   */
+  public Failures merge(Failures other) {
+    for (Failure failure : other._groups.values()) {
+      group(failure.getType(), failure.getFrame()).merge(failure);
+    }
+    _total.add(other.getCount());
+    return this;
+  }
+
+  /**
+   * Adds the counts of another aggregation, without samples, to this aggregation
+   *
+   * @param counts
+   *          - of the failure groups to add
+   * @param total
+   *          - number of failures counted
+   * @return this aggregation
+   */
+  Failures merge(Count[] counts, long total) {
+    for (Count count : counts) {
+      group(count._type, count._frame).merge(count);
+    }
+    _total.add(total);
+    return this;
+  }
+
+  /**
+   * @param error
+   *          - task failure to record
+   */
+  public void record(Throwable error) {
+    StackTraceElement[] trace = error.getStackTrace();
+    String frame = (trace.length > 0) ? trace[0].toString() : null;
+
+    group(error.getClass().getName(), frame).record(error, System.currentTimeMillis());
+    _total.increment();
+  }
+}
@@ -1,50 +1,188 @@
 package org.storm.abseil;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.storm.abseil.utils.Histogram;
 import org.storm.abseil.utils.Time;
 
 /**
  * Monitors the execution of an Abseil. Each task {@link #start()} is recorded in thread local but all other values are
- * an aggregation of all {@link #start()} and {@link #stop()} tasks.
+ * an aggregation of all {@link #start()} and {@link #stop()} tasks. Task runtimes are measured in nanoseconds and
+ * recorded in a latency {@link Histogram} for percentiles.
+ * <p>
+ * Counters are {@link LongAdder}s, striped per thread and summed on read, so recording cost stays flat as the number of
+ * task threads grows. Values that depend on each other are derived at read time (active = started - completed, average
+ * = aggregate / completed) and read in an order that keeps them consistent; {@link #snapshot()} freezes all of them.
+ * </p>
+ * <p>
+ * Latency histograms take 36 KB per stripe, allocated as threads first record to it; a monitor recorded by many
+ * threads grows to {@link Histogram#STRIPES} stripes, about 300 KB, and each priority adds a single stripe. Monitors
+ * recorded by a few threads, like those of a lane, a lease or a snapshot, are made with fewer stripes; see
+ * {@link #Monitor(int)}.
+ * </p>
  * 
  * @author Timothy Storm
  */
-public class Monitor implements Serializable {
+public class Monitor implements Serializable, MonitorMXBean {
+  /**
+   * Notified of each task outcome as it is recorded, on the thread that ran the task
+   */
+  public interface Listener {
+    void failed(Throwable error);
+
+    void succeeded();
+  }
+
+  /**
+   * Counters and merged latency histograms of a monitor without the failure samples or duration; a few KB at most, and
+   * holds nothing but numbers and strings, for reporting a monitor to another process
+   *
+   * @see Monitor#summarize()
+   * @see Monitor#merge(Summary)
+   */
+  public static final class Summary implements Serializable {
+    private static final long          serialVersionUID = -6091784245330541137L;
+
+    private final long                 _aggregate;
+
+    private final long                 _dropped;
+
+    private final long                 _fail;
+
+    private final Failures.Count[]     _fails;
+
+    private final long                 _giveUps;
+
+    private final Histogram.Snapshot   _latency;
+
+    /** priorities of the prioritized tasks, in the order of their latency */
+    private final int[]                _priorities;
+
+    private final Histogram.Snapshot[] _priorityLatency;
+
+    private final long                 _retries;
+
+    private final long                 _success;
+
+    private final long                 _timeouts;
+
+    private final long                 _total;
+
+    private Summary(Monitor monitor) {
+      // completed before started, like merge
+      _latency = monitor._latency.snapshot();
+      _aggregate = monitor._aggregate.sum();
+      _success = monitor._success.sum();
+      _total = monitor._total.sum();
+      _timeouts = monitor._timeouts.sum();
+      _retries = monitor._retries.sum();
+      _giveUps = monitor._giveUps.sum();
+      _dropped = monitor._dropped.sum();
+      _fail = monitor._fails.getCount();
+      _fails = monitor._fails.counts();
+
+      List<Map.Entry<Integer, Histogram>> priorities = new ArrayList<>(monitor._priorities.entrySet());
+      _priorities = new int[priorities.size()];
+      _priorityLatency = new Histogram.Snapshot[priorities.size()];
+      for (int i = 0; i < _priorities.length; i++) {
+        _priorities[i] = priorities.get(i).getKey();
+        _priorityLatency[i] = priorities.get(i).getValue().snapshot();
+      }
+    }
+  }
+
+  /** most priorities whose latency is recorded */
+  public static final int                            MAX_PRIORITIES   = 64;
+
   /** start of thread local task */
-  private static final ThreadLocal<Long> _startAt         = new ThreadLocal<>();
+  private static final ThreadLocal<Long>             _startAt         = new ThreadLocal<>();
 
-  private static final long              serialVersionUID = 7768380445612685440L;
+  private static final long                          serialVersionUID = 7768380445612685440L;
 
-  /** active monitored tasks */
-  private final AtomicLong               _active          = new AtomicLong();
+  /** aggregate monitored task time, nanos */
+  private final LongAdder                            _aggregate       = new LongAdder();
 
-  /** aggregate monitored task time */
-  private final AtomicLong               _aggregate       = new AtomicLong();
+  /** results of completed tasks dropped because their consumer failed or cancelled */
+  private final LongAdder                            _dropped         = new LongAdder();
 
-  /** average monitored task time */
-  private final AtomicLong               _average         = new AtomicLong();
+  /** tasks that failed for good after retrying */
+  private final LongAdder                            _giveUps         = new LongAdder();
 
-  /** failed task count */
-  private final Queue<Throwable>         _fails           = new ConcurrentLinkedQueue<>();
+  /** failed tasks, aggregated by type and frame */
+  private final Failures                             _fails           = new Failures();
 
   /** monitor duration */
-  private Long                           _duration;
+  private Long                                       _duration;
+
+  /** notified of task outcomes, null until one is added; not carried by snapshots or serialization */
+  private transient volatile List<Listener>          _listeners;
+
+  /** monitored task runtimes, nanos; its count is the completed tasks */
+  private final Histogram                            _latency;
+
+  /** latency counts of a snapshot, read by all its percentiles; null while recording */
+  private transient Histogram.Snapshot               _latencyCounts;
+
+  /** latency of prioritized tasks by priority, from creation to completion, nanos */
+  private final ConcurrentMap<Integer, Histogram>    _priorities      = new ConcurrentSkipListMap<>();
+
+  /** priority latency counts of a snapshot, read by all its percentiles; null while recording */
+  private transient Map<Integer, Histogram.Snapshot> _priorityCounts;
+
+  /** retries scheduled */
+  private final LongAdder                            _retries         = new LongAdder();
 
   /** starting time of monitor **/
-  private final AtomicLong               _start           = new AtomicLong();
+  private final AtomicLong                           _start           = new AtomicLong();
 
   /** successfully completed tasks */
-  private final AtomicLong               _success         = new AtomicLong();
+  private final LongAdder                            _success         = new LongAdder();
+
+  /** tasks that exceeded their time budget */
+  private final LongAdder                            _timeouts        = new LongAdder();
 
   /** total monitored tasks */
-  private final AtomicLong               _total           = new AtomicLong();
+  private final LongAdder                            _total           = new LongAdder();
+
+  /**
+   * Monitor recorded by any number of threads
+   */
+  public Monitor() {
+    this(Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param threads
+   *          - most threads recording at once; the latency is striped over no more than that, up to
+   *          {@link Histogram#STRIPES}
+   */
+  public Monitor(int threads) {
+    if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+    _latency = new Histogram(Math.min(threads, Histogram.STRIPES));
+  }
+
+  /**
+   * @param listener
+   *          - to notify of task outcomes
+   */
+  public synchronized void addListener(Listener listener) {
+    if (_listeners == null) _listeners = new CopyOnWriteArrayList<>();
+    _listeners.add(listener);
+  }
 
   public Monitor after() {
     _duration = System.currentTimeMillis() - _start.get();
@@ -68,7 +206,7 @@ public class Monitor implements Serializable {
     equal = getSuccess().equals(other.getSuccess());
     if (!equal) return false;
 
-    equal = getFail().equals(other.getFails());
+    equal = getFail().equals(other.getFail());
     if (!equal) return false;
 
     equal = getAverage().equals(other.getAverage());
@@ -80,52 +218,226 @@ public class Monitor implements Serializable {
     return equal;
   }
 
+  /**
+   * Counts results of completed tasks that were dropped rather than consumed
+   *
+   * @param count
+   *          - of the dropped results
+   */
+  public void dropped(long count) {
+    _dropped.add(count);
+  }
+
   public void fail(Throwable error) {
-    _fails.add(error);
+    _fails.record(error);
+
+    List<Listener> listeners = _listeners;
+    if (listeners == null) return;
+    for (Listener listener : listeners) {
+      listener.failed(error);
+    }
+  }
+
+  /**
+   * Counts a task that was rejected before it started as a task that failed at once, so the total, completed and
+   * failed tasks still add up; the listeners aren't told, a rejection says nothing of how the tasks fare
+   *
+   * @param error
+   *          - the task was rejected with
+   */
+  void rejected(Throwable error) {
+    long startedAt = startTask();
+    _fails.record(error);
+    stopTask(startedAt);
+  }
+
+  /**
+   * Counts a task that failed for good after retrying
+   */
+  public void giveUp() {
+    _giveUps.increment();
   }
 
   /**
    * @return number of tasks started but not completed
    */
   public Long getActive() {
-    return _active.get();
+    // completed before started, a task is always started before it completes
+    long completed = _latency.getCount();
+    return Math.max(0, _total.sum() - completed);
   }
 
   /**
    * @return aggregate runtime of all completed tasks
    */
   public Long getAggregate() {
-    return _aggregate.get();
+    return TimeUnit.NANOSECONDS.toMillis(_aggregate.sum());
+  }
+
+  /**
+   * @return aggregate runtime of all completed tasks, nanos
+   */
+  long getAggregateNanos() {
+    return _aggregate.sum();
   }
 
   /**
    * @return average runtime of monitored tasks
    */
   public Long getAverage() {
-    return _average.get();
+    long aggregate = _aggregate.sum();
+    long completed = _latency.getCount();
+    return (completed <= 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(aggregate / completed);
+  }
+
+  /**
+   * @return number of monitored tasks that have completed, successfully or not
+   */
+  public Long getCompleted() {
+    return _latency.getCount();
+  }
+
+  /**
+   * @return number of failed tasks
+   */
+  public Long getFail() {
+    return _fails.getCount();
+  }
+
+  /**
+   * @return failed tasks grouped by exception type and top stack frame, each with a count, first and last occurrence
+   *         and a sample of the exceptions; bounded no matter how many tasks fail
+   */
+  public Collection<Failures.Failure> getFails() {
+    return _fails.getFailures();
   }
 
-  public Integer getFail() {
-    return _fails.size();
+  /**
+   * @return number of retried tasks that failed for good; out of attempts or retry budget
+   * @see org.storm.abseil.runnable.RetryRunnable
+   */
+  public Long getGiveUps() {
+    return _giveUps.sum();
   }
 
-  public Collection<Throwable> getFails() {
-    return Collections.unmodifiableCollection(_fails);
+  /**
+   * @return number of results dropped because their consumer failed or cancelled
+   * @see AbseilResults
+   */
+  public Long getDropped() {
+    return _dropped.sum();
   }
 
   public Long getDuration() {
     return _duration;
   }
 
+  /**
+   * @return longest runtime of monitored tasks, nanos
+   */
+  public Long getMax() {
+    return _latency.getMax();
+  }
+
+  /**
+   * @return median runtime of monitored tasks, nanos
+   */
+  public Long getP50() {
+    return getPercentile(50.0);
+  }
+
+  /**
+   * @return 90th percentile runtime of monitored tasks, nanos
+   */
+  public Long getP90() {
+    return getPercentile(90.0);
+  }
+
+  /**
+   * @return 99th percentile runtime of monitored tasks, nanos
+   */
+  public Long getP99() {
+    return getPercentile(99.0);
+  }
+
+  /**
+   * @return 99.9th percentile runtime of monitored tasks, nanos
+   */
+  public Long getP999() {
+    return getPercentile(99.9);
+  }
+
+  /**
+   * @param percentile
+   *          - 0.0 to 100.0
+   * @return runtime, nanos, that the percentage of monitored tasks completed within
+   */
+  public Long getPercentile(double percentile) {
+    Histogram.Snapshot counts = _latencyCounts;
+    return (counts == null) ? _latency.getValueAtPercentile(percentile) : counts.getValueAtPercentile(percentile);
+  }
+
+  /**
+   * @return priorities of the prioritized tasks that completed, most urgent first
+   * @see org.storm.abseil.runnable.PrioritizedRunnable
+   */
+  public Set<Integer> getPriorities() {
+    return Collections.unmodifiableSet(_priorities.keySet());
+  }
+
+  /**
+   * @param priority
+   *          - of the tasks
+   * @return number of completed tasks of the priority
+   */
+  public Long getPriorityCount(int priority) {
+    Histogram latency = _priorities.get(priority);
+    return (latency == null) ? 0 : latency.getCount();
+  }
+
+  /**
+   * @param priority
+   *          - of the tasks
+   * @param percentile
+   *          - 0.0 to 100.0
+   * @return latency, nanos, from creation to completion that the percentage of tasks of the priority completed within
+   */
+  public Long getPriorityPercentile(int priority, double percentile) {
+    Map<Integer, Histogram.Snapshot> counts = _priorityCounts;
+    if (counts != null) {
+      Histogram.Snapshot latency = counts.get(priority);
+      return (latency == null) ? 0 : latency.getValueAtPercentile(percentile);
+    }
+
+    Histogram latency = _priorities.get(priority);
+    return (latency == null) ? 0 : latency.getValueAtPercentile(percentile);
+  }
+
+  /**
+   * @return number of retries; each attempt of a retried task is counted in the total and as a success or failure
+   * @see org.storm.abseil.runnable.RetryRunnable
+   */
+  public Long getRetries() {
+    return _retries.sum();
+  }
+
   public Long getSuccess() {
-    return _success.get();
+    return _success.sum();
+  }
+
+  /**
+   * @return number of tasks that exceeded their time budget, also counted as failed
+   * @see org.storm.abseil.runnable.TimeBoxedRunnable
+   */
+  public Long getTimeouts() {
+    return _timeouts.sum();
   }
 
   /**
    * @return total number of monitored tasks that have been started
    */
   public Long getTotal() {
-    return _total.get();
+    return _total.sum();
   }
 
   @Override
@@ -133,37 +445,193 @@ public class Monitor implements Serializable {
     return Objects.hash(getTotal(), getSuccess(), getFail(), getAverage(), getAggregate());
   }
 
+  /**
+   * Adds the tasks monitored by another monitor to this monitor; for combining the monitors of separate abseils. The
+   * duration becomes the longest of the two.
+   * 
+   * @param other
+   *          - monitor to add
+   * @return this monitor
+   */
+  public Monitor merge(Monitor other) {
+    _latencyCounts = null;
+    _priorityCounts = null;
+
+    // completed before started, keeps active from going negative
+    _latency.merge(other._latency);
+    _aggregate.add(other._aggregate.sum());
+    _success.add(other._success.sum());
+    _total.add(other._total.sum());
+    _timeouts.add(other._timeouts.sum());
+    _retries.add(other._retries.sum());
+    _giveUps.add(other._giveUps.sum());
+    _dropped.add(other._dropped.sum());
+    _fails.merge(other._fails);
+    for (Map.Entry<Integer, Histogram> priority : other._priorities.entrySet()) {
+      _priorities.computeIfAbsent(priority.getKey(), (p) -> new Histogram(1)).merge(priority.getValue());
+    }
+
+    if (other._duration != null) _duration = (_duration == null) ? other._duration : Math.max(_duration,
+        other._duration);
+    return this;
+  }
+
+  /**
+   * Adds the tasks of a monitor summarized in another process to this monitor; failures are counted without samples
+   *
+   * @param summary
+   *          - of the monitor to add
+   * @return this monitor
+   */
+  public Monitor merge(Summary summary) {
+    _latencyCounts = null;
+    _priorityCounts = null;
+
+    // completed before started, keeps active from going negative
+    _latency.merge(summary._latency);
+    _aggregate.add(summary._aggregate);
+    _success.add(summary._success);
+    _total.add(summary._total);
+    _timeouts.add(summary._timeouts);
+    _retries.add(summary._retries);
+    _giveUps.add(summary._giveUps);
+    _dropped.add(summary._dropped);
+    _fails.merge(summary._fails, summary._fail);
+    for (int i = 0; i < Math.min(summary._priorities.length, summary._priorityLatency.length); i++) {
+      _priorities.computeIfAbsent(summary._priorities[i], (p) -> new Histogram(1)).merge(summary._priorityLatency[i]);
+    }
+    return this;
+  }
+
+  /**
+   * @return copy of this monitor's current values that no longer changes; its percentiles are all read from the same
+   *         counts
+   */
+  public Monitor snapshot() {
+    Monitor snapshot = new Monitor(1).merge(this);
+    snapshot._start.set(_start.get());
+
+    Map<Integer, Histogram.Snapshot> priorities = new HashMap<>();
+    for (Map.Entry<Integer, Histogram> priority : snapshot._priorities.entrySet()) {
+      priorities.put(priority.getKey(), priority.getValue().snapshot());
+    }
+    snapshot._latencyCounts = snapshot._latency.snapshot();
+    snapshot._priorityCounts = priorities;
+    return snapshot;
+  }
+
+  /**
+   * Records the latency of a prioritized task; at most {@link #MAX_PRIORITIES} priorities are recorded
+   * 
+   * @param priority
+   *          - of the task
+   * @param latency
+   *          - from creation to completion of the task, nanos
+   */
+  public void recordPriority(int priority, long latency) {
+    Histogram histogram = _priorities.get(priority);
+    if (histogram == null) {
+      if (_priorities.size() >= MAX_PRIORITIES) return;
+      // rarely recorded concurrently, a stripe each keeps up to MAX_PRIORITIES histograms small
+      histogram = _priorities.computeIfAbsent(priority, (p) -> new Histogram(1));
+    }
+    histogram.record(latency);
+  }
+
+  /**
+   * Counts a retry of a failed task
+   */
+  public void retry() {
+    _retries.increment();
+  }
+
   /**
    * Start monitoring thread local process
    */
   public void start() {
-    _startAt.set(System.currentTimeMillis());
-    _total.incrementAndGet();
-    _active.incrementAndGet();
+    _startAt.set(startTask());
+  }
+
+  /**
+   * Start monitoring a task without thread local state
+   * 
+   * @return start of the task, nanos, to {@link #stopTask(long)} it with
+   */
+  public long startTask() {
+    _total.increment();
+    return System.nanoTime();
   }
 
   public void stop() {
-    final long total = _total.get();
-    final long runtime = System.currentTimeMillis() - _startAt.get();
+    stopTask(_startAt.get());
+  }
 
-    _aggregate.addAndGet(runtime);
-    _active.decrementAndGet();
-    _average.updateAndGet((avg) -> (avg * (total - 1) + runtime) / total);
+  /**
+   * Stop monitoring a task started with {@link #startTask()}
+   * 
+   * @param startedAt
+   *          - start of the task, nanos
+   */
+  public void stopTask(long startedAt) {
+    final long runtime = System.nanoTime() - startedAt;
+
+    _aggregate.add(runtime);
+    _latency.record(runtime);
   }
 
   public void success() {
-    _success.incrementAndGet();
+    _success.increment();
+
+    List<Listener> listeners = _listeners;
+    if (listeners == null) return;
+    for (Listener listener : listeners) {
+      listener.succeeded();
+    }
+  }
+
+  /**
+   * @return compact summary of this monitor's current values, to {@link #merge(Summary)} into a monitor of another
+   *         process
+   */
+  public Summary summarize() {
+    return new Summary(this);
+  }
+
+  /**
+   * Counts a task that exceeded its time budget
+   */
+  public void timeout() {
+    _timeouts.increment();
   }
 
   @Override
   public String toString() {
+    return snapshot().format();
+  }
+
+  private String format() {
     StringBuilder str = new StringBuilder("[");
     str.append("total=").append(getTotal()).append(", ");
     str.append("success=").append(getSuccess()).append(", ");
     str.append("fail=").append(getFail()).append(", ");
+    str.append("timeouts=").append(getTimeouts()).append(", ");
+    str.append("retries=").append(getRetries()).append(", ");
+    str.append("giveUps=").append(getGiveUps()).append(", ");
+    str.append("dropped=").append(getDropped()).append(", ");
     str.append("average=").append(Time.formatMillis(getAverage())).append(", ");
     str.append("aggregate=").append(Time.formatMillis(getAggregate())).append(", ");
+    str.append("p50=").append(Time.formatNanos(getP50())).append(", ");
+    str.append("p90=").append(Time.formatNanos(getP90())).append(", ");
+    str.append("p99=").append(Time.formatNanos(getP99())).append(", ");
+    str.append("p99.9=").append(Time.formatNanos(getP999())).append(", ");
+    str.append("max=").append(Time.formatNanos(getMax())).append(", ");
     str.append("duration=").append(Time.formatMillis(getDuration()));
+    for (Integer priority : getPriorities()) {
+      str.append(", priority ").append(priority).append("=[");
+      str.append("count=").append(getPriorityCount(priority)).append(", ");
+      str.append("p50=").append(Time.formatNanos(getPriorityPercentile(priority, 50.0))).append(", ");
+      str.append("p99=").append(Time.formatNanos(getPriorityPercentile(priority, 99.0))).append("]");
+    }
     return str.append("]").toString();
   }
 }
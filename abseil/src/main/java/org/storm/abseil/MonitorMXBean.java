@@ -0,0 +1,52 @@
+package org.storm.abseil;
+
+/**
+ * Management interface of a {@link Monitor}; each running {@link Abseil} registers its monitor with the platform
+ * MBeanServer as {@value AbseilMetrics#DOMAIN}:type=Monitor,name=&lt;abseil name&gt; until it shuts down. Runtimes are
+ * nanos unless noted otherwise.
+ *
+ * @author Timothy Storm
+ * @see AbseilMetrics
+ */
+public interface MonitorMXBean {
+  Long getActive();
+
+  /**
+   * @return aggregate runtime of all completed tasks, millis
+   */
+  Long getAggregate();
+
+  /**
+   * @return average runtime of completed tasks, millis
+   */
+  Long getAverage();
+
+  Long getCompleted();
+
+  /**
+   * @return results dropped because their consumer failed or cancelled
+   */
+  Long getDropped();
+
+  Long getFail();
+
+  Long getGiveUps();
+
+  Long getMax();
+
+  Long getP50();
+
+  Long getP90();
+
+  Long getP99();
+
+  Long getP999();
+
+  Long getRetries();
+
+  Long getSuccess();
+
+  Long getTimeouts();
+
+  Long getTotal();
+}
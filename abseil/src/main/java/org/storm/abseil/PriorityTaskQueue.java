@@ -0,0 +1,274 @@
+package org.storm.abseil;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.storm.abseil.runnable.PrioritizedRunnable;
+
+/**
+ * <p>
+ * Bounded work queue that hands out tasks earliest deadline first rather than first in, first out. The deadline of a
+ * task is that of the {@link PrioritizedRunnable} it is or decorates; any other task is due when it is queued, like the
+ * most urgent priority. Tasks with the same deadline are handed out in the order they were queued.
+ * </p>
+ * <p>
+ * Blocks, or refuses offers, when full like {@link java.util.concurrent.ArrayBlockingQueue}. The iterator is a
+ * snapshot in no particular order.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+class PriorityTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+  /**
+   * Queued task and its place in the queue
+   */
+  private static final class Entry implements Comparable<Entry> {
+    final long     _deadline, _sequence;
+
+    final Runnable _task;
+
+    Entry(Runnable task, long deadline, long sequence) {
+      _task = task;
+      _deadline = deadline;
+      _sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(Entry other) {
+      long diff = _deadline - other._deadline;
+      if (diff != 0) return (diff < 0) ? -1 : 1;
+      return Long.compare(_sequence, other._sequence);
+    }
+  }
+
+  private final int                  _capacity;
+
+  private final PriorityQueue<Entry> _entries  = new PriorityQueue<>();
+
+  private final ReentrantLock        _lock     = new ReentrantLock();
+
+  private final Condition            _notEmpty = _lock.newCondition();
+
+  private final Condition            _notFull  = _lock.newCondition();
+
+  /** queue order, guarded by the lock */
+  private long                       _sequence;
+
+  /**
+   * @param capacity
+   *          - most queued tasks
+   */
+  PriorityTaskQueue(int capacity) {
+    if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+    _capacity = capacity;
+  }
+
+  @Override
+  public void clear() {
+    _lock.lock();
+    try {
+      _entries.clear();
+      _notFull.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @return the next task, the lock must be held and the queue not empty
+   */
+  private Runnable dequeue() {
+    Runnable task = _entries.poll()._task;
+    _notFull.signal();
+    return task;
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c, int maxElements) {
+    if (c == this) throw new IllegalArgumentException();
+
+    _lock.lock();
+    try {
+      int drained = 0;
+      while (drained < maxElements && !_entries.isEmpty()) {
+        c.add(dequeue());
+        drained++;
+      }
+      return drained;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Queues the task, the lock must be held and the queue not full
+   */
+  private void enqueue(Runnable task) {
+    PrioritizedRunnable prioritized = PrioritizedRunnable.find(task);
+    long deadline = (prioritized == null) ? System.nanoTime() : prioritized.getDeadline();
+    _entries.add(new Entry(task, deadline, _sequence++));
+    _notEmpty.signal();
+  }
+
+  @Override
+  public Iterator<Runnable> iterator() {
+    _lock.lock();
+    try {
+      List<Runnable> tasks = new ArrayList<>(_entries.size());
+      for (Entry entry : _entries) {
+        tasks.add(entry._task);
+      }
+      return tasks.iterator();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(Runnable task) {
+    if (task == null) throw new NullPointerException();
+
+    _lock.lock();
+    try {
+      if (_entries.size() >= _capacity) return false;
+      enqueue(task);
+      return true;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+    if (task == null) throw new NullPointerException();
+
+    long nanos = unit.toNanos(timeout);
+    _lock.lockInterruptibly();
+    try {
+      while (_entries.size() >= _capacity) {
+        if (nanos <= 0) return false;
+        nanos = _notFull.awaitNanos(nanos);
+      }
+      enqueue(task);
+      return true;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable peek() {
+    _lock.lock();
+    try {
+      Entry entry = _entries.peek();
+      return (entry == null) ? null : entry._task;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll() {
+    _lock.lock();
+    try {
+      return _entries.isEmpty() ? null : dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    _lock.lockInterruptibly();
+    try {
+      while (_entries.isEmpty()) {
+        if (nanos <= 0) return null;
+        nanos = _notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(Runnable task) throws InterruptedException {
+    if (task == null) throw new NullPointerException();
+
+    _lock.lockInterruptibly();
+    try {
+      while (_entries.size() >= _capacity) {
+        _notFull.await();
+      }
+      enqueue(task);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    _lock.lock();
+    try {
+      return _capacity - _entries.size();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (o == null) return false;
+
+    _lock.lock();
+    try {
+      for (Iterator<Entry> entries = _entries.iterator(); entries.hasNext();) {
+        if (entries.next()._task.equals(o)) {
+          entries.remove();
+          _notFull.signal();
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    _lock.lock();
+    try {
+      return _entries.size();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    _lock.lockInterruptibly();
+    try {
+      while (_entries.isEmpty()) {
+        _notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.storm.abseil;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>
+ * Runs the tasks of a {@link Spliterator} on a {@link ForkJoinPool}. Each action splits its tasks in half, forking one
+ * half for an idle worker to steal, until the tasks are below a threshold and then runs them one after the other. The
+ * workers find their own work so there is no single dispatch thread or shared queue between the tasks and the workers.
+ * </p>
+ * <p>
+ * Each task is monitored like a {@link org.storm.abseil.runnable.BatchRunnable} task; a failed task is recorded and the
+ * rest still run. Splitting and running stop as soon as the abseil stops running.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+class SpliteratorAction extends RecursiveAction {
+  private static final long                     serialVersionUID = 5204813655383493147L;
+
+  /**
+   * Tasks per leaf so that every worker gets about 4 leaves; sized like the leaves of a parallel stream
+   *
+   * @param tasks
+   *          - to be split
+   * @param parallelism
+   *          - of the pool the tasks run on
+   * @return most tasks a leaf action runs without splitting
+   */
+  static long threshold(Spliterator<?> tasks, int parallelism) {
+    return Math.max(1, tasks.estimateSize() / (parallelism << 2));
+  }
+
+  private final Monitor                         _monitor;
+
+  /** forked sibling actions to join, most recent first */
+  private SpliteratorAction                     _next;
+
+  /** if the tasks should keep running */
+  private final BooleanSupplier                 _running;
+
+  private final Spliterator<? extends Runnable> _tasks;
+
+  private final long                            _threshold;
+
+  /**
+   * @param tasks
+   *          - to run
+   * @param monitor
+   *          - of the tasks
+   * @param running
+   *          - if the tasks should keep running, checked before every split and task
+   * @param threshold
+   *          - most tasks run without splitting; see {@link #threshold(Spliterator, int)}
+   */
+  SpliteratorAction(Spliterator<? extends Runnable> tasks, Monitor monitor, BooleanSupplier running, long threshold) {
+    _tasks = tasks;
+    _monitor = monitor;
+    _running = running;
+    _threshold = threshold;
+  }
+
+  @Override
+  protected void compute() {
+    SpliteratorAction forks = null;
+
+    Spliterator<? extends Runnable> split;
+    while (_tasks.estimateSize() > _threshold && _running.getAsBoolean() && (split = _tasks.trySplit()) != null) {
+      SpliteratorAction fork = new SpliteratorAction(split, _monitor, _running, _threshold);
+      fork._next = forks;
+      forks = fork;
+      fork.fork();
+    }
+
+    while (_running.getAsBoolean() && _tasks.tryAdvance(this::run)) {}
+
+    // most recent first; likely still in this worker's queue if nobody stole it
+    for (SpliteratorAction fork = forks; fork != null; fork = fork._next) {
+      fork.quietlyJoin();
+    }
+  }
+
+  private void run(Runnable task) {
+    final long startedAt = _monitor.startTask();
+    try {
+      task.run();
+      _monitor.success();
+    } catch (Throwable error) {
+      _monitor.fail(error);
+    } finally {
+      _monitor.stopTask(startedAt);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package org.storm.abseil;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * {@link ExecutorService} that starts a new thread for every task, virtual threads when the JVM supports them, rather
+ * than pooling platform threads. Concurrency is limited by a {@link Semaphore} instead of a pool size and work queue;
+ * {@link #execute(Runnable)} blocks the caller until a permit is free which throttles the Abseil dispatch loop the same
+ * way a full queue would.
+ * </p>
+ * <p>
+ * Intended for blocking I/O bound tasks (JDBC, SOAP, HTTP...) where tens of thousands of in-flight tasks are wanted but
+ * a platform thread per task is too expensive.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+class VirtualTaskExecutor extends AbstractExecutorService {
+  /** thread name prefix of virtual task threads */
+  static final String              THREAD_NAME = "Abseil - virtual task ";
+
+  /**
+   * Creates a {@link ThreadFactory} of virtual threads, found reflectively so the abseil still runs on JVMs without
+   * them.
+   *
+   * @return virtual {@link ThreadFactory} or null if the running JVM doesn't support virtual threads
+   */
+  static ThreadFactory virtualThreadFactory() {
+    try {
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME, 0L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /** creates the task threads */
+  private final ThreadFactory _factory;
+
+  private final int           _maxConcurrent;
+
+  /** concurrency limit */
+  private final Semaphore     _permits;
+
+  /** threads currently running a task */
+  private final Set<Thread>   _running    = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean    _shutdown;
+
+  /** guards termination signaling */
+  private final Lock          _termLock   = new ReentrantLock();
+
+  private final Condition     _terminated = _termLock.newCondition();
+
+  /**
+   * @param maxConcurrent
+   *          - maximum number of tasks running at any given time
+   * @param factory
+   *          - creates the task threads, null for virtual threads (platform threads when virtual are not supported)
+   */
+  VirtualTaskExecutor(int maxConcurrent, ThreadFactory factory) {
+    if (maxConcurrent <= 0) throw new IllegalArgumentException("maxConcurrent must be > 0");
+    ThreadFactory virtual = (factory == null) ? virtualThreadFactory() : factory;
+    _factory = (virtual == null) ? ((r) -> new Thread(r, "Abseil - task")) : virtual;
+    _maxConcurrent = maxConcurrent;
+    _permits = new Semaphore(maxConcurrent);
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    _termLock.lock();
+    try {
+      while (!isTerminated()) {
+        if (nanos <= 0) return false;
+        nanos = _terminated.awaitNanos(nanos);
+      }
+      return true;
+    } finally {
+      _termLock.unlock();
+    }
+  }
+
+  /**
+   * Runs the command on its own thread once a permit is available, blocking the caller until then.
+   *
+   * @throws RejectedExecutionException
+   *           if this executor has been shutdown, the caller is interrupted while waiting for a permit or the thread
+   *           can't be started
+   */
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) throw new NullPointerException();
+    if (_shutdown) throw new RejectedExecutionException("Executor has been shutdown");
+
+    try {
+      _permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted waiting for a permit", e);
+    }
+
+    // shutdown while waiting for the permit
+    if (_shutdown) {
+      _permits.release();
+      throw new RejectedExecutionException("Executor has been shutdown");
+    }
+
+    Thread thread = null;
+    try {
+      thread = _factory.newThread(() -> {
+        try {
+          command.run();
+        } finally {
+          finished(Thread.currentThread());
+        }
+      });
+      _running.add(thread);
+      thread.start();
+    } catch (RuntimeException | Error e) {
+      // out of native threads, memory...; the task never ran
+      finished(thread);
+      throw new RejectedExecutionException("Couldn't start a task thread", e);
+    }
+  }
+
+  /**
+   * Frees the permit of a task thread that finished or never started
+   */
+  private void finished(Thread thread) {
+    if (thread != null) _running.remove(thread);
+    _permits.release();
+    if (_shutdown) signalTerminated();
+  }
+
+  /**
+   * @return number of tasks currently running
+   */
+  int getActiveCount() {
+    return _running.size();
+  }
+
+  /**
+   * @return most tasks running at any given time
+   */
+  int getMaxConcurrent() {
+    return _maxConcurrent;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return _shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return _shutdown && _running.isEmpty();
+  }
+
+  @Override
+  public void shutdown() {
+    _shutdown = true;
+    signalTerminated();
+  }
+
+  /**
+   * Interrupts all running tasks. There is never a backlog of tasks waiting to run so the returned list is always empty.
+   */
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    for (Thread thread : _running) {
+      thread.interrupt();
+    }
+    return Collections.emptyList();
+  }
+
+  private void signalTerminated() {
+    if (!isTerminated()) return;
+
+    _termLock.lock();
+    try {
+      _terminated.signalAll();
+    } finally {
+      _termLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package org.storm.abseil.cli;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.supplier.ArrivalSupplier;
+import org.storm.abseil.utils.Histogram;
+import org.storm.abseil.utils.Time;
+
+/**
+ * <p>
+ * Open model load generator; issues tasks at a target arrival rate, with an optional ramp up and pulses, no matter how
+ * long the tasks take. When the workers can't keep up the arrivals wait and the wait is counted, so the response times
+ * reported are corrected for coordinated omission; the service times, from when a task started, are what a closed
+ * loop would have reported.
+ * </p>
+ *
+ * <pre>
+ * $ java -cp &lt;classpath with the task&gt; LoadGenerator -t com.acme.Ping -r 500 -u 30 -d 300 -p 2000,60,5
+ * </pre>
+ *
+ * @author Timothy Storm
+ */
+public class LoadGenerator {
+  /**
+   * Arrivals per second by seconds since the start; a linear ramp up to the rate, then the rate, with pulses of a
+   * higher rate at a fixed period once ramped up
+   */
+  static class Profile implements DoubleUnaryOperator {
+    /** seconds of steady state */
+    final double _duration;
+
+    /** seconds between the starts of pulses, 0 for no pulses */
+    final double _pulseEvery;
+
+    /** seconds each pulse lasts */
+    final double _pulseLength;
+
+    /** arrivals per second during a pulse */
+    final double _pulseRate;
+
+    /** seconds of ramp up */
+    final double _ramp;
+
+    /** arrivals per second of the steady state */
+    final double _rate;
+
+    Profile(double rate, double ramp, double duration, double pulseRate, double pulseEvery, double pulseLength) {
+      if (rate <= 0) throw new IllegalArgumentException("rate must be > 0");
+      if (ramp < 0 || duration <= 0) throw new IllegalArgumentException("ramp must be >= 0 and duration > 0");
+      if (pulseEvery < 0 || pulseLength < 0) throw new IllegalArgumentException("pulse period must be >= 0");
+      if (pulseEvery > 0 && pulseRate <= 0) throw new IllegalArgumentException("pulse rate must be > 0");
+      _rate = rate;
+      _ramp = ramp;
+      _duration = duration;
+      _pulseRate = pulseRate;
+      _pulseEvery = pulseEvery;
+      _pulseLength = pulseLength;
+    }
+
+    @Override
+    public double applyAsDouble(double seconds) {
+      if (seconds < _ramp) return _rate * seconds / _ramp;
+
+      double steady = seconds - _ramp;
+      if (_pulseEvery > 0 && steady % _pulseEvery < _pulseLength) return _pulseRate;
+      return _rate;
+    }
+
+    /**
+     * @return seconds of ramp up and steady state
+     */
+    double getTotal() {
+      return _ramp + _duration;
+    }
+  }
+
+  /** columns of the latency report */
+  static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+  /**
+   * Runs the load and prints the report
+   *
+   * @param args
+   *          - see usage, -h
+   */
+  public static void main(String[] args) throws Exception {
+    CliBuilder cli = new CliBuilder("LoadGenerator -t <task class> -r <tasks/s> [options]",
+        "Issues tasks at a target arrival rate and reports their latency corrected for coordinated omission", "")
+            .with(Option.builder("t").longOpt("task").hasArg().argName("class").required()
+                .desc("Runnable with a no-arg constructor, one instance per arrival").build())
+            .with(Option.builder("r").longOpt("rate").hasArg().argName("tasks/s").required()
+                .desc("steady state arrival rate").build())
+            .with(Option.builder("u").longOpt("ramp").hasArg().argName("seconds")
+                .desc("linear ramp up to the rate; default 0").build())
+            .with(Option.builder("d").longOpt("duration").hasArg().argName("seconds")
+                .desc("steady state after the ramp up; default 60").build())
+            .with(Option.builder("p").longOpt("pulse").hasArg().argName("rate,every,length")
+                .desc("pulses of tasks/s every seconds lasting length seconds, after the ramp up").build())
+            .with(Option.builder("c").longOpt("concurrency").hasArg().argName("n")
+                .desc("most tasks running at a time; default 100").build())
+            .with(Option.builder("h").longOpt("help").desc("prints this message").build());
+
+    CommandLine cmd = cli.parse(args);
+    if (cmd == null || cmd.hasOption("h")) {
+      cli.usage();
+      System.exit((cmd == null) ? 1 : 0);
+    }
+
+    Profile profile;
+    Supplier<Runnable> tasks;
+    int concurrency;
+    try {
+      profile = profile(cmd.getOptionValue("r"), cmd.getOptionValue("u", "0"), cmd.getOptionValue("d", "60"), cmd
+          .getOptionValue("p"));
+      concurrency = Integer.parseInt(cmd.getOptionValue("c", "100"));
+      tasks = tasks(cmd.getOptionValue("t"));
+    } catch (IllegalArgumentException e) {
+      System.err.println("error: " + e.getMessage());
+      cli.usage();
+      System.exit(1);
+      return;
+    }
+
+    long millis = (long) (profile.getTotal() * 1000);
+    ArrivalSupplier arrivals = new ArrivalSupplier(tasks, profile, millis, TimeUnit.MILLISECONDS);
+    Abseil abseil = Abseil.builder().name("load").minThreads(concurrency).maxThreads(concurrency)
+        .maxRuntime(millis + Abseil.DRAIN_TIMEOUT, TimeUnit.MILLISECONDS).build();
+
+    long start = System.nanoTime();
+    Monitor monitor = abseil.process(arrivals).get();
+    System.out.println(report(arrivals, monitor, profile, System.nanoTime() - start));
+    System.exit(0);
+  }
+
+  /**
+   * @param rate
+   *          - steady state arrivals per second
+   * @param ramp
+   *          - seconds of ramp up
+   * @param duration
+   *          - seconds of steady state
+   * @param pulse
+   *          - rate,every,length of the pulses, null for none
+   * @return profile of the options
+   * @throws IllegalArgumentException
+   *           if an option isn't a number or is out of range
+   */
+  static Profile profile(String rate, String ramp, String duration, String pulse) {
+    double pulseRate = 0, pulseEvery = 0, pulseLength = 0;
+    if (pulse != null) {
+      String[] values = pulse.split(",");
+      if (values.length != 3) throw new IllegalArgumentException("pulse must be rate,every,length");
+      pulseRate = Double.parseDouble(values[0]);
+      pulseEvery = Double.parseDouble(values[1]);
+      pulseLength = Double.parseDouble(values[2]);
+    }
+    return new Profile(Double.parseDouble(rate), Double.parseDouble(ramp), Double.parseDouble(duration), pulseRate,
+        pulseEvery, pulseLength);
+  }
+
+  /**
+   * @return latency report of the load
+   */
+  static String report(ArrivalSupplier arrivals, Monitor monitor, Profile profile, long elapsed) {
+    Monitor service = monitor.snapshot();
+    StringBuilder str = new StringBuilder();
+    double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+    str.append(String.format("issued %d tasks in %.1fs, %.1f/s (steady state target %.1f/s)%n", arrivals.getIssued(),
+        seconds, arrivals.getIssued() / seconds, profile._rate));
+    str.append(String.format("completed %d, failed %d, max arrival lag %s%n", service.getCompleted(),
+        service.getFail(), Time.formatNanos(arrivals.getMaxLag())));
+
+    str.append(String.format("%-10s", ""));
+    for (double percentile : PERCENTILES) {
+      str.append(String.format("%12s", "p" + (percentile == Math.rint(percentile) ? Long.toString((long) percentile)
+          : Double.toString(percentile))));
+    }
+    str.append(String.format("%12s%n", "max"));
+
+    Histogram.Snapshot responses = arrivals.getResponses().snapshot();
+    str.append(String.format("%-10s", "response"));
+    for (double percentile : PERCENTILES) {
+      str.append(String.format("%12s", Time.formatNanos(responses.getValueAtPercentile(percentile))));
+    }
+    str.append(String.format("%12s  from intended arrival%n", Time.formatNanos(responses.getMax())));
+
+    str.append(String.format("%-10s", "service"));
+    for (double percentile : PERCENTILES) {
+      str.append(String.format("%12s", Time.formatNanos(service.getPercentile(percentile))));
+    }
+    str.append(String.format("%12s  from start%n", Time.formatNanos(service.getMax())));
+    return str.toString();
+  }
+
+  /**
+   * @param type
+   *          - name of a {@link Runnable} with a no-arg constructor
+   * @return supplier of a new task per arrival
+   * @throws IllegalArgumentException
+   *           if the type isn't a runnable with a no-arg constructor
+   */
+  static Supplier<Runnable> tasks(String type) {
+    final Constructor<? extends Runnable> constructor;
+    try {
+      constructor = Class.forName(type).asSubclass(Runnable.class).getDeclaredConstructor();
+    } catch (ClassCastException | ReflectiveOperationException e) {
+      throw new IllegalArgumentException("task " + type + " isn't a Runnable with a no-arg constructor", e);
+    }
+    return () -> {
+      try {
+        return constructor.newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Can't create a " + type, e);
+      }
+    };
+  }
+}
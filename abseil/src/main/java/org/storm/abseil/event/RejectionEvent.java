@@ -0,0 +1,56 @@
+package org.storm.abseil.event;
+
+import java.util.concurrent.RejectedExecutionHandler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a task the executor of an abseil rejected; the event duration is the time the handler took,
+ * with the default {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy} the runtime of the task on the
+ * dispatching thread.
+ *
+ * @author Timothy Storm
+ */
+@Name("org.storm.abseil.Rejection")
+@Label("Abseil Rejection")
+@Category("Abseil")
+@Description("Task rejected by the executor of an abseil and handled by its rejected execution handler")
+public class RejectionEvent extends Event {
+  /**
+   * Decorates a handler to record a rejection event for each task it handles
+   *
+   * @param handler
+   *          - of the rejected tasks
+   * @param abseil
+   *          - name of the abseil
+   * @return the recording handler
+   */
+  public static RejectedExecutionHandler recorded(RejectedExecutionHandler handler, String abseil) {
+    final String policy = handler.getClass().getSimpleName();
+    return (task, executor) -> {
+      RejectionEvent event = new RejectionEvent();
+      event.begin();
+      try {
+        handler.rejectedExecution(task, executor);
+      } finally {
+        event.end();
+        if (event.shouldCommit()) {
+          event.abseil = abseil;
+          event.policy = policy;
+          event.commit();
+        }
+      }
+    };
+  }
+
+  @Label("Abseil")
+  String abseil;
+
+  @Label("Policy")
+  @Description("Rejected execution handler")
+  String policy;
+}
@@ -0,0 +1,47 @@
+package org.storm.abseil.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of an abseil changing state
+ *
+ * @author Timothy Storm
+ */
+@Name("org.storm.abseil.State")
+@Label("Abseil State")
+@Category("Abseil")
+@Description("Abseil state transition")
+public class StateEvent extends Event {
+  /**
+   * Commits a state event if it is enabled
+   *
+   * @param abseil
+   *          - name of the abseil
+   * @param from
+   *          - state transitioned from
+   * @param to
+   *          - state transitioned to
+   */
+  public static void record(String abseil, Object from, Object to) {
+    StateEvent event = new StateEvent();
+    if (!event.shouldCommit()) return;
+
+    event.abseil = abseil;
+    event.from = String.valueOf(from);
+    event.to = String.valueOf(to);
+    event.commit();
+  }
+
+  @Label("Abseil")
+  String abseil;
+
+  @Label("From")
+  String from;
+
+  @Label("To")
+  String to;
+}
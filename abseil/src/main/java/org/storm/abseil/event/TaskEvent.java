@@ -0,0 +1,73 @@
+package org.storm.abseil.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a task run by an abseil; the event duration is the runtime of the task, the queue time how
+ * long the task waited between being handed to the abseil and starting.
+ *
+ * @author Timothy Storm
+ * @see org.storm.abseil.runnable.MonitorRunnable
+ */
+@Name("org.storm.abseil.Task")
+@Label("Abseil Task")
+@Category("Abseil")
+@Description("Task run by an abseil")
+public class TaskEvent extends Event {
+  /** enabled while a recording enables task events */
+  private static final EventType TYPE = EventType.getEventType(TaskEvent.class);
+
+  /**
+   * Begins the event of a task about to start, only when a recording enables task events; nothing is allocated when
+   * none does
+   *
+   * @return the begun event, null when task events aren't enabled
+   */
+  public static TaskEvent start() {
+    if (!TYPE.isEnabled()) return null;
+
+    TaskEvent event = new TaskEvent();
+    event.begin();
+    return event;
+  }
+
+  @Label("Abseil")
+  String   abseil;
+
+  @Label("Error")
+  @Description("Type of the error the task failed with, null when it succeeded")
+  Class<?> error;
+
+  @Label("Queue Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long     queueTime;
+
+  @Label("Succeeded")
+  boolean  succeeded;
+
+  /**
+   * Commits the event, {@link #start()}ed before the task started, if it is still enabled and over its threshold
+   *
+   * @param abseil
+   *          - name of the abseil that ran the task
+   * @param queueTime
+   *          - nanos the task waited before starting
+   * @param error
+   *          - the task failed with, null when it succeeded
+   */
+  public void record(String abseil, long queueTime, Throwable error) {
+    if (!shouldCommit()) return;
+
+    this.abseil = abseil;
+    this.queueTime = queueTime;
+    this.error = (error == null) ? null : error.getClass();
+    this.succeeded = (error == null);
+    commit();
+  }
+}
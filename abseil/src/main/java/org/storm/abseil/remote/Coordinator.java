@@ -0,0 +1,473 @@
+package org.storm.abseil.remote;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.remote.Protocol.Connection;
+import org.storm.abseil.remote.Protocol.Done;
+import org.storm.abseil.remote.Protocol.End;
+import org.storm.abseil.remote.Protocol.Lease;
+import org.storm.abseil.remote.Protocol.Request;
+import org.storm.abseil.utils.TimerWheel;
+import org.storm.abseil.utils.TimerWheel.Timeout;
+
+/**
+ * <p>
+ * Owns the task supplier of a multi-process {@link Abseil} and leases batches of its tasks to {@link Worker}s that
+ * connect over a socket, bound to loopback unless another address is given. Tasks are sent java serialized so they
+ * must be {@link Serializable}, and their classes on the workers' classpath and allowed by the workers. A task that
+ * doesn't serialize is counted as failed rather than leased.
+ * </p>
+ * <p>
+ * Workers must prove they know the coordinator's secret before anything is read from them, and only the protocol
+ * messages are ever deserialized; see {@link Protocol}. Unless one is given the secret is random, hand
+ * {@link #getSecret()} to the workers.
+ * </p>
+ * <p>
+ * A lease that isn't done before it expires, or whose worker disconnects, is reissued to the next worker that asks;
+ * whichever worker completes a lease first has its summary of the lease merged into the coordinator's monitor,
+ * so each lease is counted once even if it ran more than once. A lease is issued at most {@link #MAX_ISSUES} times,
+ * after that it is abandoned and its tasks are counted as failed; a lease that keeps losing its workers likely holds a
+ * task they can't read or that crashes them. Processing is done when the supplier runs out and every lease is done or
+ * abandoned, and fails if the supplier throws.
+ * </p>
+ *
+ * <pre>
+ * Coordinator coordinator = new Coordinator(tasks, 0, 100, 30, TimeUnit.SECONDS);
+ * Future&lt;Monitor&gt; monitor = coordinator.start();
+ * // ABSEIL_SECRET=&lt;coordinator.getSecret()&gt; java org.storm.abseil.remote.Worker localhost &lt;coordinator.getPort()&gt;
+ * //   &lt;task classes&gt; &lt;threads&gt; on each worker process
+ * </pre>
+ *
+ * @author Timothy Storm
+ */
+public class Coordinator implements AutoCloseable {
+  /**
+   * Lease held by a worker
+   */
+  private static final class Held {
+    final Connection _holder;
+
+    final Lease      _lease;
+
+    final Timeout    _timeout;
+
+    Held(Lease lease, Connection holder, Timeout timeout) {
+      _lease = lease;
+      _holder = holder;
+      _timeout = timeout;
+    }
+  }
+
+  /** default tasks per lease */
+  public static final int                    BATCH_SIZE   = 100;
+
+  /** default time a worker has to complete a lease */
+  public static final long                   LEASE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  /** most times a lease is issued, reissues included */
+  public static final int                    MAX_ISSUES   = 3;
+
+  private final AtomicLong                   _abandoned   = new AtomicLong();
+
+  private final int                          _batchSize;
+
+  /** address listened on */
+  private final InetAddress                  _bind;
+
+  private final Set<Connection>              _connections = ConcurrentHashMap.newKeySet();
+
+  /** supplier returned null */
+  private boolean                            _exhausted;
+
+  private final CompletableFuture<Monitor>   _future      = new CompletableFuture<>();
+
+  /** leases held by workers by id */
+  private final Map<Long, Held>              _held        = new HashMap<>();
+
+  private final long                         _leaseMillis;
+
+  private final AtomicLong                   _leases      = new AtomicLong();
+
+  /** merged summaries of the done leases */
+  private final Monitor                      _monitor     = new Monitor();
+
+  /** id of the next new lease */
+  private long                               _nextId;
+
+  private final int                          _port;
+
+  /** expired leases waiting to be reissued */
+  private final Deque<Lease>                 _reissue     = new ArrayDeque<>();
+
+  private final AtomicLong                   _reissued    = new AtomicLong();
+
+  /** workers must prove they know */
+  private final String                       _secret;
+
+  private volatile ServerSocket              _server;
+
+  private final Supplier<? extends Runnable> _tasks;
+
+  /**
+   * Coordinator of {@link #BATCH_SIZE} task leases that expire after {@link #LEASE_MILLIS}
+   *
+   * @param tasks
+   *          - serializable tasks to distribute, null when there are no more
+   * @param port
+   *          - loopback port to listen on, 0 for any free port
+   */
+  public Coordinator(Supplier<? extends Runnable> tasks, int port) {
+    this(tasks, port, BATCH_SIZE, LEASE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Coordinator on loopback with a random secret
+   *
+   * @param tasks
+   *          - serializable tasks to distribute, null when there are no more
+   * @param port
+   *          - loopback port to listen on, 0 for any free port
+   * @param batchSize
+   *          - most tasks per lease
+   * @param lease
+   *          - time a worker has to complete a lease before it is reissued
+   * @param unit
+   *          - of lease
+   */
+  public Coordinator(Supplier<? extends Runnable> tasks, int port, int batchSize, long lease, TimeUnit unit) {
+    this(tasks, InetAddress.getLoopbackAddress(), port, batchSize, lease, unit, Protocol.secret());
+  }
+
+  /**
+   * @param tasks
+   *          - serializable tasks to distribute, null when there are no more
+   * @param bind
+   *          - address to listen on; workers on other hosts need a non loopback address
+   * @param port
+   *          - port to listen on, 0 for any free port
+   * @param batchSize
+   *          - most tasks per lease
+   * @param lease
+   *          - time a worker has to complete a lease before it is reissued
+   * @param unit
+   *          - of lease
+   * @param secret
+   *          - workers must prove they know
+   */
+  public Coordinator(Supplier<? extends Runnable> tasks, InetAddress bind, int port, int batchSize, long lease,
+      TimeUnit unit, String secret) {
+    if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+    if (secret == null || secret.isEmpty()) throw new IllegalArgumentException("secret is required");
+    _tasks = tasks;
+    _bind = bind;
+    _port = port;
+    _batchSize = batchSize;
+    _leaseMillis = unit.toMillis(lease);
+    _secret = secret;
+  }
+
+  /**
+   * Accepts workers until closed
+   */
+  private void accept() {
+    ServerSocket server = _server;
+    while (!server.isClosed()) {
+      try {
+        Socket socket = server.accept();
+        Thread thread = new Thread(() -> serve(socket), "Abseil - coordinator connection");
+        thread.setDaemon(true);
+        thread.start();
+      } catch (IOException e) {
+        // closed
+      }
+    }
+  }
+
+  /**
+   * Stops accepting workers and disconnects the connected workers; processing is done once closed
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      complete();
+    }
+    for (Connection connection : _connections) {
+      connection.close();
+    }
+  }
+
+  /**
+   * Completes processing with the merged monitor and stops accepting workers; connected workers are told to stop when
+   * they next ask for work
+   */
+  private void complete() {
+    if (_future.isDone()) return;
+    _monitor.after();
+    _future.complete(_monitor);
+    stop();
+  }
+
+  /**
+   * Completes processing once the supplier ran out and no lease is left to be done
+   */
+  private void completeIfDone() {
+    if (_exhausted && _held.isEmpty() && _reissue.isEmpty()) complete();
+  }
+
+  /**
+   * Merges the summary of a done lease, the first time the lease is done
+   */
+  private synchronized void done(Done done) {
+    Held held = _held.remove(done._lease);
+    if (held != null) {
+      held._timeout.cancel();
+    } else if (!_reissue.removeIf((lease) -> lease._id == done._lease)) {
+      return; // done before
+    }
+
+    _monitor.merge(done._summary);
+    completeIfDone();
+  }
+
+  /**
+   * Reissues a lease that wasn't done in time
+   */
+  private synchronized void expire(long id) {
+    Held held = _held.remove(id);
+    if (held == null) return;
+
+    reissue(held._lease);
+  }
+
+  /**
+   * Fails processing, the supplier threw; stops accepting workers and tells the connected workers to stop
+   */
+  private void fail(RuntimeException error) {
+    if (_future.isDone()) return;
+    _future.completeExceptionally(error);
+    stop();
+  }
+
+  /**
+   * Records the task as a task that failed the moment it started, so the total, completed and failed tasks still add
+   * up
+   */
+  private void failed(Exception error) {
+    long startedAt = _monitor.startTask();
+    _monitor.fail(error);
+    _monitor.stopTask(startedAt);
+  }
+
+  /**
+   * @return number of leases abandoned after {@link #MAX_ISSUES} issues, their tasks counted as failed
+   */
+  public long getAbandoned() {
+    return _abandoned.get();
+  }
+
+  /**
+   * @return number of leases issued, including reissues
+   */
+  public long getLeases() {
+    return _leases.get();
+  }
+
+  /**
+   * @return port the coordinator listens on, once started
+   */
+  public int getPort() {
+    ServerSocket server = _server;
+    return (server == null) ? _port : server.getLocalPort();
+  }
+
+  /**
+   * @return number of leases reissued because they expired or their worker disconnected
+   */
+  public long getReissued() {
+    return _reissued.get();
+  }
+
+  /**
+   * @return secret the workers must prove they know
+   */
+  public String getSecret() {
+    return _secret;
+  }
+
+  /**
+   * Leases the next batch of tasks, a reissued lease first
+   *
+   * @return the lease, empty if the worker should ask again later, null when all the work is done or failed
+   */
+  private synchronized Lease lease(Connection holder) {
+    if (_future.isDone()) return null;
+
+    Lease lease = _reissue.poll();
+    if (lease == null && !_exhausted) {
+      List<Runnable> tasks = new ArrayList<>(_batchSize);
+      while (tasks.size() < _batchSize) {
+        Runnable task;
+        try {
+          task = _tasks.get();
+        } catch (RuntimeException e) {
+          fail(e);
+          return null;
+        }
+        if (task == null) {
+          _exhausted = true;
+          break;
+        }
+        if (serializes(task)) tasks.add(task);
+      }
+      if (!tasks.isEmpty()) lease = new Lease(_nextId++, tasks);
+    }
+
+    if (lease == null) {
+      if (_held.isEmpty()) {
+        complete();
+        return null;
+      }
+      return new Lease(-1, new ArrayList<>());
+    }
+
+    final long id = lease._id;
+    lease._issued++;
+    _leases.incrementAndGet();
+    _held.put(id, new Held(lease, holder, TimerWheel.shared().schedule(() -> expire(id), _leaseMillis,
+        TimeUnit.MILLISECONDS)));
+    return lease;
+  }
+
+  /**
+   * Reissues the leases of a worker that disconnected
+   */
+  private synchronized void lost(Connection holder) {
+    for (Iterator<Held> held = _held.values().iterator(); held.hasNext();) {
+      Held lost = held.next();
+      if (lost._holder != holder) continue;
+
+      held.remove();
+      lost._timeout.cancel();
+      reissue(lost._lease);
+    }
+  }
+
+  /**
+   * Queues the lease to be reissued, or abandons it once it was issued {@link #MAX_ISSUES} times
+   */
+  private void reissue(Lease lease) {
+    if (lease._issued < MAX_ISSUES) {
+      _reissue.add(lease);
+      _reissued.incrementAndGet();
+      return;
+    }
+
+    _abandoned.incrementAndGet();
+    IllegalStateException error = new IllegalStateException("Lease abandoned, issued " + MAX_ISSUES
+        + " times without being done");
+    for (int i = 0; i < lease._tasks.size(); i++) {
+      failed(error);
+    }
+    completeIfDone();
+  }
+
+  /**
+   * @return true if the task serializes, otherwise it is counted as failed; a lease that doesn't serialize would lose
+   *         every worker it is written to
+   */
+  private boolean serializes(Runnable task) {
+    try (ObjectOutputStream out = new ObjectOutputStream(OutputStream.nullOutputStream())) {
+      out.writeObject(task);
+      return true;
+    } catch (IOException e) {
+      failed(e);
+      return false;
+    }
+  }
+
+  /**
+   * Answers the requests of a worker until it disconnects
+   */
+  private void serve(Socket socket) {
+    Connection connection = null;
+    try {
+      connection = new Connection(socket, _secret, true, Protocol.FROM_WORKER);
+      _connections.add(connection);
+
+      for (;;) {
+        Object message = connection.read();
+        if (message instanceof Done) {
+          done((Done) message);
+        } else if (message instanceof Request) {
+          Lease lease = lease(connection);
+          connection.write((lease == null) ? new End() : lease);
+        }
+      }
+    } catch (IOException e) {
+      // worker disconnected, didn't know the secret or sent a class that isn't allowed
+    } finally {
+      if (connection != null) {
+        _connections.remove(connection);
+        lost(connection);
+        connection.close();
+      } else {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // closing anyway
+        }
+      }
+    }
+  }
+
+  /**
+   * Starts accepting workers on the port
+   *
+   * @return the merged monitor of all leases once all the work is done
+   * @throws IOException
+   *           if the port can't be listened on
+   */
+  public CompletableFuture<Monitor> start() throws IOException {
+    _server = new ServerSocket(_port, 50, _bind);
+    _monitor.before();
+
+    Thread thread = new Thread(this::accept, "Abseil - coordinator");
+    thread.setDaemon(true);
+    thread.start();
+    return _future;
+  }
+
+  /**
+   * Stops accepting workers
+   */
+  private void stop() {
+    ServerSocket server = _server;
+    if (server == null) return;
+    try {
+      server.close();
+    } catch (IOException e) {
+      // closing anyway
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package org.storm.abseil.remote;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.storm.abseil.Failures;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.utils.Histogram;
+
+/**
+ * <p>
+ * Messages between a {@link Coordinator} and its {@link Worker}s, java serialized over a socket. A worker asks for work
+ * with a {@link Request} and is answered with a {@link Lease} of tasks, an empty lease when it should ask again later,
+ * or {@link End} when all the work is done. A worker reports each lease it completed with {@link Done}.
+ * </p>
+ * <p>
+ * Before any object is read both ends prove they know a shared secret; each sends a random challenge and answers the
+ * other's with an HMAC of it, keyed by the secret. Messages are then read through an allow-list filter, the protocol
+ * messages and, on workers, the task classes they were told to expect; nothing else is ever deserialized.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+final class Protocol {
+  /**
+   * Worker completed all tasks of a lease
+   */
+  static final class Done implements Serializable {
+    private static final long serialVersionUID = 4617388612049374219L;
+
+    final long                _lease;
+
+    /** of the lease's tasks */
+    final Monitor.Summary     _summary;
+
+    Done(long lease, Monitor.Summary summary) {
+      _lease = lease;
+      _summary = summary;
+    }
+  }
+
+  /**
+   * No more work, the worker should stop
+   */
+  static final class End implements Serializable {
+    private static final long serialVersionUID = -5316000312874913950L;
+  }
+
+  /**
+   * Batch of tasks leased to a worker; reissued to another worker if not done before it expires
+   */
+  static final class Lease implements Serializable {
+    private static final long serialVersionUID = 2207935081532185362L;
+
+    final long                _id;
+
+    /** times issued, kept by the coordinator */
+    transient int             _issued;
+
+    /** serializable tasks, empty to ask again later */
+    final List<Runnable>      _tasks;
+
+    Lease(long id, List<Runnable> tasks) {
+      _id = id;
+      _tasks = tasks;
+    }
+  }
+
+  /**
+   * Worker asks for a lease
+   */
+  static final class Request implements Serializable {
+    private static final long serialVersionUID = 3795219405516357046L;
+  }
+
+  /**
+   * Object streams of a socket; writes are synchronized, reads are by a single thread
+   */
+  static final class Connection implements AutoCloseable {
+    private final ObjectInputStream  _in;
+
+    private final ObjectOutputStream _out;
+
+    private final Socket             _socket;
+
+    /**
+     * Proves the secret to the other end, and the other end to this one, then opens the object streams
+     *
+     * @param socket
+     *          - connected socket
+     * @param secret
+     *          - shared by the coordinator and its workers
+     * @param coordinator
+     *          - true for the coordinator's end, false for a worker's
+     * @param filter
+     *          - of the classes the other end may send
+     * @throws IOException
+     *           if the other end doesn't know the secret or the streams can't be opened
+     */
+    Connection(Socket socket, String secret, boolean coordinator, ObjectInputFilter filter) throws IOException {
+      _socket = socket;
+      _socket.setTcpNoDelay(true);
+
+      _socket.setSoTimeout(HANDSHAKE_MILLIS);
+      handshake(socket, secret, coordinator);
+      _socket.setSoTimeout(0);
+
+      // output first, both ends write the stream header before reading the other's
+      _out = new ObjectOutputStream(socket.getOutputStream());
+      _out.flush();
+      _in = new ObjectInputStream(socket.getInputStream());
+      _in.setObjectInputFilter(filter);
+    }
+
+    @Override
+    public void close() {
+      try {
+        _socket.close();
+      } catch (IOException e) {
+        // closing anyway
+      }
+    }
+
+    /**
+     * @return next message
+     * @throws IOException
+     *           if the connection is lost
+     */
+    Object read() throws IOException {
+      try {
+        return _in.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Unknown message, the ends don't share a classpath", e);
+      }
+    }
+
+    /**
+     * @param message
+     *          - to send
+     * @throws IOException
+     *           if the connection is lost
+     */
+    synchronized void write(Object message) throws IOException {
+      _out.writeObject(message);
+      _out.flush();
+
+      // forget the written objects, messages are never shared and the handle table would only grow
+      _out.reset();
+    }
+  }
+
+  /** bytes of a challenge */
+  static final int                  CHALLENGE        = 32;
+
+  /** time the other end has to prove the secret, millis */
+  static final int                  HANDSHAKE_MILLIS = 10000;
+
+  /** limits of every message, tasks included */
+  static final String               LIMITS           = "maxdepth=64;maxarray=65536";
+
+  /** classes a coordinator reads from its workers */
+  static final ObjectInputFilter    FROM_WORKER      = ObjectInputFilter.Config.createFilter(String.join(";", LIMITS,
+      Request.class.getName(), Done.class.getName(), Monitor.Summary.class.getName(), Histogram.Snapshot.class
+          .getName(), Failures.Count.class.getName(), "!*"));
+
+  private static final SecureRandom RANDOM           = new SecureRandom();
+
+  /**
+   * @param tasks
+   *          - task classes or packages the coordinator may send, as {@link ObjectInputFilter.Config#createFilter(String)}
+   *          patterns separated by ';', e.g. com.acme.tasks.*
+   * @return filter of the classes a worker reads from its coordinator
+   * @throws IllegalArgumentException
+   *           if the patterns are invalid
+   */
+  static ObjectInputFilter fromCoordinator(String tasks) {
+    if (tasks == null || tasks.isEmpty()) throw new IllegalArgumentException("task classes are required");
+    // the list of a lease reads its elements into an Object[]
+    return ObjectInputFilter.Config.createFilter(String.join(";", LIMITS, Lease.class.getName(), End.class.getName(),
+        ArrayList.class.getName(), Object.class.getName(), tasks, "!*"));
+  }
+
+  /**
+   * Each end sends a random challenge and answers the other's; a worker answers first and the coordinator only answers
+   * a worker that proved the secret, so neither end learns an answer it could replay
+   *
+   * @throws IOException
+   *           if the other end doesn't prove the secret
+   */
+  private static void handshake(Socket socket, String secret, boolean coordinator) throws IOException {
+    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+    DataInputStream in = new DataInputStream(socket.getInputStream());
+
+    byte[] challenge = new byte[CHALLENGE];
+    RANDOM.nextBytes(challenge);
+    out.write(challenge);
+    out.flush();
+
+    try {
+      byte[] answering = new byte[CHALLENGE];
+      in.readFully(answering);
+      byte[] answer = proof(secret, coordinator, answering);
+      byte[] expected = proof(secret, !coordinator, challenge);
+
+      if (!coordinator) {
+        out.write(answer);
+        out.flush();
+      }
+
+      byte[] proof = new byte[expected.length];
+      in.readFully(proof);
+      if (!MessageDigest.isEqual(expected, proof)) throw new IOException("The other end doesn't know the secret");
+
+      if (coordinator) {
+        out.write(answer);
+        out.flush();
+      }
+    } catch (EOFException e) {
+      throw new IOException("Refused by the other end, it doesn't share the secret", e);
+    }
+  }
+
+  /**
+   * @return HMAC of the challenge, keyed by the secret, as answered by the coordinator or a worker; the ends answer
+   *         differently so one's answer can't be reflected back as the other's
+   */
+  private static byte[] proof(String secret, boolean coordinator, byte[] challenge) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+      mac.update((byte) (coordinator ? 'C' : 'W'));
+      return mac.doFinal(challenge);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 is required of every JVM", e);
+    }
+  }
+
+  /**
+   * @return new random secret
+   */
+  static String secret() {
+    byte[] secret = new byte[CHALLENGE];
+    RANDOM.nextBytes(secret);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+  }
+
+  private Protocol() {}
+}
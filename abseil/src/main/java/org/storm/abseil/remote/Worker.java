@@ -0,0 +1,203 @@
+package org.storm.abseil.remote;
+
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.remote.Protocol.Connection;
+import org.storm.abseil.remote.Protocol.Done;
+import org.storm.abseil.remote.Protocol.Lease;
+import org.storm.abseil.remote.Protocol.Request;
+import org.storm.abseil.runnable.DecoratedRunnable;
+import org.storm.abseil.runnable.MonitorRunnable;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * <p>
+ * Processes the tasks leased from a {@link Coordinator} with a local {@link Abseil}. The next lease is asked for once
+ * every task of the current lease has been handed to the abseil, so the workers stay busy while a lease completes;
+ * each completed lease is reported to the coordinator with a {@link Monitor.Summary} of its tasks.
+ * </p>
+ * <p>
+ * The worker proves it knows the coordinator's secret, and the coordinator that it knows the worker's, before anything
+ * is read; only leases of the task classes the worker is told to expect are ever deserialized.
+ * </p>
+ *
+ * <pre>
+ * $ ABSEIL_SECRET=&lt;secret&gt; java -cp &lt;classpath with the tasks&gt; org.storm.abseil.remote.Worker &lt;host&gt; &lt;port&gt;
+ *     &lt;task classes, e.g. com.acme.tasks.*&gt; [threads]
+ * </pre>
+ *
+ * @author Timothy Storm
+ */
+public class Worker {
+  /**
+   * Leased task; reports its lease once all tasks of the lease have completed
+   */
+  private final class LeasedRunnable extends DecoratedRunnable {
+    private final Lease         _lease;
+
+    private final Monitor       _monitor;
+
+    /** tasks of the lease not yet completed */
+    private final AtomicInteger _pending;
+
+    LeasedRunnable(Runnable runnable, Lease lease, Monitor monitor, AtomicInteger pending) {
+      super(new MonitorRunnable(runnable, monitor));
+      _lease = lease;
+      _monitor = monitor;
+      _pending = pending;
+    }
+
+    @Override
+    public void run() {
+      try {
+        runDecorated();
+      } finally {
+        if (_pending.decrementAndGet() == 0) done(_lease, _monitor);
+      }
+    }
+  }
+
+  /** wait before asking again when the coordinator has no lease to give */
+  static final long               RETRY_MILLIS = 10;
+
+  /** environment variable of the coordinator's secret, kept off the command line */
+  public static final String      SECRET_ENV   = "ABSEIL_SECRET";
+
+  private Connection              _connection;
+
+  /** of the messages and tasks read from the coordinator */
+  private final ObjectInputFilter _filter;
+
+  private final String            _host;
+
+  /** tasks of the current lease not yet handed out */
+  private Iterator<Runnable>      _leased;
+
+  private final int               _port;
+
+  /** the coordinator's */
+  private final String            _secret;
+
+  /**
+   * Processes the leased tasks on a fixed pool of threads until the coordinator runs out of work
+   *
+   * @param args
+   *          - host and port of the coordinator, the task classes and optionally the number of threads; defaults to
+   *          the available processors. The secret is read from {@link #SECRET_ENV}
+   */
+  public static void main(String[] args) throws Exception {
+    String secret = System.getenv(SECRET_ENV);
+    if (args.length < 3 || secret == null) {
+      System.err.println("usage: " + SECRET_ENV + "=<secret> Worker <host> <port> <task classes> [threads]");
+      System.exit(1);
+    }
+
+    int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    Abseil abseil = Abseil.builder().minThreads(threads).maxThreads(threads).build();
+    System.out.println(new Worker(args[0], Integer.parseInt(args[1]), secret, args[2]).process(abseil).get());
+  }
+
+  /**
+   * @param host
+   *          - of the coordinator
+   * @param port
+   *          - of the coordinator
+   * @param secret
+   *          - of the coordinator
+   * @param tasks
+   *          - task classes or packages the coordinator may send, {@link ObjectInputFilter.Config#createFilter(String)}
+   *          patterns separated by ';', e.g. com.acme.tasks.*;com.acme.model.**
+   * @throws IllegalArgumentException
+   *           if there is no secret or the task patterns are invalid
+   */
+  public Worker(String host, int port, String secret, String tasks) {
+    if (secret == null || secret.isEmpty()) throw new IllegalArgumentException("secret is required");
+    _host = host;
+    _port = port;
+    _secret = secret;
+    _filter = Protocol.fromCoordinator(tasks);
+  }
+
+  /**
+   * Reports a completed lease, lost if the coordinator is gone; it will be reissued if the coordinator is still there
+   */
+  private void done(Lease lease, Monitor monitor) {
+    try {
+      _connection.write(new Done(lease._id, monitor.summarize()));
+    } catch (IOException e) {
+      _connection.close();
+    }
+  }
+
+  /**
+   * @return next leased task, null when the coordinator has no more work or is gone
+   */
+  private Runnable next() {
+    try {
+      while (_leased == null || !_leased.hasNext()) {
+        _connection.write(new Request());
+        Object reply = _connection.read();
+        if (!(reply instanceof Lease)) {
+          _connection.close();
+          return null;
+        }
+
+        Lease lease = (Lease) reply;
+        if (lease._tasks.isEmpty()) {
+          if (!Sleep.fixed(RETRY_MILLIS, TimeUnit.MILLISECONDS)) return null;
+          continue;
+        }
+
+        // a few tasks, recorded into a single stripe
+        Monitor monitor = new Monitor(1);
+        AtomicInteger pending = new AtomicInteger(lease._tasks.size());
+        Iterator<Runnable> tasks = lease._tasks.iterator();
+        _leased = new Iterator<Runnable>() {
+          @Override
+          public boolean hasNext() {
+            return tasks.hasNext();
+          }
+
+          @Override
+          public Runnable next() {
+            return new LeasedRunnable(tasks.next(), lease, monitor, pending);
+          }
+        };
+      }
+      return _leased.next();
+    } catch (IOException e) {
+      _connection.close();
+      return null;
+    }
+  }
+
+  /**
+   * Connects to the coordinator and processes its leased tasks
+   *
+   * @param abseil
+   *          - to process the leased tasks with
+   * @return monitor of all tasks processed by this worker, once the coordinator has no more work
+   * @throws IOException
+   *           if the coordinator can't be connected to or refused the secret
+   */
+  public CompletableFuture<Monitor> process(Abseil abseil) throws IOException {
+    Socket socket = new Socket(_host, _port);
+    try {
+      _connection = new Connection(socket, _secret, false, _filter);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    Supplier<Runnable> tasks = this::next;
+    return abseil.process(tasks);
+  }
+}
@@ -0,0 +1,71 @@
+package org.storm.abseil.runnable;
+
+import java.util.List;
+
+import org.storm.abseil.Monitor;
+import org.storm.abseil.event.TaskEvent;
+
+/**
+ * Runs a batch of tasks one after the other on the same thread, capturing the life cycle of each task with a
+ * {@link Monitor} like {@link MonitorRunnable}; including the latency of prioritized tasks and, optionally, a flight
+ * recorder {@link TaskEvent} per task. A failed task is recorded and the rest of the batch still runs; an interrupt
+ * stops the batch before its next task.
+ *
+ * @author Timothy Storm
+ */
+public class BatchRunnable implements Runnable {
+  private final List<Runnable> _batch;
+
+  private final Monitor        _monitor;
+
+  /** handed to the abseil, nanos; 0 when not recorded */
+  private final long           _queuedAt;
+
+  /** name of the abseil the tasks are recorded under, null when not recorded */
+  private final String         _recorded;
+
+  public BatchRunnable(List<Runnable> batch, Monitor monitor) {
+    this(batch, monitor, null);
+  }
+
+  /**
+   * @param batch
+   *          - tasks to run in order
+   * @param monitor
+   *          - of the tasks
+   * @param recorded
+   *          - name of the abseil to record each task as a flight recorder event under, null to not record
+   */
+  public BatchRunnable(List<Runnable> batch, Monitor monitor, String recorded) {
+    _batch = batch;
+    _monitor = monitor;
+    _recorded = recorded;
+    _queuedAt = (recorded == null) ? 0 : System.nanoTime();
+  }
+
+  @Override
+  public void run() {
+    for (Runnable task : _batch) {
+      if (Thread.currentThread().isInterrupted()) return;
+
+      final TaskEvent event = (_recorded == null) ? null : TaskEvent.start();
+
+      final long startedAt = _monitor.startTask();
+      Throwable failed = null;
+      try {
+        task.run();
+        _monitor.success();
+      } catch (Throwable error) {
+        failed = error;
+        _monitor.fail(error);
+      } finally {
+        _monitor.stopTask(startedAt);
+        PrioritizedRunnable prioritized = PrioritizedRunnable.find(task);
+        if (prioritized != null) {
+          _monitor.recordPriority(prioritized.getPriority(), System.nanoTime() - prioritized.getCreated());
+        }
+        if (event != null) event.record(_recorded, startedAt - _queuedAt, failed);
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package org.storm.abseil.runnable;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+import org.storm.abseil.Monitor;
+import org.storm.abseil.event.TaskEvent;
+
+/**
+ * Runs a {@link Callable} capturing its life cycle with a {@link Monitor} like {@link MonitorRunnable} and hands the
+ * result to a consumer. Only the call is timed; the consumer may block, to push back on the tasks, without skewing the
+ * task latency. A failed call is recorded and has no result. Optionally each call is also recorded as a flight recorder
+ * {@link TaskEvent}.
+ * 
+ * @author Timothy Storm
+ */
+public class CallableRunnable<T> implements Runnable {
+  private final Callable<T>         _callable;
+
+  private final Monitor             _monitor;
+
+  /** handed to the abseil, nanos; 0 when not recorded */
+  private final long                _queuedAt;
+
+  /** name of the abseil the calls are recorded under, null when not recorded */
+  private final String              _recorded;
+
+  private final Consumer<? super T> _results;
+
+  public CallableRunnable(Callable<T> callable, Monitor monitor, Consumer<? super T> results) {
+    this(callable, monitor, results, null);
+  }
+
+  /**
+   * @param callable
+   *          - to call
+   * @param monitor
+   *          - of the call
+   * @param results
+   *          - consumer of the result
+   * @param recorded
+   *          - name of the abseil to record each call as a flight recorder event under, null to not record
+   */
+  public CallableRunnable(Callable<T> callable, Monitor monitor, Consumer<? super T> results, String recorded) {
+    _callable = callable;
+    _monitor = monitor;
+    _results = results;
+    _recorded = recorded;
+    _queuedAt = (recorded == null) ? 0 : System.nanoTime();
+  }
+
+  @Override
+  public void run() {
+    final TaskEvent event = (_recorded == null) ? null : TaskEvent.start();
+
+    T result;
+    final long startedAt = _monitor.startTask();
+    Throwable failed = null;
+    try {
+      result = _callable.call();
+      _monitor.success();
+    } catch (Throwable error) {
+      failed = error;
+      _monitor.fail(error);
+      return;
+    } finally {
+      _monitor.stopTask(startedAt);
+      if (event != null) event.record(_recorded, startedAt - _queuedAt, failed);
+    }
+    _results.accept(result);
+  }
+}
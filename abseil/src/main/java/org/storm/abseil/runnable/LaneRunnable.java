@@ -0,0 +1,47 @@
+package org.storm.abseil.runnable;
+
+import org.storm.abseil.Monitor;
+
+/**
+ * {@link MonitorRunnable} of a task routed to a bulkhead lane; captures the life cycle of the task with the
+ * {@link Monitor} of its lane.
+ * 
+ * @author Timothy Storm
+ * @see org.storm.abseil.Bulkhead
+ */
+public class LaneRunnable extends MonitorRunnable {
+  /**
+   * @param runnable
+   *          - to search
+   * @return the lane runnable that the runnable is or decorates, null if none
+   */
+  public static LaneRunnable find(Runnable runnable) {
+    while (runnable instanceof DecoratedRunnable) {
+      if (runnable instanceof LaneRunnable) return (LaneRunnable) runnable;
+      runnable = ((DecoratedRunnable) runnable).decorated();
+    }
+    return null;
+  }
+
+  private final String _lane;
+
+  /**
+   * @param runnable
+   *          - to run in the lane
+   * @param lane
+   *          - name of the lane
+   * @param monitor
+   *          - of the lane
+   */
+  public LaneRunnable(Runnable runnable, String lane, Monitor monitor) {
+    super(runnable, monitor);
+    _lane = lane;
+  }
+
+  /**
+   * @return name of the lane the task runs in
+   */
+  public String getLane() {
+    return _lane;
+  }
+}
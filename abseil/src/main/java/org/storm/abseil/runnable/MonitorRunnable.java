@@ -1,31 +1,62 @@
 package org.storm.abseil.runnable;
 
 import org.storm.abseil.Monitor;
+import org.storm.abseil.event.TaskEvent;
 
 /**
  * Decorates a {@link Runnable} with a {@link Monitor} for capturing the life cycle of the decorated runnable.
- * 
+ * Optionally each run is also recorded as a flight recorder {@link TaskEvent}.
+ *
  * @author Timothy Storm
  */
 public class MonitorRunnable extends DecoratedRunnable {
   private final Monitor _monitor;
 
+  /** handed to the abseil, nanos; 0 when not recorded */
+  private final long    _queuedAt;
+
+  /** name of the abseil the runs are recorded under, null when not recorded */
+  private final String  _recorded;
+
   public MonitorRunnable(Runnable runnable, Monitor monitor) {
+    this(runnable, monitor, null);
+  }
+
+  /**
+   * @param runnable
+   *          - to monitor
+   * @param monitor
+   *          - of the runnable
+   * @param recorded
+   *          - name of the abseil to record each run as a flight recorder event under, null to not record
+   */
+  public MonitorRunnable(Runnable runnable, Monitor monitor, String recorded) {
     super(runnable);
     _monitor = monitor;
+    _recorded = recorded;
+    _queuedAt = (recorded == null) ? 0 : System.nanoTime();
   }
 
   @Override
   public void run() {
+    final TaskEvent event = (_recorded == null) ? null : TaskEvent.start();
+
+    final long startedAt = _monitor.startTask();
+    Throwable failed = null;
     try {
-      _monitor.start();
       runDecorated();
       _monitor.success();
     } catch (Throwable error) {
+      failed = error;
       _monitor.fail(error);
       throw error;
     } finally {
-      _monitor.stop();
+      _monitor.stopTask(startedAt);
+      PrioritizedRunnable prioritized = PrioritizedRunnable.find(decorated());
+      if (prioritized != null) {
+        _monitor.recordPriority(prioritized.getPriority(), System.nanoTime() - prioritized.getCreated());
+      }
+      if (event != null) event.record(_recorded, startedAt - _queuedAt, failed);
     }
   }
 }
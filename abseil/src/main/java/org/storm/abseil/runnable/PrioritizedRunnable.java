@@ -0,0 +1,112 @@
+package org.storm.abseil.runnable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Decorates a {@link Runnable} with a priority and a deadline for earliest-deadline-first scheduling; see
+ * {@link org.storm.abseil.AbseilBuilder#prioritized(int)}. Tasks run in the order of their deadlines and tasks with the
+ * same deadline in the order they were created.
+ * </p>
+ * <p>
+ * By default a task is due {@link #AGING_MILLIS} per priority level after it was created, 0 being the most urgent. A
+ * less urgent task is passed by newer more urgent tasks only until it has waited out the difference; from then on it
+ * is ahead of them so it can't starve.
+ * </p>
+ * <p>
+ * The latency of prioritized tasks, from creation to completion, is recorded per priority by the
+ * {@link org.storm.abseil.Monitor}.
+ * </p>
+ * 
+ * @author Timothy Storm
+ */
+public class PrioritizedRunnable extends DecoratedRunnable implements Comparable<PrioritizedRunnable> {
+  /** how much later a task of the next less urgent priority is due */
+  public static final long        AGING_MILLIS = 100;
+
+  /** creation order, orders tasks with the same deadline */
+  private static final AtomicLong SEQUENCE     = new AtomicLong();
+
+  /**
+   * @param runnable
+   *          - to search
+   * @return the prioritized runnable that the runnable is or decorates, null if none
+   */
+  public static PrioritizedRunnable find(Runnable runnable) {
+    while (runnable instanceof DecoratedRunnable) {
+      if (runnable instanceof PrioritizedRunnable) return (PrioritizedRunnable) runnable;
+      runnable = ((DecoratedRunnable) runnable).decorated();
+    }
+    return null;
+  }
+
+  /** creation, nanos */
+  private final long _created;
+
+  /** nanos */
+  private final long _deadline;
+
+  private final int  _priority;
+
+  private final long _sequence;
+
+  /**
+   * @param runnable
+   *          - to prioritize
+   * @param priority
+   *          - 0 or more, 0 being the most urgent; due {@link #AGING_MILLIS} per level after now
+   */
+  public PrioritizedRunnable(Runnable runnable, int priority) {
+    this(runnable, priority, priority * AGING_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param runnable
+   *          - to prioritize
+   * @param priority
+   *          - 0 or more; the latency of the task is recorded under its priority
+   * @param deadline
+   *          - time from now the task is due
+   * @param unit
+   *          - of deadline
+   */
+  public PrioritizedRunnable(Runnable runnable, int priority, long deadline, TimeUnit unit) {
+    super(runnable);
+    if (priority < 0) throw new IllegalArgumentException("priority must be >= 0");
+    _priority = priority;
+    _created = System.nanoTime();
+    _deadline = _created + unit.toNanos(deadline);
+    _sequence = SEQUENCE.getAndIncrement();
+  }
+
+  @Override
+  public int compareTo(PrioritizedRunnable other) {
+    long diff = _deadline - other._deadline;
+    if (diff != 0) return (diff < 0) ? -1 : 1;
+    return Long.compare(_sequence, other._sequence);
+  }
+
+  /**
+   * @return {@link System#nanoTime()} the task was created
+   */
+  public long getCreated() {
+    return _created;
+  }
+
+  /**
+   * @return {@link System#nanoTime()} the task is due
+   */
+  public long getDeadline() {
+    return _deadline;
+  }
+
+  public int getPriority() {
+    return _priority;
+  }
+
+  @Override
+  public void run() {
+    runDecorated();
+  }
+}
@@ -0,0 +1,220 @@
+package org.storm.abseil.runnable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.storm.abseil.Monitor;
+import org.storm.abseil.utils.TimerWheel;
+
+/**
+ * <p>
+ * Decorates a {@link Runnable} to retry it when it fails, with exponential backoff and full jitter; the nth retry waits
+ * a random time between 0 and min(max delay, base delay * 2^(n-1)). The wait doesn't hold a thread: the retry is
+ * scheduled on the shared {@link TimerWheel} and handed to an {@link Executor} when due.
+ * </p>
+ * <p>
+ * The retries of all tasks sharing a {@link Policy} are limited by its budget so a failing dependency isn't hit with a
+ * retry storm. Retries and give-ups are counted by the {@link Monitor}; when the decorated runnable is monitored every
+ * attempt is a monitored task.
+ * </p>
+ * 
+ * @author Timothy Storm
+ */
+public class RetryRunnable extends DecoratedRunnable {
+  /**
+   * Retry settings and budget shared by tasks. The budget allows retries while they are at most a ratio of the attempts
+   * made in the last {@link #WINDOW_SECONDS} seconds, plus a few so that tasks can be retried when attempts are rare.
+   */
+  public static class Policy {
+    /** fewest retries allowed per window */
+    public static final int       MIN_RETRIES    = 10;
+
+    /** sliding window of the budget, a slot per second */
+    public static final int       WINDOW_SECONDS = 10;
+
+    /** attempts per slot */
+    private final AtomicLongArray _attempts      = new AtomicLongArray(WINDOW_SECONDS);
+
+    private final long            _baseDelay, _maxDelay;
+
+    private final int             _maxAttempts;
+
+    /** retries scheduled but not yet running */
+    private final AtomicInteger   _pending       = new AtomicInteger();
+
+    private final double          _ratio;
+
+    /** retries per slot */
+    private final AtomicLongArray _retries       = new AtomicLongArray(WINDOW_SECONDS);
+
+    /** second of each slot */
+    private final AtomicLongArray _seconds       = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * @param maxAttempts
+     *          - most attempts of a task, including the first
+     * @param baseDelay
+     *          - before the first retry, doubled for each retry after
+     * @param maxDelay
+     *          - longest delay before a retry
+     * @param unit
+     *          - of the delays
+     * @param ratio
+     *          - most retries as a ratio of all attempts; 0.1 for at most 10% of attempts being retries
+     */
+    public Policy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit, double ratio) {
+      if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be > 0");
+      _maxAttempts = maxAttempts;
+      _baseDelay = Math.max(1, unit.toNanos(baseDelay));
+      _maxDelay = Math.max(_baseDelay, unit.toNanos(maxDelay));
+      _ratio = ratio;
+    }
+
+    /**
+     * @param settings
+     *          - policy whose settings to take; the budget and pending retries are not shared
+     */
+    public Policy(Policy settings) {
+      _maxAttempts = settings._maxAttempts;
+      _baseDelay = settings._baseDelay;
+      _maxDelay = settings._maxDelay;
+      _ratio = settings._ratio;
+    }
+
+    private void attempt() {
+      _attempts.incrementAndGet(slot());
+    }
+
+    /**
+     * @param retry
+     *          - 1 for the first retry
+     * @return full jitter backoff before the retry, nanos
+     */
+    long backoff(int retry) {
+      long cap = (retry >= Long.SIZE - 1) ? _maxDelay : Math.min(_maxDelay, _baseDelay << (retry - 1));
+      if (cap <= 0) cap = _maxDelay; // overflow
+      return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * @return retries scheduled but not yet running
+     */
+    public int getPending() {
+      return _pending.get();
+    }
+
+    /**
+     * Resets the slot of the current second if it holds an older second
+     * 
+     * @return slot of the current second
+     */
+    private int slot() {
+      long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+      int slot = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+
+      if (_seconds.get(slot) != second) {
+        // once a second; the counts are reset before the second is, so no count of the new second is lost
+        synchronized (this) {
+          if (_seconds.get(slot) != second) {
+            _attempts.set(slot, 0);
+            _retries.set(slot, 0);
+            _seconds.set(slot, second);
+          }
+        }
+      }
+      return slot;
+    }
+
+    /**
+     * Takes a retry from the budget
+     * 
+     * @return true if the budget allows another retry
+     */
+    private boolean withdraw() {
+      int slot = slot();
+      long since = _seconds.get(slot) - WINDOW_SECONDS;
+
+      // taken before checking so concurrent withdrawals can't all pass the check
+      _retries.incrementAndGet(slot);
+
+      long attempts = 0, retries = 0;
+      for (int i = 0; i < WINDOW_SECONDS; i++) {
+        if (_seconds.get(i) <= since) continue;
+        attempts += _attempts.get(i);
+        retries += _retries.get(i);
+      }
+      if (retries <= (_ratio * attempts) + MIN_RETRIES) return true;
+
+      _retries.decrementAndGet(slot);
+      return false;
+    }
+  }
+
+  /** attempts made, only touched by the attempt running; each attempt may run on another thread */
+  private volatile int   _attempts;
+
+  private final Monitor  _monitor;
+
+  private final Policy   _policy;
+
+  /** runs the retries */
+  private final Executor _resubmit;
+
+  /**
+   * @param runnable
+   *          - to retry
+   * @param policy
+   *          - retry settings and budget, shared by the tasks
+   * @param resubmit
+   *          - runs a retry when it is due; called from the timer thread so it must not block or run the retry itself
+   * @param monitor
+   *          - counts the retries and give-ups
+   */
+  public RetryRunnable(Runnable runnable, Policy policy, Executor resubmit, Monitor monitor) {
+    super(runnable);
+    _policy = policy;
+    _resubmit = resubmit;
+    _monitor = monitor;
+  }
+
+  /**
+   * Gives up a retry that was handed to the resubmit executor but won't run, its abseil shutdown
+   */
+  public void drop() {
+    _policy._pending.decrementAndGet();
+    _monitor.giveUp();
+  }
+
+  /**
+   * Schedules a retry if attempts are left, the budget allows it and the thread isn't being interrupted
+   * 
+   * @return true if scheduled, false if given up
+   */
+  private boolean retry() {
+    if (_attempts >= _policy._maxAttempts || Thread.currentThread().isInterrupted() || !_policy.withdraw()) {
+      _monitor.giveUp();
+      return false;
+    }
+
+    _monitor.retry();
+    _policy._pending.incrementAndGet();
+    TimerWheel.shared().schedule(() -> _resubmit.execute(this), _policy.backoff(_attempts), TimeUnit.NANOSECONDS);
+    return true;
+  }
+
+  @Override
+  public void run() {
+    if (_attempts > 0) _policy._pending.decrementAndGet();
+    _attempts++;
+    _policy.attempt();
+
+    try {
+      runDecorated();
+    } catch (Throwable error) {
+      if (!retry()) throw error;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package org.storm.abseil.runnable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.storm.abseil.Monitor;
+import org.storm.abseil.utils.Time;
+import org.storm.abseil.utils.TimerWheel;
+
+/**
+ * <p>
+ * Decorates a {@link Runnable} with a time budget. The thread running the task is interrupted once the budget is used
+ * up; the task is expected to stop when interrupted, which frees its thread for the next task. Budgets are tracked by
+ * the shared {@link TimerWheel} rather than a thread per task. Every run has its own budget, so a retried task is
+ * time boxed again.
+ * </p>
+ * <p>
+ * A task over budget is counted as a timeout by the {@link Monitor} and ends with a {@link CancellationException},
+ * unless it failed with its own exception; either way the interrupt is cleared so it doesn't leak into the next task
+ * of the thread.
+ * </p>
+ * 
+ * @author Timothy Storm
+ */
+public class TimeBoxedRunnable extends DecoratedRunnable {
+  private static final int RUNNING = 0, INTERRUPTING = 1, TIMED_OUT = 2, DONE = 3;
+
+  private final long       _budget;
+
+  private final Monitor    _monitor;
+
+  /**
+   * @param runnable
+   *          - to time box
+   * @param budget
+   *          - most time the runnable may run
+   * @param unit
+   *          - of budget
+   * @param monitor
+   *          - counts the timeouts
+   */
+  public TimeBoxedRunnable(Runnable runnable, long budget, TimeUnit unit, Monitor monitor) {
+    super(runnable);
+    _budget = unit.toNanos(budget);
+    _monitor = monitor;
+  }
+
+  @Override
+  public void run() {
+    // per run, a retried task runs again and a late timer of the last run must not interrupt this one
+    final AtomicInteger state = new AtomicInteger(RUNNING);
+    final Thread worker = Thread.currentThread();
+    TimerWheel.Timeout timeout = TimerWheel.shared().schedule(() -> {
+      if (state.compareAndSet(RUNNING, INTERRUPTING)) {
+        worker.interrupt();
+        state.set(TIMED_OUT);
+      }
+    }, _budget, TimeUnit.NANOSECONDS);
+
+    Throwable failure = null;
+    try {
+      runDecorated();
+    } catch (Throwable error) {
+      failure = error;
+      throw error;
+    } finally {
+      timeout.cancel();
+      if (!state.compareAndSet(RUNNING, DONE)) {
+        // wait out the interrupt so it can be cleared
+        while (state.get() == INTERRUPTING) {
+          Thread.onSpinWait();
+        }
+        Thread.interrupted();
+        _monitor.timeout();
+
+        if (failure == null) {
+          throw new CancellationException("Task exceeded its budget of " + Time.formatNanos(_budget));
+        }
+      }
+    }
+  }
+}
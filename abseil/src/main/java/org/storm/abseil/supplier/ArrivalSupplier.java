@@ -0,0 +1,168 @@
+package org.storm.abseil.supplier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+
+import org.storm.abseil.runnable.DecoratedRunnable;
+import org.storm.abseil.utils.Histogram;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * <p>
+ * Supplies tasks at the arrival times of an open model; the arrivals follow a rate profile no matter how long the tasks
+ * take, unlike a closed loop where the next task waits for a free worker. Arrivals the caller wasn't ready for are
+ * handed out late, as fast as they are asked for, until the schedule is caught up.
+ * </p>
+ * <p>
+ * The response time of each task is measured from its intended arrival rather than from when it was handed out, so
+ * time spent waiting behind slow tasks is counted; corrected for coordinated omission.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class ArrivalSupplier extends DecoratedSupplier<Runnable> {
+  /**
+   * Records the response time of the task from its intended arrival
+   */
+  private static final class ArrivalRunnable extends DecoratedRunnable {
+    private final ArrivalSupplier _arrivals;
+
+    /** intended arrival, nanos */
+    private final long            _intended;
+
+    ArrivalRunnable(Runnable runnable, ArrivalSupplier arrivals, long intended) {
+      super(runnable);
+      _arrivals = arrivals;
+      _intended = intended;
+    }
+
+    @Override
+    public void run() {
+      try {
+        runDecorated();
+      } finally {
+        _arrivals._responses.record(System.nanoTime() - _intended);
+      }
+    }
+  }
+
+  /** rounding of the credit summed over the steps */
+  private static final double       CREDIT_ERROR = 1e-9;
+
+  /** step of the schedule when arrivals are further apart, nanos */
+  private static final long         STEP_NANOS   = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** fraction of an arrival accumulated over the steps since the last */
+  private double                    _credit;
+
+  /** nanos of arrivals */
+  private final long                _duration;
+
+  private long                      _issued;
+
+  /** most an arrival was handed out behind its schedule, nanos */
+  private volatile long             _maxLag;
+
+  /** intended arrival of the next task, nanos */
+  private long                      _next;
+
+  /** arrivals per second by seconds since the first arrival */
+  private final DoubleUnaryOperator _rate;
+
+  /** response times from the intended arrivals, nanos */
+  private final Histogram           _responses = new Histogram();
+
+  /** first arrival, nanos */
+  private long                      _start;
+
+  private boolean                   _started;
+
+  /**
+   * @param supplier
+   *          - of the tasks
+   * @param rate
+   *          - arrivals per second by seconds since the first arrival
+   * @param duration
+   *          - of the arrivals, no more tasks are supplied after
+   * @param unit
+   *          - of duration
+   */
+  public ArrivalSupplier(Supplier<Runnable> supplier, DoubleUnaryOperator rate, long duration, TimeUnit unit) {
+    super(supplier);
+    _rate = rate;
+    _duration = unit.toNanos(duration);
+  }
+
+  public static Supplier<Runnable> decorate(Supplier<Runnable> supplier, DoubleUnaryOperator rate, long duration,
+      TimeUnit unit) {
+    return new ArrivalSupplier(supplier, rate, duration, unit);
+  }
+
+  /**
+   * Waits for the intended arrival of the next task
+   *
+   * @return the next task, null when the duration is over, the tasks run out or interrupted while waiting
+   */
+  @Override
+  public synchronized Runnable get() {
+    if (!_started) {
+      _started = true;
+      _start = _next = System.nanoTime();
+    }
+
+    long intended;
+    for (;;) {
+      long elapsed = _next - _start;
+      if (elapsed >= _duration) return null;
+
+      double rate = _rate.applyAsDouble(elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+      double gap = (rate <= 0) ? Double.POSITIVE_INFINITY : TimeUnit.SECONDS.toNanos(1) / rate;
+      if (gap <= STEP_NANOS) {
+        intended = _next;
+        _next += (long) gap;
+        _credit = 0;
+        break;
+      }
+
+      // slow or changing rates, such as the start of a ramp, are integrated a step at a time
+      _next += STEP_NANOS;
+      if (rate > 0) _credit += STEP_NANOS / gap;
+      if (_credit >= 1 - CREDIT_ERROR) {
+        _credit -= 1;
+        intended = _next;
+        break;
+      }
+    }
+
+    if (!Sleep.until(intended)) return null;
+    long lag = System.nanoTime() - intended;
+    if (lag > _maxLag) _maxLag = lag;
+
+    Runnable runnable = decoratedGet();
+    if (runnable == null) return null;
+    _issued++;
+    return new ArrivalRunnable(runnable, this, intended);
+  }
+
+  /**
+   * @return number of tasks handed out
+   */
+  public synchronized long getIssued() {
+    return _issued;
+  }
+
+  /**
+   * @return most an arrival was handed out behind its schedule, nanos; large lags mean the caller couldn't keep up
+   */
+  public long getMaxLag() {
+    return _maxLag;
+  }
+
+  /**
+   * @return response times of the completed tasks from their intended arrivals, nanos
+   */
+  public Histogram getResponses() {
+    return _responses;
+  }
+}
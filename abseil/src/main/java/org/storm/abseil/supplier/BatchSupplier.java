@@ -0,0 +1,44 @@
+package org.storm.abseil.supplier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Supplies tasks a batch at a time. An Abseil hands each batch to a single worker as one unit so the queue handoff and
+ * wrapping is paid once per batch instead of once per task; worthwhile for many short tasks where dispatch overhead
+ * dominates.
+ * 
+ * @author Timothy Storm
+ */
+@FunctionalInterface
+public interface BatchSupplier {
+  /**
+   * Batches the tasks of a {@link Supplier}. The supplier isn't called again once it returns null.
+   * 
+   * @param supplier
+   *          - of single tasks
+   * @return batch supplier of the supplier's tasks
+   */
+  static BatchSupplier of(Supplier<Runnable> supplier) {
+    final AtomicBoolean done = new AtomicBoolean();
+
+    return (max) -> {
+      List<Runnable> batch = new ArrayList<>(max);
+      while (batch.size() < max && !done.get()) {
+        Runnable task = supplier.get();
+        if (task == null) done.set(true);
+        else batch.add(task);
+      }
+      return batch;
+    };
+  }
+
+  /**
+   * @param max
+   *          - most tasks to return
+   * @return next batch of at most max tasks; null or empty when there are no more tasks
+   */
+  List<Runnable> get(int max);
+}
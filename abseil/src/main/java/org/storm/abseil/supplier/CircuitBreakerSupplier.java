@@ -0,0 +1,344 @@
+package org.storm.abseil.supplier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.storm.abseil.Monitor;
+import org.storm.abseil.runnable.DecoratedRunnable;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * <p>
+ * Stops supplying tasks while their dependency is failing rather than running doomed tasks at full concurrency. Task
+ * outcomes are signalled by the {@link Monitor} of the tasks, as {@link org.storm.abseil.runnable.MonitorRunnable}s
+ * complete, and kept in a sliding window of the most recent completions.
+ * </p>
+ * <ul>
+ * <li>closed - tasks are supplied; once the window is full and its failure rate reaches the threshold the breaker
+ * opens</li>
+ * <li>open - no tasks are supplied until the cool-down has passed, then the breaker is half-open</li>
+ * <li>half-open - a few probe tasks are supplied; the breaker closes when they all succeed and opens again when one
+ * fails or they don't all complete within the probe timeout</li>
+ * </ul>
+ * <p>
+ * Only the probes decide while half-open; they report their own outcome, so tasks supplied before the breaker opened
+ * that complete while it's half-open, or probes of an earlier half-open, don't count.
+ * </p>
+ * 
+ * @author Timothy Storm
+ */
+public class CircuitBreakerSupplier extends DecoratedSupplier<Runnable> implements Monitor.Listener {
+  /**
+   * Task supplied while half-open, reports its outcome to the round of probes it was supplied for
+   */
+  private final class Probe extends DecoratedRunnable {
+    private final int _round;
+
+    Probe(Runnable task, int round) {
+      super(task);
+      _round = round;
+    }
+
+    Runnable getTask() {
+      return decorated();
+    }
+
+    /**
+     * @return probe of the same round with the task
+     */
+    Probe with(Runnable task) {
+      return new Probe(task, _round);
+    }
+
+    @Override
+    public void run() {
+      boolean failed = true;
+      try {
+        runDecorated();
+        failed = false;
+      } finally {
+        probed(_round, failed);
+      }
+    }
+  }
+
+  public enum State {
+    CLOSED, HALF_OPEN, OPEN
+  }
+
+  /** default probe tasks when half-open */
+  public static final int              PROBES          = 5;
+
+  private final long                   _coolDown;
+
+  /** failed completions in the window */
+  private final AtomicInteger          _failures       = new AtomicInteger();
+
+  /** completions since the window was reset */
+  private final AtomicLong             _filled         = new AtomicLong();
+
+  /** end of the cool-down, nanos */
+  private volatile long                _openUntil;
+
+  /** probes supplied, dispatch thread only */
+  private int                          _probed;
+
+  private final int                    _probes;
+
+  /** succeeded probes */
+  private final AtomicInteger          _probeSuccesses = new AtomicInteger();
+
+  /** most time the probes of a round have to complete, nanos */
+  private final long                   _probeTimeout;
+
+  /** end of the probe timeout of the current round, nanos */
+  private volatile long                _probeUntil;
+
+  /** half-opens so far, tags the probes of each */
+  private volatile int                 _round;
+
+  private final AtomicReference<State> _state          = new AtomicReference<>(State.CLOSED);
+
+  /** failure rate that opens the breaker */
+  private final double                 _threshold;
+
+  /** times the breaker opened */
+  private final AtomicInteger          _trips          = new AtomicInteger();
+
+  /** dispatch thread waiting for the probes to decide, null until it first waits */
+  private volatile Thread              _waiting;
+
+  /** 1 for each failed completion of the window, as a ring */
+  private final AtomicIntegerArray     _window;
+
+  /**
+   * @param supplier
+   *          - of the tasks
+   * @param monitor
+   *          - of the tasks, signals their outcomes
+   * @param threshold
+   *          - failure rate, 0.0 to 1.0, of the window that opens the breaker
+   * @param window
+   *          - number of recent completions the failure rate is taken over
+   * @param coolDown
+   *          - time the breaker stays open
+   * @param unit
+   *          - of coolDown
+   */
+  public CircuitBreakerSupplier(Supplier<Runnable> supplier, Monitor monitor, double threshold, int window,
+      long coolDown, TimeUnit unit) {
+    this(supplier, monitor, threshold, window, coolDown, unit, PROBES);
+  }
+
+  /**
+   * @param supplier
+   *          - of the tasks
+   * @param monitor
+   *          - of the tasks, signals their outcomes
+   * @param threshold
+   *          - failure rate, 0.0 to 1.0, of the window that opens the breaker
+   * @param window
+   *          - number of recent completions the failure rate is taken over
+   * @param coolDown
+   *          - time the breaker stays open
+   * @param unit
+   *          - of coolDown
+   * @param probes
+   *          - tasks supplied when half-open that must succeed to close the breaker
+   */
+  public CircuitBreakerSupplier(Supplier<Runnable> supplier, Monitor monitor, double threshold, int window,
+      long coolDown, TimeUnit unit, int probes) {
+    this(supplier, monitor, threshold, window, coolDown, unit, probes, coolDown);
+  }
+
+  /**
+   * @param supplier
+   *          - of the tasks
+   * @param monitor
+   *          - of the tasks, signals their outcomes
+   * @param threshold
+   *          - failure rate, 0.0 to 1.0, of the window that opens the breaker
+   * @param window
+   *          - number of recent completions the failure rate is taken over
+   * @param coolDown
+   *          - time the breaker stays open
+   * @param unit
+   *          - of coolDown and probeTimeout
+   * @param probes
+   *          - tasks supplied when half-open that must succeed to close the breaker
+   * @param probeTimeout
+   *          - time the probes have to complete before the breaker opens again, the cool-down by default
+   */
+  public CircuitBreakerSupplier(Supplier<Runnable> supplier, Monitor monitor, double threshold, int window,
+      long coolDown, TimeUnit unit, int probes, long probeTimeout) {
+    super(supplier);
+    if (window <= 0) throw new IllegalArgumentException("window must be > 0");
+    if (probes <= 0) throw new IllegalArgumentException("probes must be > 0");
+    if (probeTimeout <= 0) throw new IllegalArgumentException("probeTimeout must be > 0");
+    _threshold = threshold;
+    _window = new AtomicIntegerArray(window);
+    _coolDown = unit.toNanos(coolDown);
+    _probes = probes;
+    _probeTimeout = unit.toNanos(probeTimeout);
+    monitor.addListener(this);
+  }
+
+  public static Supplier<Runnable> decorate(Supplier<Runnable> supplier, Monitor monitor, double threshold,
+      int window, long coolDown, TimeUnit unit) {
+    return new CircuitBreakerSupplier(supplier, monitor, threshold, window, coolDown, unit);
+  }
+
+  /**
+   * Decorates a task supplied by a breaker; a probe probes with the decorated task, so the decoration, such as a time
+   * box, decides the outcome of the probe
+   * 
+   * @param task
+   *          - supplied by a breaker
+   * @param decorator
+   *          - of the task
+   * @return the decorated task, a probe of the decorated task when the task is a probe
+   */
+  public static Runnable decorateTask(Runnable task, UnaryOperator<Runnable> decorator) {
+    if (!(task instanceof CircuitBreakerSupplier.Probe)) return decorator.apply(task);
+
+    CircuitBreakerSupplier.Probe probe = (CircuitBreakerSupplier.Probe) task;
+    Runnable decorated = decorator.apply(probe.getTask());
+    return (decorated == probe.getTask()) ? probe : probe.with(decorated);
+  }
+
+  @Override
+  public void failed(Throwable error) {
+    outcome(true);
+  }
+
+  /**
+   * Blocks while the breaker is open, or half-open with all probes out, until tasks can be supplied again
+   * 
+   * @return the next task, null when there are no more or interrupted while waiting
+   */
+  @Override
+  public Runnable get() {
+    for (;;) {
+      switch (_state.get()) {
+        case CLOSED:
+          return decoratedGet();
+
+        case OPEN:
+          if (!Sleep.until(_openUntil)) return null;
+          _probed = 0;
+          _probeSuccesses.set(0);
+          _probeUntil = System.nanoTime() + _probeTimeout;
+          _round++;
+          _state.compareAndSet(State.OPEN, State.HALF_OPEN);
+          break;
+
+        case HALF_OPEN:
+          if (_probed < _probes) {
+            _probed++;
+            Runnable task = decoratedGet();
+            return (task == null) ? null : new Probe(task, _round);
+          }
+
+          long wait = _probeUntil - System.nanoTime();
+          if (wait <= 0) {
+            // a probe never completed
+            open(State.HALF_OPEN);
+            break;
+          }
+
+          // wait for the probes to decide, woken by the deciding probe
+          _waiting = Thread.currentThread();
+          if (_state.get() == State.HALF_OPEN) LockSupport.parkNanos(this, wait);
+          if (Thread.currentThread().isInterrupted()) return null;
+          break;
+      }
+    }
+  }
+
+  /**
+   * @return current failure rate of the window, 0 until the window is full
+   */
+  public double getFailureRate() {
+    return (_filled.get() < _window.length()) ? 0 : (double) _failures.get() / _window.length();
+  }
+
+  public State getState() {
+    return _state.get();
+  }
+
+  /**
+   * @return number of times the breaker opened
+   */
+  public int getTrips() {
+    return _trips.get();
+  }
+
+  /**
+   * Opens the breaker for the cool-down
+   */
+  private void open(State from) {
+    _openUntil = System.nanoTime() + _coolDown;
+    if (_state.compareAndSet(from, State.OPEN)) _trips.incrementAndGet();
+  }
+
+  private void outcome(boolean failed) {
+    // half-open the probes decide, open the outcomes are of tasks supplied before opening
+    if (_state.get() != State.CLOSED) return;
+
+    long completion = _filled.getAndIncrement();
+    int previous = _window.getAndSet((int) (completion % _window.length()), failed ? 1 : 0);
+    int failures = _failures.addAndGet((failed ? 1 : 0) - previous);
+    if (completion + 1 >= _window.length() && failures >= _threshold * _window.length()) open(State.CLOSED);
+  }
+
+  /**
+   * Decides the round of probes on the outcome of one of its probes, waking the waiting dispatch thread
+   * 
+   * @param round
+   *          - the probe was supplied for, probes of earlier rounds are ignored
+   * @param failed
+   *          - outcome of the probe
+   */
+  private void probed(int round, boolean failed) {
+    if (round != _round || _state.get() != State.HALF_OPEN) return;
+
+    if (failed) {
+      open(State.HALF_OPEN);
+    } else if (_probeSuccesses.incrementAndGet() >= _probes) {
+      reset();
+      _state.compareAndSet(State.HALF_OPEN, State.CLOSED);
+    }
+    LockSupport.unpark(_waiting);
+  }
+
+  /**
+   * Forgets the outcomes of the window
+   */
+  private void reset() {
+    for (int i = 0; i < _window.length(); i++) {
+      _window.set(i, 0);
+    }
+    _failures.set(0);
+    _filled.set(0);
+  }
+
+  @Override
+  public void succeeded() {
+    outcome(false);
+  }
+
+  /**
+   * @param task
+   *          - supplied by a breaker
+   * @return the task as supplied by the decorated supplier; a probe is the task it probes with
+   */
+  public static Runnable unwrap(Runnable task) {
+    return (task instanceof CircuitBreakerSupplier.Probe) ? ((CircuitBreakerSupplier.Probe) task).getTask() : task;
+  }
+}
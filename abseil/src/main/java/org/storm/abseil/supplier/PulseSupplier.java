@@ -1,67 +1,186 @@
 package org.storm.abseil.supplier;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
 import org.storm.abseil.runnable.DecoratedRunnable;
+import org.storm.abseil.utils.Sleep;
 
+/**
+ * <p>
+ * Supplies tasks in bursts; a burst of tasks is handed out as fast as they are asked for, then no more are supplied
+ * until every task of the burst has completed, or the burst has run for its max duration, and the gap between bursts
+ * has passed. Once the upstream supplier runs out, null is returned rather than wrapped in a task, even part way through
+ * a burst, so the tasks end; the upstream supplier isn't called again.
+ * </p>
+ * <p>
+ * Lock free; a burst is an immutable start time with two counters, tasks handed out and tasks not yet completed, and is
+ * replaced by compare and set when it ends. The upstream supplier is called outside of any lock and a waiting caller
+ * parks until the last task of the burst unparks it. Each task is wrapped to count down its burst; the wrappers aren't
+ * reused since a retried task is run again by the same wrapper.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
 public class PulseSupplier extends DecoratedSupplier<Runnable> {
-  private final AtomicInteger _running = new AtomicInteger();
-  private final Integer       _burst;
-  private AtomicBoolean       _wait    = new AtomicBoolean(false);
+  /**
+   * Tasks of one burst
+   */
+  private static final class Burst {
+    /** tasks handed out */
+    final AtomicInteger _issued = new AtomicInteger();
+
+    /** tasks not yet completed */
+    final AtomicInteger _pending;
+
+    /** earliest start, nanos */
+    final long          _start;
+
+    /** start of the first task, nanos; set by the caller handed the first task */
+    volatile long       _started;
+
+    Burst(int size, long start) {
+      _pending = new AtomicInteger(size);
+      _start = start;
+    }
+  }
+
+  /**
+   * Counts down the pending tasks of its burst when it completes
+   */
+  private static final class PulseRunnable extends DecoratedRunnable {
+    private final Burst         _burst;
+
+    private final PulseSupplier _pulse;
+
+    PulseRunnable(Runnable runnable, PulseSupplier pulse, Burst burst) {
+      super(runnable);
+      _pulse = pulse;
+      _burst = burst;
+    }
+
+    @Override
+    public void run() {
+      try {
+        runDecorated();
+      } finally {
+        _pulse.completed(_burst);
+      }
+    }
+  }
+
+  /** longest park before checking the burst again, the waiter may miss an unpark */
+  private static final long            MAX_PARK = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final AtomicReference<Burst> _current;
+
+  /** nanos after a burst ends before the next starts */
+  private final long                   _gap;
+
+  /** nanos a burst may run before the next starts without waiting for it to complete; 0 for no limit */
+  private final long                   _maxBurst;
+
+  private final int                    _size;
+
+  /** upstream supplier ran out */
+  private volatile boolean             _exhausted;
 
+  /** caller waiting for the burst to end */
+  private volatile Thread              _waiter;
+
+  /**
+   * @param supplier
+   *          - of the tasks
+   * @param burst
+   *          - tasks of each burst
+   */
   public PulseSupplier(Supplier<Runnable> supplier, Integer burst) {
+    this(supplier, burst, 0, 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param supplier
+   *          - of the tasks
+   * @param burst
+   *          - tasks of each burst
+   * @param gap
+   *          - after a burst ends before the next starts
+   * @param maxBurst
+   *          - time a burst may run before the next starts without waiting for its tasks to complete; 0 for no limit
+   * @param unit
+   *          - of gap and maxBurst
+   */
+  public PulseSupplier(Supplier<Runnable> supplier, int burst, long gap, long maxBurst, TimeUnit unit) {
     super(supplier);
-    _burst = burst;
+    if (burst <= 0) throw new IllegalArgumentException("burst must be > 0");
+    _size = burst;
+    _gap = unit.toNanos(gap);
+    _maxBurst = unit.toNanos(maxBurst);
+    _current = new AtomicReference<>(new Burst(burst, System.nanoTime()));
   }
 
   public static Supplier<Runnable> decorate(Supplier<Runnable> supplier, Integer burst) {
     return new PulseSupplier(supplier, burst);
   }
 
+  public static Supplier<Runnable> decorate(Supplier<Runnable> supplier, int burst, long gap, long maxBurst,
+      TimeUnit unit) {
+    return new PulseSupplier(supplier, burst, gap, maxBurst, unit);
+  }
+
   /**
    * callback to let the burst know that a runnable has completed
    */
-  private synchronized void done() {
-    if (_running.decrementAndGet() == 0) {
-      _wait.set(false);
-      notify();
+  private void completed(Burst burst) {
+    if (burst._pending.decrementAndGet() == 0) {
+      Thread waiter = _waiter;
+      if (waiter != null) LockSupport.unpark(waiter);
     }
   }
 
-  private synchronized Runnable syncGet() {
-    // wait till the previous burst is done
-    while (_wait.get()) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        return null;
-      }
-    }
+  /**
+   * Blocks, while the current burst is running or during the gap, until the next burst starts
+   *
+   * @return the next task, null when there are no more or interrupted while waiting
+   */
+  @Override
+  public Runnable get() {
+    for (;;) {
+      if (_exhausted) return null;
 
-    // determine if the burst is still going
-    if (_running.incrementAndGet() == _burst) {
-      _wait.set(true);
-      notify();
-    }
+      Burst burst = _current.get();
+      int issued = burst._issued.get();
+
+      if (issued < _size) {
+        if (issued == 0 && System.nanoTime() < burst._start && !Sleep.until(burst._start)) return null;
+        if (!burst._issued.compareAndSet(issued, issued + 1)) continue;
+        if (issued == 0) burst._started = System.nanoTime();
 
-    // decorate the runnable to notify the burst when it is done
-    return new DecoratedRunnable(decoratedGet()) {
-      @Override
-      public void run() {
-        try {
-          runDecorated();
-        } finally {
-          // notify the burst when the runnable is done
-          done();
+        Runnable runnable = decoratedGet();
+        if (runnable == null) {
+          _exhausted = true;
+          completed(burst);
+          return null;
         }
+        return new PulseRunnable(runnable, this, burst);
       }
-    };
-  }
 
-  @Override
-  public Runnable get() {
-    return syncGet();
+      // the burst is handed out, wait for it to complete or run out of time
+      long now = System.nanoTime();
+      long started = (burst._started == 0) ? now : burst._started;
+      long remaining = (_maxBurst > 0) ? started + _maxBurst - now : MAX_PARK;
+      if (burst._pending.get() <= 0 || remaining <= 0) {
+        _current.compareAndSet(burst, new Burst(_size, now + _gap));
+        continue;
+      }
+
+      _waiter = Thread.currentThread();
+      if (burst._pending.get() > 0) LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK));
+      _waiter = null;
+      if (Thread.currentThread().isInterrupted()) return null;
+    }
   }
 }
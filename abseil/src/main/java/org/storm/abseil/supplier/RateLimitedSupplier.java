@@ -0,0 +1,54 @@
+package org.storm.abseil.supplier;
+
+import java.util.function.Supplier;
+
+import org.storm.abseil.utils.RateLimiter;
+
+/**
+ * Supplies tasks at a steady rate, for driving a dependency at exactly its contracted throughput. Unlike
+ * {@link DelaySupplier}, which sleeps a random number of millis, the rate is held by a {@link RateLimiter} token bucket
+ * with nanosecond pacing, has a configurable burst and can be changed while running; see {@link #setRate(double)}.
+ * 
+ * @author Timothy Storm
+ */
+public class RateLimitedSupplier extends DecoratedSupplier<Runnable> {
+  private final RateLimiter _limiter;
+
+  public RateLimitedSupplier(Supplier<Runnable> supplier, double permitsPerSecond, int burst) {
+    this(supplier, new RateLimiter(permitsPerSecond, burst));
+  }
+
+  public RateLimitedSupplier(Supplier<Runnable> supplier, RateLimiter limiter) {
+    super(supplier);
+    _limiter = limiter;
+  }
+
+  public static Supplier<Runnable> decorate(Supplier<Runnable> supplier, double permitsPerSecond, int burst) {
+    return new RateLimitedSupplier(supplier, permitsPerSecond, burst);
+  }
+
+  @Override
+  public Runnable get() {
+    if (_limiter.acquire()) return decoratedGet();
+    return null;
+  }
+
+  public RateLimiter getLimiter() {
+    return _limiter;
+  }
+
+  /**
+   * @return tasks per second
+   */
+  public double getRate() {
+    return _limiter.getRate();
+  }
+
+  /**
+   * @param tasksPerSecond
+   *          - new steady rate of tasks
+   */
+  public void setRate(double tasksPerSecond) {
+    _limiter.setRate(tasksPerSecond);
+  }
+}
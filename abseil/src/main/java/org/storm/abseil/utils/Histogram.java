@@ -0,0 +1,305 @@
+package org.storm.abseil.utils;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Concurrent, log-bucketed histogram of non-negative long values (HDR style). Values are grouped by their power of 2
+ * magnitude and each magnitude is split into 128 linear sub-buckets, so any recorded value up to {@link #HIGHEST}
+ * (about an hour of nanos) is reported within 1/128 (< 0.8%) of its actual value. Larger values share the top bucket
+ * and are reported as the max. Recording is a couple of atomic increments and never allocates once a thread's stripe
+ * exists.
+ * </p>
+ * <p>
+ * Bucket counts are striped, by thread, over several arrays (36 KB each) that are allocated on first record and merged
+ * on read so recording threads rarely share a cache line. Reads are weakly consistent while values are being recorded;
+ * take a {@link #snapshot()} to read several percentiles of the same counts without merging the stripes for each.
+ * </p>
+ * <p>
+ * Used for task latencies in nanoseconds where the mean hides the tail; see {@link #getValueAtPercentile(double)}.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class Histogram implements Serializable {
+  /**
+   * Bucket counts of a histogram at one point in time, to read any number of percentiles from. Serialized sparsely,
+   * only the buckets that counted a value, so it stays small to send to another process.
+   */
+  public static final class Snapshot implements Serializable {
+    private static final long serialVersionUID = 2480915271652957371L;
+
+    /** sum of the counts */
+    private transient long    _count;
+
+    private transient long[]  _counts;
+
+    private final long        _max;
+
+    private Snapshot(long[] counts, long max) {
+      _max = max;
+      count(counts);
+    }
+
+    private void count(long[] counts) {
+      long count = 0;
+      for (long c : counts) {
+        count += c;
+      }
+      _counts = counts;
+      _count = count;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+      return _count;
+    }
+
+    /**
+     * @return largest recorded value, 0 if nothing has been recorded
+     */
+    public long getMax() {
+      return _max;
+    }
+
+    /**
+     * @param percentile
+     *          - 0.0 to 100.0
+     * @return the value that the given percentage of recorded values are less than or equal to, 0 if nothing has been
+     *         recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (_count <= 0) return 0;
+
+      double p = Math.min(Math.max(percentile, 0.0), 100.0);
+      long rank = Math.max(1, (long) Math.ceil((p / 100.0) * _count));
+
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += _counts[i];
+        if (seen >= rank) return Math.min(highestValue(i), _max);
+      }
+      return _max;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+
+      int buckets = in.readInt();
+      if (buckets < 0 || buckets > BUCKETS) throw new InvalidObjectException("Invalid bucket count " + buckets);
+
+      long[] counts = new long[BUCKETS];
+      for (int i = 0; i < buckets; i++) {
+        int index = in.readInt();
+        long count = in.readLong();
+        if (index < 0 || index >= BUCKETS || count < 0) throw new InvalidObjectException("Invalid bucket " + index);
+        counts[index] = count;
+      }
+      count(counts);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+
+      int buckets = 0;
+      for (long count : _counts) {
+        if (count != 0) buckets++;
+      }
+      out.writeInt(buckets);
+      for (int i = 0; i < BUCKETS; i++) {
+        if (_counts[i] == 0) continue;
+        out.writeInt(i);
+        out.writeLong(_counts[i]);
+      }
+    }
+  }
+
+  private static final long serialVersionUID = -3219441870385883924L;
+
+  /** log2 of the sub-buckets per magnitude */
+  private static final int  SUB_BITS         = 7;
+
+  private static final int  SUB_COUNT        = 1 << SUB_BITS;
+
+  /** highest value recorded within the precision, about an hour of nanos; larger values share the top bucket */
+  public static final long  HIGHEST          = (1L << (Long.SIZE - Long.numberOfLeadingZeros(
+      TimeUnit.HOURS.toNanos(1)))) - 1;
+
+  /** buckets needed to cover the magnitudes up to the highest value */
+  static final int          BUCKETS          = (Long.SIZE - Long.numberOfLeadingZeros(HIGHEST) - SUB_BITS + 1)
+      * SUB_COUNT;
+
+  /** default stripes; a power of 2 of at least the available processors, at most 8 */
+  public static final int   STRIPES          = Math.min(8,
+      Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+  /**
+   * @param index
+   *          - of bucket
+   * @return highest value that is counted in the bucket
+   */
+  static long highestValue(int index) {
+    if (index < SUB_COUNT) return index;
+    if (index >= BUCKETS - 1) return Long.MAX_VALUE;
+
+    int shift = (index >> SUB_BITS) - 1;
+    long sub = (index & (SUB_COUNT - 1)) + SUB_COUNT;
+    long highest = ((sub + 1) << shift) - 1;
+    return (highest < 0) ? Long.MAX_VALUE : highest;
+  }
+
+  /**
+   * @param value
+   *          - to bucket
+   * @return bucket index of the value
+   */
+  static int indexOf(long value) {
+    if (value < SUB_COUNT) return (value < 0) ? 0 : (int) value;
+    if (value > HIGHEST) return BUCKETS - 1;
+
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+    return ((shift + 1) << SUB_BITS) + (int) (value >>> shift) - SUB_COUNT;
+  }
+
+  /** bucket counts, allocated per stripe on first record */
+  private final AtomicReferenceArray<AtomicLongArray> _counts;
+
+  private final AtomicLong                            _max   = new AtomicLong();
+
+  private final int                                   _mask;
+
+  private final LongAdder                             _total = new LongAdder();
+
+  /**
+   * Histogram striped for the available processors
+   */
+  public Histogram() {
+    this(STRIPES);
+  }
+
+  /**
+   * @param stripes
+   *          - number of bucket arrays concurrent recording is spread over, rounded up to a power of 2; 1 for a
+   *          histogram that is rarely recorded concurrently
+   */
+  public Histogram(int stripes) {
+    if (stripes <= 0 || stripes > (1 << 16)) throw new IllegalArgumentException("stripes must be > 0");
+
+    int size = Integer.highestOneBit(stripes);
+    if (size < stripes) size <<= 1;
+
+    _counts = new AtomicReferenceArray<>(size);
+    _mask = size - 1;
+  }
+
+  /**
+   * @return number of recorded values
+   */
+  public long getCount() {
+    return _total.sum();
+  }
+
+  /**
+   * @return largest recorded value, 0 if nothing has been recorded
+   */
+  public long getMax() {
+    return _max.get();
+  }
+
+  /**
+   * @param percentile
+   *          - 0.0 to 100.0
+   * @return the value that the given percentage of recorded values are less than or equal to, 0 if nothing has been
+   *         recorded
+   * @see #snapshot()
+   */
+  public long getValueAtPercentile(double percentile) {
+    return snapshot().getValueAtPercentile(percentile);
+  }
+
+  /**
+   * Adds the values recorded by another histogram to this histogram
+   *
+   * @param other
+   *          - histogram to add
+   * @return this histogram
+   */
+  public Histogram merge(Histogram other) {
+    return merge(other.snapshot()._counts, other._total.sum(), other._max.get());
+  }
+
+  /**
+   * Adds the values of a snapshot, of this or another process's histogram, to this histogram
+   *
+   * @param other
+   *          - snapshot to add
+   * @return this histogram
+   */
+  public Histogram merge(Snapshot other) {
+    return merge(other._counts, other._count, other._max);
+  }
+
+  private Histogram merge(long[] counts, long total, long max) {
+    AtomicLongArray stripe = stripe();
+    for (int i = 0; i < BUCKETS; i++) {
+      if (counts[i] != 0) stripe.addAndGet(i, counts[i]);
+    }
+    _total.add(total);
+    _max.accumulateAndGet(max, Math::max);
+    return this;
+  }
+
+  /**
+   * Records a value; negative values are recorded as 0
+   *
+   * @param value
+   *          - to record
+   */
+  public void record(long value) {
+    stripe().incrementAndGet(indexOf(value));
+    _total.increment();
+    if (value > _max.get()) _max.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * @return the bucket counts merged from all stripes, for reading several percentiles
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int s = 0; s < _counts.length(); s++) {
+      AtomicLongArray stripe = _counts.get(s);
+      if (stripe == null) continue;
+
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    return new Snapshot(counts, _max.get());
+  }
+
+  /**
+   * @return bucket counts of the current thread's stripe
+   */
+  private AtomicLongArray stripe() {
+    long id = Thread.currentThread().getId();
+    int index = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & _mask;
+
+    AtomicLongArray stripe = _counts.get(index);
+    if (stripe == null) {
+      _counts.compareAndSet(index, null, new AtomicLongArray(BUCKETS));
+      stripe = _counts.get(index);
+    }
+    return stripe;
+  }
+}
@@ -0,0 +1,89 @@
+package org.storm.abseil.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Token bucket that hands out permits at a steady rate. Each permit is given a slot on a timeline spaced 1/rate apart
+ * and callers wait, with nanosecond parking, until their slot; a bucket of burst permits lets callers that fell behind
+ * catch up so the long run rate holds even when parking overshoots. The rate can be changed at any time.
+ * </p>
+ * <p>
+ * Lock free; a permit costs a compare and set plus the wait.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class RateLimiter {
+  private final int        _burst;
+
+  /** nanos between permits */
+  private volatile long    _interval;
+
+  /** slot of the next permit, nanos */
+  private final AtomicLong _next = new AtomicLong(Long.MIN_VALUE);
+
+  /**
+   * @param permitsPerSecond
+   *          - steady rate of permits
+   * @param burst
+   *          - permits that can be handed out at once after being idle; at least 1
+   */
+  public RateLimiter(double permitsPerSecond, int burst) {
+    if (burst <= 0) throw new IllegalArgumentException("burst must be > 0");
+    _burst = burst;
+    setRate(permitsPerSecond);
+  }
+
+  /**
+   * Waits for a permit
+   *
+   * @return true when permitted, false if interrupted while waiting
+   */
+  public boolean acquire() {
+    return acquire(1);
+  }
+
+  /**
+   * Waits for a number of permits
+   *
+   * @param permits
+   *          - to wait for
+   * @return true when permitted, false if interrupted while waiting
+   */
+  public boolean acquire(int permits) {
+    long interval = _interval;
+    long now = System.nanoTime();
+
+    long slot, next;
+    do {
+      next = _next.get();
+      slot = Math.max(next, now - ((_burst - 1) * interval));
+    } while (!_next.compareAndSet(next, slot + (permits * interval)));
+
+    return Sleep.until(slot);
+  }
+
+  public int getBurst() {
+    return _burst;
+  }
+
+  /**
+   * @return permits per second
+   */
+  public double getRate() {
+    return (double) TimeUnit.SECONDS.toNanos(1) / _interval;
+  }
+
+  /**
+   * Changes the rate; permits already handed out keep their slots
+   *
+   * @param permitsPerSecond
+   *          - steady rate of permits
+   */
+  public void setRate(double permitsPerSecond) {
+    if (!(permitsPerSecond > 0)) throw new IllegalArgumentException("permitsPerSecond must be > 0");
+    _interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+  }
+}
@@ -2,6 +2,7 @@ package org.storm.abseil.utils;
 
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Thread sleep utilities that don't throw {@link InterruptedException}
@@ -9,6 +10,9 @@ import java.util.concurrent.TimeUnit;
  * @author Timothy Storm
  */
 public class Sleep {
+  /** waits shorter than this yield instead of park, parking can overshoot by tens of micros */
+  private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
   /**
    * Safely sleeps a fixed amount of time
    * 
@@ -60,4 +64,24 @@ public class Sleep {
   public static boolean random(long max, TimeUnit unit) {
     return random(0, max, unit);
   }
+
+  /**
+   * Safely waits until a {@link System#nanoTime()} deadline with nanosecond precision; parks for most of the wait and
+   * yields for the last few micros.
+   * 
+   * @param deadline
+   *          - {@link System#nanoTime()} to wait until
+   * @return if the wait completed (true) or was interrupted (false)
+   */
+  public static boolean until(long deadline) {
+    for (;;) {
+      if (Thread.currentThread().isInterrupted()) return false;
+
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) return true;
+
+      if (remaining > SPIN_NANOS) LockSupport.parkNanos(remaining - SPIN_NANOS);
+      else Thread.yield();
+    }
+  }
 }
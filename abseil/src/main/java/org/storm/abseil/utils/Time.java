@@ -26,4 +26,18 @@ public class Time {
     // ISO8601 - PnDTnHnMnS
     return String.format("P%dDT%dH%dM%dS%d", days, hours, mins, secs, ms);
   }
+
+  /**
+   * Formats nanoseconds with the largest unit that keeps the value readable; ns, us, ms or s.
+   * 
+   * @param nanos
+   *          - to format
+   * @return formatted nanos, example 1.25ms
+   */
+  public static String formatNanos(long nanos) {
+    if (nanos < TimeUnit.MICROSECONDS.toNanos(1)) return nanos + "ns";
+    if (nanos < TimeUnit.MILLISECONDS.toNanos(1)) return String.format("%.1fus", nanos / 1e3);
+    if (nanos < TimeUnit.SECONDS.toNanos(1)) return String.format("%.2fms", nanos / 1e6);
+    return String.format("%.3fs", nanos / 1e9);
+  }
 }
@@ -0,0 +1,343 @@
+package org.storm.abseil.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Hashed timer wheel that tracks any number of timeouts on a single daemon thread. Timeouts are hashed by their deadline
+ * tick into a ring of buckets and the wheel thread advances one bucket per tick, expiring the timeouts that are due.
+ * Scheduling and cancelling are O(1) and don't depend on how many timeouts are pending. The wheel thread sleeps through
+ * the ticks of empty buckets, so a far off timeout wakes it about once a rotation, and parks while nothing is scheduled.
+ * </p>
+ * <p>
+ * Expired tasks are run on the wheel thread so they must be short; anything that blocks should be handed off to another
+ * thread.
+ * </p>
+ *
+ * @author Timothy Storm
+ */
+public class TimerWheel {
+  /**
+   * Handle of a scheduled task
+   */
+  public interface Timeout {
+    /**
+     * Cancels the scheduled task if it hasn't expired yet
+     *
+     * @return true if the task was cancelled, false if it already expired or was cancelled
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    boolean isExpired();
+  }
+
+  /**
+   * Scheduled task and its place in the wheel. Bucket links are only touched by the wheel thread.
+   */
+  private static final class Entry implements Timeout {
+    static final int                              PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+    static final AtomicIntegerFieldUpdater<Entry> STATE   = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "_state");
+
+    Bucket                                        _bucket;
+
+    /** nanos after the wheel start the task is due */
+    final long                                    _deadline;
+
+    Entry                                         _next, _prev;
+
+    /** wheel rotations left before expiring */
+    long                                          _rounds;
+
+    volatile int                                  _state;
+
+    final Runnable                                _task;
+
+    final TimerWheel                              _wheel;
+
+    Entry(TimerWheel wheel, Runnable task, long deadline) {
+      _wheel = wheel;
+      _task = task;
+      _deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+      _wheel._cancelled.add(this);
+      if (_wheel._sleeping) _wheel.wake();
+      return true;
+    }
+
+    boolean expire() {
+      return STATE.compareAndSet(this, PENDING, EXPIRED);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return _state == CANCELLED;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return _state == EXPIRED;
+    }
+  }
+
+  /**
+   * Doubly linked list of entries hashed to the same tick
+   */
+  private static final class Bucket {
+    Entry _head, _tail;
+
+    void add(Entry entry) {
+      entry._bucket = this;
+      if (_head == null) {
+        _head = _tail = entry;
+      } else {
+        _tail._next = entry;
+        entry._prev = _tail;
+        _tail = entry;
+      }
+    }
+
+    /**
+     * @return the entry after the removed entry
+     */
+    Entry remove(Entry entry) {
+      Entry next = entry._next;
+      if (entry._prev != null) entry._prev._next = next;
+      if (next != null) next._prev = entry._prev;
+      if (entry == _head) _head = next;
+      if (entry == _tail) _tail = entry._prev;
+      entry._next = entry._prev = null;
+      entry._bucket = null;
+      return next;
+    }
+  }
+
+  /** wheel shared by all abseils */
+  private static final TimerWheel SHARED = new TimerWheel("Abseil - timer", 1, TimeUnit.MILLISECONDS, 512);
+
+  /**
+   * @return wheel shared by all abseils, 1 millisecond ticks
+   */
+  public static TimerWheel shared() {
+    return SHARED;
+  }
+
+  private final Bucket[]     _buckets;
+
+  /** timeouts cancelled but not yet removed from their bucket */
+  private final Queue<Entry> _cancelled = new ConcurrentLinkedQueue<>();
+
+  private final int          _mask;
+
+  private final String       _name;
+
+  /** timeouts not yet expired or removed */
+  private final AtomicLong   _pending   = new AtomicLong();
+
+  /** timeouts scheduled but not yet placed in a bucket */
+  private final Queue<Entry> _scheduled = new ConcurrentLinkedQueue<>();
+
+  /** wheel thread sleeps through empty buckets; scheduling or cancelling wakes it */
+  private volatile boolean   _sleeping;
+
+  private final long         _startNanos;
+
+  private volatile Thread    _thread;
+
+  /** last processed tick, wheel thread only */
+  private long               _tick;
+
+  private final long         _tickNanos;
+
+  /**
+   * @param name
+   *          - of the wheel thread
+   * @param tick
+   *          - duration of a tick, the precision of the wheel
+   * @param unit
+   *          - of tick
+   * @param buckets
+   *          - number of buckets in the wheel; rounded up to a power of 2
+   */
+  public TimerWheel(String name, long tick, TimeUnit unit, int buckets) {
+    if (tick <= 0) throw new IllegalArgumentException("tick must be > 0");
+    if (buckets <= 0 || buckets > (1 << 30)) throw new IllegalArgumentException("buckets must be > 0");
+
+    int size = Integer.highestOneBit(buckets);
+    if (size < buckets) size <<= 1;
+
+    _buckets = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      _buckets[i] = new Bucket();
+    }
+    _mask = size - 1;
+    _name = name;
+    _tickNanos = unit.toNanos(tick);
+    _startNanos = System.nanoTime();
+  }
+
+  /**
+   * Move cancelled entries out of their buckets
+   */
+  private void drainCancelled() {
+    Entry entry;
+    while ((entry = _cancelled.poll()) != null) {
+      if (entry._bucket == null) continue;
+      entry._bucket.remove(entry);
+      _pending.decrementAndGet();
+    }
+  }
+
+  /**
+   * Move newly scheduled entries into their buckets
+   */
+  private void drainScheduled() {
+    Entry entry;
+    while ((entry = _scheduled.poll()) != null) {
+      if (entry.isCancelled()) {
+        _pending.decrementAndGet();
+        continue;
+      }
+
+      long due = entry._deadline / _tickNanos + (entry._deadline % _tickNanos == 0 ? 0 : 1);
+      if (due < _tick) due = _tick;
+      entry._rounds = (due - _tick) / _buckets.length;
+      _buckets[(int) (due & _mask)].add(entry);
+    }
+  }
+
+  /**
+   * Expire the due entries of the bucket, counting down the rounds of the rest
+   */
+  private void expire(Bucket bucket) {
+    Entry entry = bucket._head;
+    while (entry != null) {
+      if (entry.isCancelled()) {
+        entry = bucket.remove(entry);
+        _pending.decrementAndGet();
+      } else if (entry._rounds <= 0) {
+        Entry next = bucket.remove(entry);
+        _pending.decrementAndGet();
+        if (entry.expire()) run(entry._task);
+        entry = next;
+      } else {
+        entry._rounds--;
+        entry = entry._next;
+      }
+    }
+  }
+
+  /**
+   * @return ticks to the next bucket holding timeouts, a full rotation if none does; wheel thread only
+   */
+  private long occupied() {
+    for (int i = 1; i < _buckets.length; i++) {
+      if (_buckets[(int) ((_tick + i) & _mask)]._head != null) return i;
+    }
+    return _buckets.length;
+  }
+
+  /**
+   * @return number of timeouts neither expired nor cancelled yet
+   */
+  public long getPending() {
+    return _pending.get();
+  }
+
+  private void run(Runnable task) {
+    try {
+      task.run();
+    } catch (Throwable t) {
+      Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+  }
+
+  /**
+   * Schedules a task to run once after the delay
+   *
+   * @param task
+   *          - to run, on the wheel thread, when the delay has passed
+   * @param delay
+   *          - before running the task
+   * @param unit
+   *          - of delay
+   * @return handle to cancel the task
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (task == null) throw new NullPointerException();
+
+    long deadline = System.nanoTime() - _startNanos + unit.toNanos(Math.max(delay, 0));
+    if (deadline < 0) deadline = Long.MAX_VALUE; // overflow, never
+
+    Entry entry = new Entry(this, task, deadline);
+    _scheduled.add(entry);
+    if (_pending.getAndIncrement() == 0 || _sleeping) wake();
+    return entry;
+  }
+
+  /**
+   * Starts the wheel thread on first use or unparks it if it is waiting for work
+   */
+  private void wake() {
+    Thread thread = _thread;
+    if (thread == null) {
+      synchronized (this) {
+        if (_thread == null) {
+          thread = new Thread(this::work, _name);
+          thread.setDaemon(true);
+          thread.start();
+          _thread = thread;
+          return;
+        }
+        thread = _thread;
+      }
+    }
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Wheel thread loop; advances the wheel while timeouts are pending, skipping the ticks of empty buckets unless a
+   * timeout was scheduled or cancelled meanwhile
+   */
+  private void work() {
+    for (;;) {
+      if (_pending.get() == 0) {
+        LockSupport.park(this);
+
+        // nothing was scheduled while idle so the skipped ticks can't hold anything due
+        _tick = Math.max(_tick, (System.nanoTime() - _startNanos) / _tickNanos);
+        continue;
+      }
+
+      long next = _tick + 1;
+      if (_scheduled.isEmpty() && _cancelled.isEmpty()) next = _tick + occupied();
+
+      long wait = next * _tickNanos - (System.nanoTime() - _startNanos);
+      if (wait > 0) {
+        _sleeping = true;
+        // scheduled or cancelled while deciding how long to sleep
+        if (_scheduled.isEmpty() && _cancelled.isEmpty()) LockSupport.parkNanos(this, wait);
+        _sleeping = false;
+        continue;
+      }
+
+      // the skipped buckets are empty
+      _tick = next;
+      drainCancelled();
+      drainScheduled();
+      expire(_buckets[(int) (_tick & _mask)]);
+    }
+  }
+}
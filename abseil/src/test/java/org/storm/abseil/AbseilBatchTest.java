@@ -0,0 +1,92 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.storm.abseil.runnable.PrioritizedRunnable;
+
+/**
+ * Tests that batched Abseils run and monitor every task of every batch, and refuse what dispatches tasks one at a time
+ */
+@RunWith(Parameterized.class)
+public class AbseilBatchTest extends AbseilTest {
+  static final int TASKS = 10000;
+
+  Abseil           _abseil;
+
+  public AbseilBatchTest(Abseil abseil) {
+    _abseil = abseil;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Abseil> abseils() {
+    return Arrays.asList(new Abseil[] { Abseil.builder().minThreads(3).maxThreads(3).batchSize(64).build(),
+        Abseil.builder().virtualThreads().maxThreads(3).batchSize(64).build() });
+  }
+
+  @Test(timeout = 10000)
+  public void batches() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger(), ran = new AtomicInteger();
+
+    Monitor monitor = _abseil.process((max) -> {
+      assertEquals(64, max);
+
+      List<Runnable> batch = new ArrayList<>(max);
+      while (batch.size() < max && supplied.incrementAndGet() <= TASKS) {
+        batch.add(ran::incrementAndGet);
+      }
+      return batch;
+    }).get(5, TimeUnit.SECONDS);
+
+    assertEquals(TASKS, ran.get());
+    assertEquals(TASKS, monitor.getTotal().longValue());
+    assertEquals(TASKS, monitor.getSuccess().longValue());
+    assertTrue(monitor.getActive() == 0);
+  }
+
+  /**
+   * Batching is refused with lanes, retries and prioritized queues rather than silently skipping them
+   */
+  @Test
+  public void incompatible() {
+    AbseilBuilder[] builders = { Abseil.builder().batchSize(8).lane("a", 1, 1).lanes((r) -> "a"),
+        Abseil.builder().batchSize(8).retry(3, 1, 10, TimeUnit.MILLISECONDS),
+        Abseil.builder().batchSize(8).prioritized(16) };
+    for (AbseilBuilder builder : builders) {
+      try {
+        builder.build();
+        fail("expected batching to be refused");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Prioritized tasks of a batch have their latency recorded by priority like single tasks
+   */
+  @Test(timeout = 5000)
+  public void priorities() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    Abseil abseil = Abseil.builder().batchSize(8).build();
+    Monitor monitor = abseil.process(() -> {
+      int i = supplied.getAndIncrement();
+      return (i < 20) ? new PrioritizedRunnable(() -> {}, i % 2) : null;
+    }).get(2, TimeUnit.SECONDS);
+
+    assertEquals(20, monitor.getSuccess().intValue());
+    assertEquals(10, monitor.getPriorityCount(0).intValue());
+    assertEquals(10, monitor.getPriorityCount(1).intValue());
+  }
+}
@@ -0,0 +1,175 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests that tasks of a slow lane can't take the threads of the other lanes
+ */
+public class AbseilBulkheadTest extends AbseilTest {
+  /**
+   * Task of a backend, keyed by the backend name
+   */
+  static class BackendTask implements Runnable {
+    final String        _backend;
+
+    final AtomicInteger _inflight, _peak;
+
+    final long          _millis;
+
+    BackendTask(String backend, long millis, AtomicInteger inflight, AtomicInteger peak) {
+      _backend = backend;
+      _millis = millis;
+      _inflight = inflight;
+      _peak = peak;
+    }
+
+    @Override
+    public void run() {
+      _peak.accumulateAndGet(_inflight.incrementAndGet(), Math::max);
+      try {
+        Sleep.fixed(_millis, TimeUnit.MILLISECONDS);
+      } finally {
+        _inflight.decrementAndGet();
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void isolation() throws Exception {
+    final int slow = 20, fast = 200, other = 20;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicInteger slowInflight = new AtomicInteger(), slowPeak = new AtomicInteger();
+    final AtomicInteger fastInflight = new AtomicInteger(), fastPeak = new AtomicInteger();
+    final AtomicInteger otherInflight = new AtomicInteger(), otherPeak = new AtomicInteger();
+    final AtomicLong fastDone = new AtomicLong();
+
+    Abseil abseil = Abseil.builder().minThreads(8).maxThreads(8).lane("slow", 2, 100).lane("fast", 4, 1000)
+        .lanes((task) -> ((BackendTask) task)._backend).build();
+    long start = System.nanoTime();
+    Monitor monitor = abseil.process(() -> {
+      int i = supplied.getAndIncrement();
+      if (i < slow) return new BackendTask("slow", 100, slowInflight, slowPeak);
+      if (i < slow + other) return new BackendTask("other", 1, otherInflight, otherPeak);
+      if (i < slow + other + fast) return new BackendTask("fast", 1, fastInflight, fastPeak) {
+        @Override
+        public void run() {
+          super.run();
+          fastDone.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+      };
+      return null;
+    }).get(8, TimeUnit.SECONDS);
+    long end = System.nanoTime();
+
+    Bulkhead bulkhead = abseil.getBulkhead();
+    assertEquals(slow, bulkhead.getLane("slow").getMonitor().getSuccess().longValue());
+    assertEquals(fast, bulkhead.getLane("fast").getMonitor().getSuccess().longValue());
+    assertEquals(slow + fast + other, monitor.getSuccess().longValue());
+    assertEquals(0, bulkhead.getQueued());
+
+    assertTrue("slow peak " + slowPeak, slowPeak.get() <= 2);
+    assertTrue("fast peak " + fastPeak, fastPeak.get() <= 4);
+
+    // the fast lane finished long before the slow lane, the slow lane needs ~1 second
+    assertTrue("fast lane waited on the slow lane", fastDone.get() - start < (end - start) / 2);
+  }
+
+  @Test(timeout = 10000)
+  public void full() throws Exception {
+    final int tasks = 10;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicInteger inflight = new AtomicInteger(), peak = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(4).maxThreads(4).lane("slow", 1, 2)
+        .lanes((task) -> ((BackendTask) task)._backend).build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.getAndIncrement() >= tasks) return null;
+      return new BackendTask("slow", 100, inflight, peak);
+    }).get(8, TimeUnit.SECONDS);
+
+    Bulkhead.Lane lane = abseil.getBulkhead().getLane("slow");
+    long rejected = lane.getRejected();
+    assertTrue(lane.getMonitor().getDuration() > 0);
+    assertTrue("rejected " + rejected, rejected >= tasks - 4);
+    assertEquals(tasks - rejected, lane.getMonitor().getSuccess().longValue());
+    assertEquals(rejected, lane.getMonitor().getFail().longValue());
+    assertEquals(rejected, monitor.getFail().longValue());
+    assertEquals(1, peak.get());
+
+    // a rejected task is counted like a task that failed at once
+    assertEquals(tasks, lane.getMonitor().getTotal().longValue());
+    assertEquals(tasks, monitor.getTotal().longValue());
+    assertEquals(tasks, monitor.getCompleted().longValue());
+    assertEquals(0, monitor.getActive().longValue());
+  }
+
+  /**
+   * Rejections aren't task outcomes; a circuit breaker, or any other listener, isn't told of them
+   */
+  @Test(timeout = 10000)
+  public void rejectionsAreNotOutcomes() throws Exception {
+    final int tasks = 10;
+    final AtomicInteger supplied = new AtomicInteger(), failed = new AtomicInteger();
+    final AtomicInteger inflight = new AtomicInteger(), peak = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(4).maxThreads(4).lane("slow", 1, 2)
+        .lanes((task) -> ((BackendTask) task)._backend).build();
+    abseil.getMonitor().addListener(new Monitor.Listener() {
+      @Override
+      public void failed(Throwable error) {
+        failed.incrementAndGet();
+      }
+
+      @Override
+      public void succeeded() {}
+    });
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.getAndIncrement() >= tasks) return null;
+      return new BackendTask("slow", 50, inflight, peak);
+    }).get(8, TimeUnit.SECONDS);
+
+    assertTrue(abseil.getBulkhead().getLane("slow").getRejected() > 0);
+    assertEquals(monitor.getFail().longValue(), abseil.getBulkhead().getLane("slow").getRejected());
+    assertEquals(0, failed.get());
+  }
+
+  /**
+   * The lane allows more tasks than the pool has workers; the tasks the pool would run on the dispatch thread are
+   * handed back to the lane and run by the workers
+   */
+  @Test(timeout = 10000)
+  public void saturatedPool() throws Exception {
+    final int tasks = 100;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicInteger inflight = new AtomicInteger(), peak = new AtomicInteger();
+    final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    Abseil abseil = Abseil.builder().minThreads(1).maxThreads(1).lane("wide", 8, tasks)
+        .lanes((task) -> ((BackendTask) task)._backend).build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.getAndIncrement() >= tasks) return null;
+      return new BackendTask("wide", 1, inflight, peak) {
+        @Override
+        public void run() {
+          threads.add(Thread.currentThread().getName());
+          super.run();
+        }
+      };
+    }).get(8, TimeUnit.SECONDS);
+
+    assertEquals(tasks, monitor.getSuccess().longValue());
+    assertEquals(tasks, abseil.getBulkhead().getLane("wide").getMonitor().getSuccess().longValue());
+    assertEquals(0, abseil.getBulkhead().getQueued());
+    assertEquals(Set.of("Abseil - task"), threads);
+  }
+}
@@ -0,0 +1,167 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.storm.abseil.supplier.CircuitBreakerSupplier;
+import org.storm.abseil.runnable.TimeBoxedRunnable;
+import org.storm.abseil.supplier.CircuitBreakerSupplier.State;
+
+/**
+ * Tests that tasks stop being pulled while they fail and resume once probes succeed
+ */
+public class AbseilCircuitBreakerTest extends AbseilTest {
+  /**
+   * Runs a task as a worker would, its failure recorded rather than thrown
+   */
+  private static void run(Runnable task) {
+    try {
+      task.run();
+    } catch (IllegalStateException e) {
+      // down
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void states() throws Exception {
+    final AtomicBoolean down = new AtomicBoolean(true);
+    Monitor monitor = new Monitor();
+    CircuitBreakerSupplier breaker = new CircuitBreakerSupplier(() -> () -> {
+      if (down.get()) throw new IllegalStateException("down");
+    }, monitor, 0.5, 10, 50, TimeUnit.MILLISECONDS, 2);
+
+    for (int i = 0; i < 5; i++) {
+      monitor.success();
+      monitor.fail(new IllegalStateException());
+    }
+    assertEquals(State.OPEN, breaker.getState());
+    assertEquals(1, breaker.getTrips());
+
+    // waits out the cool-down then probes
+    long start = System.nanoTime();
+    Runnable probe = breaker.get();
+    assertNotNull(probe);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    assertEquals(State.HALF_OPEN, breaker.getState());
+
+    // tasks supplied before opening don't decide
+    monitor.success();
+    monitor.fail(new IllegalStateException());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+
+    // a failed probe opens it again
+    run(probe);
+    assertEquals(State.OPEN, breaker.getState());
+    assertEquals(2, breaker.getTrips());
+
+    down.set(false);
+    Runnable first = breaker.get();
+    Runnable second = breaker.get();
+    assertEquals(State.HALF_OPEN, breaker.getState());
+
+    // nor does a probe of an earlier half-open
+    run(probe);
+    run(first);
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    run(second);
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.getFailureRate() == 0);
+  }
+
+  /**
+   * A probe over its time budget fails, even when it ignores the interrupt and returns
+   */
+  @Test(timeout = 5000)
+  public void probeOverBudget() throws Exception {
+    Monitor monitor = new Monitor();
+    CircuitBreakerSupplier breaker = new CircuitBreakerSupplier(() -> () -> {
+      long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+      while (System.nanoTime() < until) {
+        Thread.onSpinWait();
+      }
+    }, monitor, 0.5, 2, 10, TimeUnit.MILLISECONDS, 1);
+    monitor.fail(new IllegalStateException());
+    monitor.fail(new IllegalStateException());
+    assertEquals(State.OPEN, breaker.getState());
+
+    Runnable probe = CircuitBreakerSupplier.decorateTask(breaker.get(), (task) -> new TimeBoxedRunnable(task, 20,
+        TimeUnit.MILLISECONDS, monitor));
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    try {
+      probe.run();
+      fail("expected the probe to be over budget");
+    } catch (CancellationException expected) {
+      // over budget
+    }
+    assertEquals(State.OPEN, breaker.getState());
+    assertEquals(2, breaker.getTrips());
+  }
+
+  /**
+   * Probes that never complete open the breaker again after the probe timeout rather than blocking the dispatcher
+   */
+  @Test(timeout = 5000)
+  public void probeTimeout() throws Exception {
+    Monitor monitor = new Monitor();
+    CircuitBreakerSupplier breaker = new CircuitBreakerSupplier(() -> () -> {}, monitor, 0.5, 2, 50,
+        TimeUnit.MILLISECONDS, 1, 100);
+    monitor.fail(new IllegalStateException());
+    monitor.fail(new IllegalStateException());
+    assertEquals(State.OPEN, breaker.getState());
+
+    Runnable stuck = breaker.get();
+    assertEquals(State.HALF_OPEN, breaker.getState());
+
+    // the probe timeout, then the cool-down, before the next probe
+    long start = System.nanoTime();
+    Runnable probe = breaker.get();
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(140));
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertEquals(2, breaker.getTrips());
+
+    stuck.run();
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    probe.run();
+    assertEquals(State.CLOSED, breaker.getState());
+  }
+
+  /**
+   * The dependency is down for the first 300ms; the breaker keeps most tasks from hitting it while down
+   */
+  @Test(timeout = 10000)
+  public void outage() throws Exception {
+    final int tasks = 500;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicLong recovery = new AtomicLong();
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).circuitBreaker(0.5, 20, 50, TimeUnit.MILLISECONDS)
+        .build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.incrementAndGet() > tasks) return null;
+      recovery.compareAndSet(0, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300));
+
+      return () -> {
+        if (System.nanoTime() < recovery.get()) throw new IllegalStateException("down");
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+    }).get(8, TimeUnit.SECONDS);
+
+    long fails = monitor.getFail();
+    assertTrue("fails " + fails, fails > 0 && fails < 100);
+    assertEquals(tasks, monitor.getTotal().longValue());
+    assertEquals(tasks - fails, monitor.getSuccess().longValue());
+  }
+}
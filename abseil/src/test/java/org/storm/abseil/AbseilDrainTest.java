@@ -0,0 +1,134 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.storm.abseil.Abseil.State;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests the abseil completes the moment its in-flight tasks drain and interrupts them at the drain timeout
+ */
+public class AbseilDrainTest extends AbseilTest {
+  /**
+   * Tasks that run longer than the default drain timeout finish when given the time
+   */
+  @Test(timeout = 10000)
+  public void drained() throws Exception {
+    final AtomicBoolean finished = new AtomicBoolean();
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).maxRuntime(100, TimeUnit.MILLISECONDS)
+        .drainTimeout(10, TimeUnit.SECONDS).build();
+    long start = System.nanoTime();
+    CompletableFuture<Monitor> future = abseil.process(() -> {
+      if (supplied.getAndIncrement() > 0) return null;
+      return () -> finished.set(Sleep.fixed(Abseil.DRAIN_TIMEOUT + 500, TimeUnit.MILLISECONDS));
+    });
+    CompletableFuture<Long> succeeded = future.thenApply(Monitor::getSuccess);
+
+    assertEquals(1L, succeeded.get(8, TimeUnit.SECONDS).longValue());
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(finished.get());
+    assertTrue("elapsed " + elapsed, elapsed < Abseil.DRAIN_TIMEOUT + 1500);
+    assertEquals(0, abseil.getInflight());
+    assertTrue(abseil.getState().is(State.SHUTDOWN));
+  }
+
+  /**
+   * Short runs complete as soon as the last task drains
+   */
+  @Test(timeout = 5000)
+  public void exact() throws Exception {
+    final int tasks = 8;
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(4).maxThreads(4).build();
+    long start = System.nanoTime();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.getAndIncrement() >= tasks) return null;
+      return () -> Sleep.fixed(50, TimeUnit.MILLISECONDS);
+    }).get(2, TimeUnit.SECONDS);
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertEquals(tasks, monitor.getSuccess().intValue());
+    assertTrue("elapsed " + elapsed, elapsed < 1000);
+    assertEquals(0, abseil.getInflight());
+  }
+
+  /**
+   * The max runtime wakes the processor blocked on the supplier to drain the tasks, no thread is started to shut down
+   */
+  @Test(timeout = 5000)
+  public void expired() throws Exception {
+    final AtomicBoolean finished = new AtomicBoolean();
+    final AtomicBoolean shutdownThread = new AtomicBoolean();
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(1).maxThreads(1).maxRuntime(50, TimeUnit.MILLISECONDS).build();
+    long start = System.nanoTime();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.getAndIncrement() > 0) {
+        Sleep.fixed(10, TimeUnit.SECONDS);
+        return null;
+      }
+      return () -> {
+        finished.set(Sleep.fixed(300, TimeUnit.MILLISECONDS));
+        shutdownThread.set(Thread.getAllStackTraces().keySet().stream()
+            .anyMatch((thread) -> thread.getName().equals("Abseil - timeout")));
+      };
+    }).get(2, TimeUnit.SECONDS);
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("elapsed " + elapsed, elapsed < 1500);
+    assertEquals(1, monitor.getSuccess().intValue());
+    assertTrue(finished.get());
+    assertFalse(shutdownThread.get());
+    assertTrue(abseil.getState().is(State.SHUTDOWN));
+  }
+
+  /**
+   * Tasks still running at the drain timeout are interrupted
+   */
+  @Test(timeout = 5000)
+  public void interrupted() throws Exception {
+    final AtomicBoolean finished = new AtomicBoolean(true);
+    final CountDownLatch ended = new CountDownLatch(1);
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().maxRuntime(100, TimeUnit.MILLISECONDS).drainTimeout(100, TimeUnit.MILLISECONDS)
+        .build();
+    long start = System.nanoTime();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.getAndIncrement() > 0) return null;
+      return () -> {
+        finished.set(Sleep.fixed(10, TimeUnit.SECONDS));
+
+        // cleans up once interrupted
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(30);
+        while (System.nanoTime() < until) {
+          Thread.onSpinWait();
+        }
+        ended.countDown();
+      };
+    }).get(2, TimeUnit.SECONDS);
+
+    // the interrupted task recorded its outcome before the monitor completed
+    assertEquals(1, monitor.getCompleted().longValue());
+    assertEquals(0, monitor.getActive().longValue());
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("elapsed " + elapsed, elapsed < 1000);
+    assertTrue(abseil.getState().is(State.SHUTDOWN));
+    assertTrue(ended.await(1, TimeUnit.SECONDS));
+    assertFalse(finished.get());
+  }
+}
@@ -0,0 +1,112 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.storm.abseil.event.TaskEvent;
+import org.storm.abseil.utils.Sleep;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests the abseil flight recorder events are recorded only when enabled
+ */
+public class AbseilFlightRecorderTest extends AbseilTest {
+  private static Abseil abseil(String name, boolean recorded) {
+    AbseilBuilder builder = Abseil.builder().name(name).minThreads(1).maxThreads(1)
+        .workQueue(new ArrayBlockingQueue<>(1));
+    return recorded ? builder.flightRecorder().build() : builder.build();
+  }
+
+  private static List<RecordedEvent> events(List<RecordedEvent> events, String type, String abseil) {
+    return events.stream().filter((e) -> e.getEventType().getName().equals(type))
+        .filter((e) -> abseil.equals(e.getString("abseil"))).collect(Collectors.toList());
+  }
+
+  private static void process(Abseil abseil, int tasks) throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    abseil.process(() -> {
+      int i = supplied.getAndIncrement();
+      if (i >= tasks) return null;
+      if (i == 0) return () -> {
+        throw new IllegalStateException("expected");
+      };
+      return () -> Sleep.fixed(5, TimeUnit.MILLISECONDS);
+    }).get(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * No task event is even allocated unless a recording enables them
+   */
+  @Test(timeout = 20000)
+  public void disabled() throws Exception {
+    assertNull(TaskEvent.start());
+
+    try (Recording recording = new Recording()) {
+      recording.enable("org.storm.abseil.Task").withoutThreshold();
+      recording.start();
+      assertNotNull(TaskEvent.start());
+      recording.stop();
+    }
+    assertNull(TaskEvent.start());
+  }
+
+  @Test(timeout = 20000)
+  public void recorded() throws Exception {
+    final int tasks = 20;
+
+    List<RecordedEvent> events;
+    Path file = Files.createTempFile("abseil", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("org.storm.abseil.Task").withoutThreshold();
+      recording.enable("org.storm.abseil.State").withoutThreshold();
+      recording.enable("org.storm.abseil.Rejection").withoutThreshold();
+      recording.start();
+
+      process(abseil("recorded", true), tasks);
+      process(abseil("unrecorded", false), tasks);
+
+      recording.stop();
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    List<RecordedEvent> runs = events(events, "org.storm.abseil.Task", "recorded");
+    assertEquals(tasks, runs.size());
+    assertEquals(1, runs.stream().filter((e) -> !e.getBoolean("succeeded")).count());
+    for (RecordedEvent run : runs) {
+      assertTrue(run.getLong("queueTime") >= 0);
+      if (!run.getBoolean("succeeded")) {
+        assertEquals(IllegalStateException.class.getName(), run.getClass("error").getName());
+      }
+    }
+
+    List<String> states = events(events, "org.storm.abseil.State", "recorded").stream()
+        .map((e) -> e.getString("to")).collect(Collectors.toList());
+    assertEquals(List.of("STARTING", "RUNNING", "SHUTTING_DOWN", "SHUTDOWN"), states);
+
+    // one thread and one queue slot, the dispatcher runs the overflow itself
+    List<RecordedEvent> rejections = events(events, "org.storm.abseil.Rejection", "recorded");
+    assertTrue(rejections.size() > 0);
+    assertEquals("CallerRunsPolicy", rejections.get(0).getString("policy"));
+
+    assertEquals(0, events(events, "org.storm.abseil.Task", "unrecorded").size());
+    assertEquals(0, events(events, "org.storm.abseil.State", "unrecorded").size());
+    assertEquals(0, events(events, "org.storm.abseil.Rejection", "unrecorded").size());
+  }
+}
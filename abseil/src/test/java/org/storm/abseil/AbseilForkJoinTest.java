@@ -0,0 +1,74 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.storm.abseil.Abseil.State;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests that fork join Abseils split, steal and monitor the tasks of a spliterator
+ */
+public class AbseilForkJoinTest extends AbseilTest {
+  static final int TASKS = 100000;
+
+  @Test(timeout = 10000)
+  public void finish() throws Exception {
+    final AtomicInteger ran = new AtomicInteger();
+    final Set<String> workers = ConcurrentHashMap.newKeySet();
+
+    List<Runnable> tasks = new ArrayList<>(TASKS);
+    for (int i = 0; i < TASKS; i++) {
+      final int task = i;
+      tasks.add(() -> {
+        workers.add(Thread.currentThread().getName());
+        if (task % 1000 == 0) throw new IllegalStateException("task " + task);
+        ran.incrementAndGet();
+      });
+    }
+
+    Abseil abseil = Abseil.builder().forkJoin().maxThreads(4).build();
+    Monitor monitor = abseil.process(tasks.spliterator()).get(5, TimeUnit.SECONDS);
+
+    assertEquals(TASKS - (TASKS / 1000), ran.get());
+    assertEquals(TASKS, monitor.getTotal().longValue());
+    assertEquals(TASKS - (TASKS / 1000), monitor.getSuccess().longValue());
+    assertEquals(TASKS / 1000, monitor.getFail().longValue());
+    assertTrue(monitor.getActive() == 0);
+    for (String worker : workers) {
+      assertTrue(worker, worker.startsWith("Abseil - fork join"));
+    }
+    assertState(abseil, State.SHUTDOWN);
+  }
+
+  /**
+   * Workers stop splitting and running tasks once the max runtime is reached
+   */
+  @Test(timeout = 10000)
+  public void timeout() throws Exception {
+    List<Runnable> tasks = new ArrayList<>(TASKS);
+    for (int i = 0; i < TASKS; i++) {
+      tasks.add(() -> Sleep.fixed(1, TimeUnit.MILLISECONDS));
+    }
+
+    Abseil abseil = Abseil.builder().forkJoin().maxThreads(4).maxRuntime(250, TimeUnit.MILLISECONDS).build();
+    Monitor monitor = abseil.process(tasks.spliterator()).get(5, TimeUnit.SECONDS);
+
+    assertTrue(monitor.getTotal() < TASKS);
+    assertTrue(monitor.getActive() == 0);
+    assertState(abseil, State.SHUTDOWN);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void requiresForkJoin() {
+    Abseil.builder().build().process(new ArrayList<Runnable>().spliterator());
+  }
+}
@@ -0,0 +1,144 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.storm.abseil.utils.Sleep;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the monitors of running abseils are registered with JMX and served to Prometheus
+ */
+public class AbseilMetricsTest extends AbseilTest {
+  private static String scrape(HttpServer server) throws Exception {
+    URL url = new URL("http://localhost:" + server.getAddress().getPort() + AbseilMetrics.PATH);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      assertEquals(200, connection.getResponseCode());
+      assertTrue(connection.getContentType().startsWith("text/plain"));
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (InputStream in = connection.getInputStream()) {
+        in.transferTo(body);
+      }
+      return body.toString(StandardCharsets.UTF_8.name());
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void escape() {
+    assertEquals("a\\\"b\\\\c\\nd", AbseilMetrics.escape("a\"b\\c\nd"));
+  }
+
+  /**
+   * An adaptive abseil exports its concurrency limit and the limit's decisions while running
+   */
+  @Test(timeout = 10000)
+  public void limiter() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().name("limiter-test").adaptiveConcurrency(2, 8).build();
+    Future<Monitor> future = abseil.process(() -> (supplied.getAndIncrement() > 0) ? null : () -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = AbseilMetrics.objectName(abseil, "Limiter");
+    try {
+      while (!server.isRegistered(name)) {
+        Sleep.fixed(5, TimeUnit.MILLISECONDS);
+      }
+      assertEquals(2, server.getAttribute(name, "Limit"));
+      assertEquals(0L, server.getAttribute(name, "Increases"));
+      assertEquals(0L, server.getAttribute(name, "Decreases"));
+
+      String metrics = AbseilMetrics.format();
+      assertTrue(metrics, metrics.contains("# TYPE abseil_concurrency_limit gauge"));
+      assertTrue(metrics, metrics.contains("abseil_concurrency_limit{abseil=\"limiter-test\"} 2\n"));
+      assertTrue(metrics, metrics.contains("# TYPE abseil_concurrency_limit_increases_total counter"));
+      assertTrue(metrics, metrics.contains("abseil_concurrency_limit_increases_total{abseil=\"limiter-test\"} 0\n"));
+      assertTrue(metrics, metrics.contains("abseil_concurrency_limit_decreases_total{abseil=\"limiter-test\"} 0\n"));
+    } finally {
+      release.countDown();
+    }
+
+    future.get(5, TimeUnit.SECONDS);
+    assertFalse(server.isRegistered(name));
+    assertFalse(AbseilMetrics.format().contains("limiter-test"));
+  }
+
+  @Test(timeout = 10000)
+  public void registered() throws Exception {
+    final int tasks = 20;
+    final AtomicInteger supplied = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    Abseil abseil = Abseil.builder().name("metrics-test").minThreads(2).maxThreads(2).build();
+    Future<Monitor> future = abseil.process(() -> {
+      int i = supplied.getAndIncrement();
+      if (i >= tasks) return null;
+      if (i == 0) return () -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+      return () -> Sleep.fixed(1, TimeUnit.MILLISECONDS);
+    });
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = AbseilMetrics.objectName(abseil);
+    HttpServer http = AbseilMetrics.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    try {
+      // the blocked task keeps the abseil running while the other tasks complete
+      while ((Long) server.getAttribute(name, "Completed") < tasks - 1) {
+        Sleep.fixed(5, TimeUnit.MILLISECONDS);
+      }
+      assertEquals(1L, server.getAttribute(name, "Active"));
+      assertEquals(tasks, ((Long) server.getAttribute(name, "Total")).intValue());
+
+      String metrics = scrape(http);
+      assertTrue(metrics, metrics.contains("# TYPE abseil_tasks_started_total counter"));
+      assertTrue(metrics, metrics.contains("abseil_tasks_started_total{abseil=\"metrics-test\"} " + tasks + "\n"));
+      assertTrue(metrics, metrics.contains("abseil_tasks_active{abseil=\"metrics-test\"} 1\n"));
+      assertTrue(metrics, metrics.contains("abseil_tasks_failed_total{abseil=\"metrics-test\"} 0\n"));
+      assertTrue(metrics, metrics.contains("abseil_task_duration_seconds{abseil=\"metrics-test\",quantile=\"0.99\"} "));
+      assertTrue(metrics,
+          metrics.contains("abseil_task_duration_seconds_count{abseil=\"metrics-test\"} " + (tasks - 1)));
+      assertFalse(metrics, metrics.contains("abseil_concurrency_limit{abseil=\"metrics-test\"}"));
+    } finally {
+      release.countDown();
+      http.stop(0);
+    }
+
+    assertEquals(tasks, future.get(5, TimeUnit.SECONDS).getSuccess().intValue());
+    assertFalse(server.isRegistered(name));
+    assertFalse(AbseilMetrics.format().contains("metrics-test"));
+  }
+}
@@ -0,0 +1,153 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.storm.abseil.AbseilPipeline.Stage;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests items flow through the stages of a pipeline, a slow stage backs up the stages before it and the items a stage
+ * never processed are counted
+ */
+public class AbseilPipelineTest extends AbseilTest {
+  @Test(timeout = 10000)
+  public void backpressure() throws Exception {
+    final int items = 300, capacity = 8;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicInteger persisted = new AtomicInteger();
+    final AtomicInteger backlog = new AtomicInteger();
+
+    AbseilPipeline pipeline = AbseilPipeline.from(() -> {
+      int i = supplied.get();
+      if (i >= items) return null;
+      supplied.incrementAndGet();
+      return i;
+    }).stage("fast", 4, capacity, (i) -> i).sink("slow", 1, capacity, (i) -> {
+      backlog.accumulateAndGet(supplied.get() - persisted.get(), Math::max);
+      Sleep.fixed(1, TimeUnit.MILLISECONDS);
+      persisted.incrementAndGet();
+    }).build();
+
+    Map<String, Monitor> monitors = pipeline.start().get(8, TimeUnit.SECONDS);
+    assertEquals(items, persisted.get());
+    assertEquals(items, monitors.get("slow").getSuccess().intValue());
+
+    // the queues, workers and their executor queues hold all that isn't persisted
+    int bound = 2 * capacity + 2 * (4 + 4 + 1) + 2 * (1 + 1 + 1);
+    assertTrue("backlog " + backlog, backlog.get() <= bound);
+  }
+
+  /**
+   * Items waiting for a stage that is shutdown are dropped, every item is either processed or counted as dropped
+   */
+  @Test(timeout = 10000)
+  public void dropped() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    final AbseilPipeline pipeline = AbseilPipeline.from(supplied::incrementAndGet).stage("pass", 1, 16, (i) -> i)
+        .sink("slow", 1, 16, (i) -> Sleep.fixed(5, TimeUnit.MILLISECONDS)).build();
+    CompletableFuture<Map<String, Monitor>> future = pipeline.start();
+
+    Stage slow = pipeline.getStage("slow");
+    while (slow.getQueued() < slow.getCapacity()) {
+      Thread.sleep(1);
+    }
+    new Thread(pipeline::shutdown).start();
+
+    Map<String, Monitor> monitors = future.get(8, TimeUnit.SECONDS);
+    assertTrue(slow.getDropped() > 0);
+    assertEquals(0, slow.getQueued());
+    assertEquals(monitors.get("pass").getCompleted().longValue(), monitors.get("slow").getCompleted() + slow
+        .getDropped());
+    assertEquals(0, pipeline.getStage("pass").getDropped());
+    assertTrue(pipeline.toString(), pipeline.toString().contains("dropped=" + slow.getDropped()));
+  }
+
+  @Test
+  public void duplicateStage() {
+    try {
+      AbseilPipeline.from(() -> null).stage("parse", 1, 1, (i) -> i).sink("parse", 1, 1, (i) -> {});
+      fail("expected stage names to be unique");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * The max runtime cuts off the source, then the later stages; the items waiting for them are dropped
+   */
+  @Test(timeout = 10000)
+  public void maxRuntime() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    AbseilPipeline pipeline = AbseilPipeline.from(supplied::incrementAndGet).stage("pass", 2, 16, (i) -> i)
+        .sink("slow", 1, 16, (i) -> Sleep.fixed(2, TimeUnit.MILLISECONDS)).maxRuntime(300, TimeUnit.MILLISECONDS)
+        .build();
+
+    Map<String, Monitor> monitors = pipeline.start().get(8, TimeUnit.SECONDS);
+    Monitor pass = monitors.get("pass"), slow = monitors.get("slow");
+    Stage stage = pipeline.getStage("slow");
+    assertTrue(slow.getSuccess() > 0);
+    assertEquals(0, stage.getQueued());
+    assertEquals(pass.getCompleted().longValue(), slow.getCompleted() + stage.getDropped());
+  }
+
+  /**
+   * A later stage with a backlog is shutdown at the max runtime too rather than working off its backlog
+   */
+  @Test(timeout = 10000)
+  public void maxRuntimeBacklog() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    AbseilPipeline pipeline = AbseilPipeline.from(supplied::incrementAndGet).stage("pass", 2, 16, (i) -> i)
+        .sink("slow", 1, 1000, (i) -> Sleep.fixed(5, TimeUnit.MILLISECONDS)).maxRuntime(200, TimeUnit.MILLISECONDS)
+        .build();
+
+    long start = System.nanoTime();
+    Map<String, Monitor> monitors = pipeline.start().get(8, TimeUnit.SECONDS);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("elapsed " + elapsed, elapsed < 2000);
+
+    Stage slow = pipeline.getStage("slow");
+    assertTrue(slow.getDropped() > 0);
+    assertEquals(0, slow.getQueued());
+    assertEquals(monitors.get("pass").getCompleted().longValue(), monitors.get("slow").getCompleted() + slow
+        .getDropped());
+  }
+
+  @Test(timeout = 10000)
+  public void stages() throws Exception {
+    final int items = 1000;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicLong sum = new AtomicLong();
+
+    AbseilPipeline pipeline = AbseilPipeline.from(() -> {
+      int i = supplied.getAndIncrement();
+      return (i < items) ? Integer.toString(i) : null;
+    }).stage("parse", 2, 64, Integer::parseInt).stage("even", 2, 64, (i) -> (i % 2 == 0) ? (long) i : null)
+        .sink("persist", 2, 64, sum::addAndGet).maxRuntime(8, TimeUnit.SECONDS).build();
+
+    CompletableFuture<Map<String, Monitor>> future = pipeline.start();
+    Map<String, Monitor> monitors = future.get(8, TimeUnit.SECONDS);
+
+    assertEquals(3, monitors.size());
+    assertEquals(items, monitors.get("parse").getSuccess().intValue());
+    assertEquals(items, monitors.get("even").getSuccess().intValue());
+    assertEquals(items / 2, monitors.get("persist").getSuccess().intValue());
+    assertEquals(249500L, sum.get());
+
+    Stage persist = pipeline.getStage("persist");
+    assertNotNull(persist);
+    assertEquals(0, persist.getQueued());
+    assertEquals(64, persist.getCapacity());
+    assertTrue(persist.getThroughput() > 0);
+    assertTrue(pipeline.toString(), pipeline.toString().startsWith("[parse=[threads=2, queued=0/64"));
+  }
+}
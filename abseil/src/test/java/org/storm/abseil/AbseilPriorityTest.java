@@ -0,0 +1,90 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.storm.abseil.runnable.MonitorRunnable;
+import org.storm.abseil.runnable.PrioritizedRunnable;
+
+/**
+ * Tests that prioritized Abseils run urgent tasks first without starving the rest
+ */
+public class AbseilPriorityTest extends AbseilTest {
+  static final int BULK = 500, URGENT = 50;
+
+  @Test(timeout = 10000)
+  public void urgentFirst() throws Exception {
+    final CountDownLatch queued = new CountDownLatch(1);
+    final List<Integer> ran = new ArrayList<>();
+
+    List<Runnable> tasks = new ArrayList<>();
+    tasks.add(new PrioritizedRunnable(() -> {
+      try {
+        queued.await();
+      } catch (InterruptedException e) {}
+    }, 0));
+    for (int i = 0; i < BULK; i++) {
+      tasks.add(new PrioritizedRunnable(() -> ran.add(9), 9));
+    }
+    for (int i = 0; i < URGENT; i++) {
+      tasks.add(new PrioritizedRunnable(() -> ran.add(0), 0));
+    }
+
+    final Iterator<Runnable> supplier = tasks.iterator();
+    Abseil abseil = Abseil.builder().minThreads(1).maxThreads(1).prioritized(1000).build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplier.hasNext()) return supplier.next();
+      queued.countDown();
+      return null;
+    }).get(5, TimeUnit.SECONDS);
+
+    assertEquals(BULK + URGENT, ran.size());
+    for (int i = 0; i < URGENT; i++) {
+      assertEquals(0, ran.get(i).intValue());
+    }
+    assertEquals(Arrays.asList(0, 9), new ArrayList<>(monitor.getPriorities()));
+    assertEquals(URGENT + 1, monitor.getPriorityCount(0).longValue());
+    assertEquals(BULK, monitor.getPriorityCount(9).longValue());
+    assertTrue(monitor.getPriorityPercentile(0, 50.0) < monitor.getPriorityPercentile(9, 50.0));
+  }
+
+  /**
+   * A waiting task passes newer urgent tasks once it has waited out its priority
+   */
+  @Test
+  public void aging() throws Exception {
+    PriorityTaskQueue queue = new PriorityTaskQueue(10);
+    Runnable bulk = new MonitorRunnable(new PrioritizedRunnable(() -> {}, 1), new Monitor());
+    queue.offer(bulk);
+
+    Runnable urgent = new PrioritizedRunnable(() -> {}, 0);
+    queue.offer(urgent);
+    assertSame(urgent, queue.poll());
+
+    queue.offer(urgent);
+    Thread.sleep(PrioritizedRunnable.AGING_MILLIS + 10);
+    Runnable newer = new PrioritizedRunnable(() -> {}, 0);
+    queue.offer(newer);
+    assertSame(urgent, queue.poll());
+    assertSame(bulk, queue.poll());
+    assertSame(newer, queue.poll());
+  }
+
+  @Test
+  public void bounded() {
+    PriorityTaskQueue queue = new PriorityTaskQueue(2);
+    assertTrue(queue.offer(() -> {}));
+    assertTrue(queue.offer(() -> {}));
+    assertEquals(false, queue.offer(() -> {}));
+    assertEquals(0, queue.remainingCapacity());
+  }
+}
@@ -0,0 +1,198 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.storm.abseil.Abseil.State;
+
+/**
+ * Tests that callable results are streamed, bounded and push back on the tasks
+ */
+public class AbseilResultsTest extends AbseilTest {
+  static final int TASKS = 10000;
+
+  /**
+   * @return callables of 1 to tasks, every 100th fails
+   */
+  static Supplier<Callable<Integer>> callables(int tasks) {
+    final AtomicInteger supplied = new AtomicInteger();
+    return () -> {
+      final int task = supplied.incrementAndGet();
+      if (task > tasks) return null;
+      return () -> {
+        if (task % 100 == 0) throw new IllegalStateException("task " + task);
+        return task;
+      };
+    };
+  }
+
+  @Test(timeout = 10000)
+  public void iterator() throws Exception {
+    Abseil abseil = Abseil.builder().minThreads(3).maxThreads(3).build();
+    AbseilResults<Integer> results = abseil.processCallables(callables(TASKS), 16);
+
+    long count = 0;
+    while (results.hasNext()) {
+      assertTrue(results.next() % 100 != 0);
+      count++;
+    }
+
+    Monitor monitor = results.getMonitor().get(5, TimeUnit.SECONDS);
+    assertEquals(TASKS - (TASKS / 100), count);
+    assertEquals(TASKS, monitor.getTotal().longValue());
+    assertEquals(TASKS / 100, monitor.getFail().longValue());
+    assertState(abseil, State.SHUTDOWN);
+  }
+
+  /**
+   * Tasks stop being processed while the results aren't consumed
+   */
+  @Test(timeout = 10000)
+  public void backpressure() throws Exception {
+    final AtomicInteger called = new AtomicInteger();
+    final Supplier<Callable<Integer>> callables = callables(TASKS);
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).build();
+    AbseilResults<Integer> results = abseil.processCallables(() -> {
+      Callable<Integer> callable = callables.get();
+      return (callable == null) ? null : () -> {
+        called.incrementAndGet();
+        return callable.call();
+      };
+    }, 8);
+    Thread.sleep(250);
+
+    // buffered plus one blocked on the full buffer by each worker and the caller runs dispatcher
+    assertTrue("called " + called.get(), called.get() <= 8 + 2 + 1);
+
+    long count = 0;
+    while (results.hasNext()) {
+      results.next();
+      count++;
+    }
+    assertEquals(TASKS - (TASKS / 100), count);
+  }
+
+  @Test(timeout = 10000)
+  public void publisher() throws Exception {
+    final AtomicLong count = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    Abseil abseil = Abseil.builder().minThreads(3).maxThreads(3).build();
+    AbseilResults<Integer> results = abseil.processCallables(callables(TASKS), 16);
+    results.subscribe(new Flow.Subscriber<Integer>() {
+      private Flow.Subscription _subscription;
+
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        _subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(Integer item) {
+        count.incrementAndGet();
+        _subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {}
+
+      @Override
+      public void onComplete() {
+        done.countDown();
+      }
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(TASKS - (TASKS / 100), count.get());
+    assertEquals(TASKS, results.getMonitor().get().getTotal().longValue());
+  }
+
+  /**
+   * A subscriber that throws cancels its subscription, its error is kept and the results it didn't take are dropped
+   * rather than blocking the workers
+   */
+  @Test(timeout = 10000)
+  public void failingSubscriber() throws Exception {
+    final AtomicInteger delivered = new AtomicInteger();
+    final IllegalStateException error = new IllegalStateException("subscriber failed");
+
+    Abseil abseil = Abseil.builder().minThreads(3).maxThreads(3).build();
+    AbseilResults<Integer> results = abseil.processCallables(callables(TASKS), 16);
+    results.subscribe(new Flow.Subscriber<Integer>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(Integer item) {
+        if (delivered.incrementAndGet() == 10) throw error;
+      }
+
+      @Override
+      public void onError(Throwable throwable) {}
+
+      @Override
+      public void onComplete() {}
+    });
+
+    Monitor monitor = results.getMonitor().get(5, TimeUnit.SECONDS);
+    assertSame(error, results.getError());
+    assertEquals(10, delivered.get());
+    assertEquals(TASKS, monitor.getTotal().longValue());
+    assertEquals(monitor.getSuccess().longValue() - delivered.get(), monitor.getDropped().longValue());
+    assertState(abseil, State.SHUTDOWN);
+  }
+
+  /**
+   * Calls can't be retried, broken or routed to lanes; the abseil refuses them rather than ignore the options
+   */
+  @Test
+  public void undecorated() throws Exception {
+    AbseilBuilder[] builders = { Abseil.builder().retry(3, 1, 10, TimeUnit.MILLISECONDS),
+        Abseil.builder().circuitBreaker(0.5, 10, 1, TimeUnit.SECONDS),
+        Abseil.builder().lanes((task) -> "lane").lane("lane", 1, 1) };
+
+    for (AbseilBuilder builder : builders) {
+      Abseil abseil = builder.build();
+      try {
+        abseil.processCallables(callables(10), 16);
+        fail("expected the callables to be refused");
+      } catch (IllegalStateException expected) {
+        assertState(abseil, State.INIT);
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void singleConsumer() throws Exception {
+    AbseilResults<Integer> results = Abseil.builder().build().processCallables(callables(10), 16);
+    results.subscribe(new Flow.Subscriber<Integer>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {}
+
+      @Override
+      public void onNext(Integer item) {}
+
+      @Override
+      public void onError(Throwable throwable) {}
+
+      @Override
+      public void onComplete() {}
+    });
+    results.hasNext();
+  }
+}
@@ -0,0 +1,118 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests that failed tasks are retried with backoff within the retry budget
+ */
+public class AbseilRetryTest extends AbseilTest {
+  @Test(timeout = 10000)
+  public void transientFailures() throws Exception {
+    final int tasks = 5;
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).retry(3, 10, 100, TimeUnit.MILLISECONDS).build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.incrementAndGet() > tasks) return null;
+
+      final AtomicInteger attempts = new AtomicInteger();
+      return () -> {
+        if (attempts.incrementAndGet() == 1) throw new IllegalStateException("transient");
+      };
+    }).get(5, TimeUnit.SECONDS);
+
+    assertEquals(tasks * 2, monitor.getTotal().longValue());
+    assertEquals(tasks, monitor.getSuccess().longValue());
+    assertEquals(tasks, monitor.getFail().longValue());
+    assertEquals(tasks, monitor.getRetries().longValue());
+    assertEquals(0, monitor.getGiveUps().longValue());
+  }
+
+  /**
+   * A dead dependency gets few retries, at most 10% of attempts plus a few
+   */
+  @Test(timeout = 10000)
+  public void budget() throws Exception {
+    final int tasks = 1000;
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(4).maxThreads(4).retry(5, 1, 10, TimeUnit.MILLISECONDS).build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.incrementAndGet() > tasks) return null;
+      return () -> {
+        throw new IllegalStateException("dead");
+      };
+    }).get(5, TimeUnit.SECONDS);
+
+    long retries = monitor.getRetries();
+    assertTrue("retries " + retries, retries > 0 && retries <= (0.1 * monitor.getTotal()) + 10);
+    assertEquals(tasks + retries, monitor.getTotal().longValue());
+    assertEquals(tasks, monitor.getGiveUps().longValue());
+  }
+
+  /**
+   * Abseils built by the same builder have budgets of their own; one exhausting its budget doesn't stop the other
+   * retrying
+   */
+  @Test(timeout = 10000)
+  public void budgetPerAbseil() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    AbseilBuilder builder = Abseil.builder().minThreads(4).maxThreads(4).retry(5, 1, 10, TimeUnit.MILLISECONDS);
+    assertNotSame(builder.getRetryPolicy(), builder.getRetryPolicy());
+
+    Monitor dead = builder.build().process(() -> (supplied.incrementAndGet() > 1000) ? null : () -> {
+      throw new IllegalStateException("dead");
+    }).get(5, TimeUnit.SECONDS);
+    assertEquals(1000, dead.getGiveUps().longValue());
+
+    final int tasks = 5;
+    supplied.set(0);
+    Monitor monitor = builder.build().process(() -> {
+      if (supplied.incrementAndGet() > tasks) return null;
+
+      final AtomicInteger attempts = new AtomicInteger();
+      return () -> {
+        if (attempts.incrementAndGet() == 1) throw new IllegalStateException("transient");
+      };
+    }).get(5, TimeUnit.SECONDS);
+    assertEquals(tasks, monitor.getRetries().longValue());
+    assertEquals(0, monitor.getGiveUps().longValue());
+  }
+
+  /**
+   * Retries that come due after the abseil shutdown are given up rather than left pending
+   */
+  @Test(timeout = 10000)
+  public void shutdownDropsRetries() throws Exception {
+    final int tasks = 5;
+    final AtomicInteger supplied = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).retry(2, 200, 200, TimeUnit.MILLISECONDS).build();
+    Future<Monitor> future = abseil.process(() -> (supplied.incrementAndGet() > tasks) ? null : () -> {
+      failed.incrementAndGet();
+      throw new IllegalStateException("dead");
+    });
+
+    // every task failed once, its retry is pending
+    while (failed.get() < tasks) {
+      Thread.sleep(1);
+    }
+    new Thread(abseil::shutdown).start();
+
+    Monitor monitor = future.get(5, TimeUnit.SECONDS);
+    while (monitor.getGiveUps() < tasks) {
+      Thread.sleep(10);
+    }
+    assertEquals(tasks, monitor.getGiveUps().longValue());
+    assertEquals(tasks, monitor.getRetries().longValue());
+  }
+}
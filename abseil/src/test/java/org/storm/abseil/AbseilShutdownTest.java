@@ -27,7 +27,8 @@ public class AbseilShutdownTest extends AbseilTest {
   public static Collection<Abseil> abseils() {
     // setup abseils that run "forever"
     return Arrays.asList(new Abseil[] { Abseil.fixedTaskAbseil(3, Integer.MAX_VALUE, TimeUnit.MINUTES),
-        Abseil.singleTaskAbseil(Integer.MAX_VALUE, TimeUnit.MINUTES) });
+        Abseil.singleTaskAbseil(Integer.MAX_VALUE, TimeUnit.MINUTES),
+        Abseil.virtualTaskAbseil(3, Integer.MAX_VALUE, TimeUnit.MINUTES) });
   }
 
   /**
@@ -0,0 +1,65 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.storm.abseil.Abseil.State;
+
+/**
+ * Tests an abseil processes only once and a shutdown before processing releases nothing it never took
+ */
+public class AbseilStateTest extends AbseilTest {
+  /**
+   * A second process is refused rather than running the tasks or registering the abseil again
+   */
+  @Test(timeout = 5000)
+  public void processOnce() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger();
+    Abseil abseil = Abseil.builder().build();
+    CompletableFuture<Monitor> future = abseil.process(() -> (supplied.getAndIncrement() < 10) ? () -> {} : null);
+
+    try {
+      abseil.process(() -> {});
+      fail("expected an abseil to process only once");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    assertEquals(10, future.get(2, TimeUnit.SECONDS).getSuccess().intValue());
+    try {
+      abseil.process(() -> {});
+      fail("expected an abseil to process only once");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertFalse(Abseil.live().contains(abseil));
+  }
+
+  /**
+   * Shutting down an abseil that never processed completes it without interrupting the caller, and it can't process
+   * afterwards
+   */
+  @Test(timeout = 5000)
+  public void shutdownBeforeProcess() throws Exception {
+    Abseil abseil = Abseil.builder().maxRuntime(1, TimeUnit.SECONDS).build();
+    assertTrue(abseil.shutdown());
+    assertFalse(Thread.interrupted());
+    assertTrue(abseil.getState().is(State.SHUTDOWN));
+
+    try {
+      abseil.process(() -> {});
+      fail("expected a shutdown abseil not to process");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertFalse(Abseil.live().contains(abseil));
+    assertFalse(AbseilMetrics.format().contains("\"" + abseil.getName() + "\""));
+  }
+}
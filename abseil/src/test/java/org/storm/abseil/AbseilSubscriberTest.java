@@ -0,0 +1,153 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.storm.abseil.Abseil.State;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests that Abseils consume publishers requesting tasks only for free workers
+ */
+public class AbseilSubscriberTest extends AbseilTest {
+  static final int TASKS = 1000;
+
+  /**
+   * Publishes tasks as they are requested, tracking the tasks delivered but not completed
+   */
+  static class TaskPublisher implements Flow.Publisher<Runnable> {
+    final AtomicInteger _completed = new AtomicInteger();
+    int                 _delivered;
+    final Throwable     _error;
+    int                 _maxOutstanding;
+
+    TaskPublisher(Throwable error) {
+      _error = error;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Runnable> subscriber) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public synchronized void request(long n) {
+          for (long i = 0; i < n && _delivered < TASKS; i++) {
+            _delivered++;
+            _maxOutstanding = Math.max(_maxOutstanding, _delivered - _completed.get());
+            Runnable task = () -> {
+              Sleep.fixed(1, TimeUnit.MILLISECONDS);
+              _completed.incrementAndGet();
+            };
+            subscriber.onNext(task);
+          }
+          if (_delivered == TASKS) {
+            _delivered++;
+            if (_error == null) subscriber.onComplete();
+            else subscriber.onError(_error);
+          }
+        }
+
+        @Override
+        public void cancel() {}
+      });
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void demand() throws Exception {
+    TaskPublisher publisher = new TaskPublisher(null);
+    Abseil abseil = Abseil.builder().minThreads(3).maxThreads(3).build();
+    Monitor monitor = abseil.subscribe(publisher).get(5, TimeUnit.SECONDS);
+
+    assertEquals(TASKS, publisher._completed.get());
+    assertEquals(TASKS, monitor.getSuccess().longValue());
+    assertTrue("outstanding " + publisher._maxOutstanding, publisher._maxOutstanding <= 3);
+    assertState(abseil, State.SHUTDOWN);
+  }
+
+  @Test(timeout = 10000)
+  public void error() throws Exception {
+    IllegalStateException error = new IllegalStateException();
+    Abseil abseil = Abseil.builder().minThreads(3).maxThreads(3).build();
+    AbseilSubscriber subscriber = abseil.subscriber();
+    new TaskPublisher(error).subscribe(subscriber);
+
+    subscriber.getMonitor().get(5, TimeUnit.SECONDS);
+    assertSame(error, subscriber.getError());
+  }
+
+  /**
+   * The dependency is down for the first 300ms; the breaker stops taking tasks from the subscriber while down
+   */
+  @Test(timeout = 10000)
+  public void outage() throws Exception {
+    final int tasks = 500;
+    final AtomicLong recovery = new AtomicLong();
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).circuitBreaker(0.5, 20, 50, TimeUnit.MILLISECONDS)
+        .build();
+    AbseilSubscriber subscriber = abseil.subscriber();
+
+    try (SubmissionPublisher<Runnable> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(subscriber);
+      for (int i = 0; i < tasks; i++) {
+        publisher.submit(() -> {
+          recovery.compareAndSet(0, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300));
+          if (System.nanoTime() < recovery.get()) throw new IllegalStateException("down");
+          Sleep.fixed(1, TimeUnit.MILLISECONDS);
+        });
+      }
+    }
+
+    Monitor monitor = subscriber.getMonitor().get(8, TimeUnit.SECONDS);
+    long fails = monitor.getFail();
+    assertTrue("fails " + fails, fails > 0 && fails < 100);
+    assertEquals(tasks, monitor.getTotal().longValue());
+  }
+
+  /**
+   * Slots are freed as tasks complete, so tasks that are retried or wait in lanes can't be subscribed to
+   */
+  @Test
+  public void undecorated() throws Exception {
+    AbseilBuilder[] builders = { Abseil.builder().retry(3, 1, 10, TimeUnit.MILLISECONDS),
+        Abseil.builder().lanes((task) -> "lane").lane("lane", 1, 1) };
+
+    for (AbseilBuilder builder : builders) {
+      Abseil abseil = builder.build();
+      try {
+        abseil.subscriber();
+        fail("expected the subscriber to be refused");
+      } catch (IllegalStateException expected) {
+        assertState(abseil, State.INIT);
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void submissionPublisher() throws Exception {
+    final AtomicInteger ran = new AtomicInteger();
+    Abseil abseil = Abseil.virtualTaskAbseil(8, Integer.MAX_VALUE, TimeUnit.MILLISECONDS);
+    AbseilSubscriber subscriber = abseil.subscriber();
+
+    try (SubmissionPublisher<Runnable> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(subscriber);
+      for (int i = 0; i < TASKS; i++) {
+        publisher.submit(ran::incrementAndGet);
+      }
+    }
+
+    Monitor monitor = subscriber.getMonitor().get(5, TimeUnit.SECONDS);
+    assertEquals(TASKS, ran.get());
+    assertEquals(TASKS, monitor.getTotal().longValue());
+    assertNull(subscriber.getError());
+  }
+}
@@ -0,0 +1,105 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.storm.abseil.runnable.TimeBoxedRunnable;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests that tasks over their time budget are interrupted, counted and free their thread
+ */
+public class AbseilTaskTimeoutTest extends AbseilTest {
+  static final int HUNG = 10, TASKS = 200;
+
+  @Test(timeout = 10000)
+  public void hungTasks() throws Exception {
+    final AtomicInteger supplied = new AtomicInteger(), interrupted = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).taskTimeout(50, TimeUnit.MILLISECONDS).build();
+    long start = System.nanoTime();
+    Monitor monitor = abseil.process(() -> {
+      int task = supplied.incrementAndGet();
+      if (task > TASKS) return null;
+      if (task % (TASKS / HUNG) == 0) return () -> Sleep.fixed(10, TimeUnit.SECONDS);
+      return () -> {
+        if (Thread.currentThread().isInterrupted()) interrupted.incrementAndGet();
+      };
+    }).get(5, TimeUnit.SECONDS);
+
+    assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 3);
+    assertEquals(HUNG, monitor.getTimeouts().longValue());
+    assertEquals(HUNG, monitor.getFail().longValue());
+    assertEquals(TASKS - HUNG, monitor.getSuccess().longValue());
+    assertEquals(0, interrupted.get());
+  }
+
+  /**
+   * A retried task is time boxed again; the hung first attempt times out, the second succeeds
+   */
+  @Test(timeout = 10000)
+  public void retriedHungTasks() throws Exception {
+    final int tasks = 10;
+    final AtomicInteger supplied = new AtomicInteger();
+
+    Abseil abseil = Abseil.builder().minThreads(2).maxThreads(2).taskTimeout(50, TimeUnit.MILLISECONDS)
+        .retry(3, 1, 10, TimeUnit.MILLISECONDS).build();
+    Monitor monitor = abseil.process(() -> {
+      if (supplied.incrementAndGet() > tasks) return null;
+
+      final AtomicInteger attempts = new AtomicInteger();
+      return () -> {
+        if (attempts.incrementAndGet() == 1) Sleep.fixed(10, TimeUnit.SECONDS);
+      };
+    }).get(5, TimeUnit.SECONDS);
+
+    assertEquals(tasks, monitor.getTimeouts().longValue());
+    assertEquals(tasks, monitor.getRetries().longValue());
+    assertEquals(tasks, monitor.getFail().longValue());
+    assertEquals(tasks, monitor.getSuccess().longValue());
+    assertEquals(0, monitor.getGiveUps().longValue());
+  }
+
+  /**
+   * A time box run again gets a new budget
+   */
+  @Test(timeout = 5000)
+  public void runAgain() {
+    Monitor monitor = new Monitor();
+    final AtomicInteger runs = new AtomicInteger();
+    TimeBoxedRunnable boxed = new TimeBoxedRunnable(() -> {
+      if (runs.incrementAndGet() == 1) Sleep.fixed(5, TimeUnit.SECONDS);
+    }, 20, TimeUnit.MILLISECONDS, monitor);
+
+    try {
+      boxed.run();
+    } catch (CancellationException expected) {
+      // first run is over budget
+    }
+    boxed.run();
+    assertEquals(1, monitor.getTimeouts().longValue());
+  }
+
+  @Test(expected = CancellationException.class, timeout = 5000)
+  public void overBudget() {
+    Monitor monitor = new Monitor();
+    try {
+      new TimeBoxedRunnable(() -> Sleep.fixed(5, TimeUnit.SECONDS), 20, TimeUnit.MILLISECONDS, monitor).run();
+    } finally {
+      assertEquals(1, monitor.getTimeouts().longValue());
+      assertTrue(!Thread.currentThread().isInterrupted());
+    }
+  }
+
+  @Test
+  public void withinBudget() {
+    Monitor monitor = new Monitor();
+    new TimeBoxedRunnable(() -> {}, 1, TimeUnit.SECONDS, monitor).run();
+    assertEquals(0, monitor.getTimeouts().longValue());
+  }
+}
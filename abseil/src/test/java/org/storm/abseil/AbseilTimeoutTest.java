@@ -27,7 +27,8 @@ public class AbseilTimeoutTest extends AbseilTest {
     // setup abseils that timeout after 1 second
 
     return Arrays.asList(
-        new Abseil[] { Abseil.fixedTaskAbseil(2, 1, TimeUnit.SECONDS), Abseil.singleTaskAbseil(1, TimeUnit.SECONDS) });
+        new Abseil[] { Abseil.fixedTaskAbseil(2, 1, TimeUnit.SECONDS), Abseil.singleTaskAbseil(1, TimeUnit.SECONDS),
+            Abseil.virtualTaskAbseil(2, 1, TimeUnit.SECONDS) });
   }
 
   @Test
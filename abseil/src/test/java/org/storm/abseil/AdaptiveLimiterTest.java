@@ -0,0 +1,129 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the limit decisions of the {@link AdaptiveLimiter} against simulated task latencies and failures
+ */
+public class AdaptiveLimiterTest {
+  Monitor         _monitor = new Monitor();
+
+  AdaptiveLimiter _limiter = new AdaptiveLimiter(4, 100);
+
+  /**
+   * simulates a window of completed tasks with the given latency
+   */
+  void window(int tasks, long latency, TimeUnit unit, boolean fail) {
+    for (int i = 0; i < tasks; i++) {
+      _monitor.startTask();
+      if (fail) _monitor.fail(new IllegalStateException());
+      else _monitor.success();
+      _monitor.stopTask(System.nanoTime() - unit.toNanos(latency));
+    }
+    _limiter.update(_monitor);
+  }
+
+  /**
+   * takes every slot of the current limit, saturating the limiter
+   */
+  void saturate() {
+    while (_limiter.getInflight() < _limiter.getLimit()) {
+      _limiter.acquire();
+    }
+  }
+
+  /**
+   * A saturated pool runs the failing tasks on the caller, each frees its slot once
+   */
+  @Test(timeout = 5000)
+  public void callerRuns() throws Exception {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    CountDownLatch blocked = new CountDownLatch(1);
+    _limiter.execute(executor, () -> {
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      try {
+        _limiter.execute(executor, () -> {
+          throw new IllegalStateException("failed");
+        });
+      } catch (IllegalStateException expected) {
+        // ran on the caller
+      }
+      assertEquals(1, _limiter.getInflight());
+    }
+
+    blocked.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    assertEquals(0, _limiter.getInflight());
+  }
+
+  @Test
+  public void decreaseOnFailures() {
+    saturate();
+    window(100, 1, TimeUnit.MILLISECONDS, false);
+    int limit = _limiter.getLimit();
+    saturate();
+
+    window(100, 1, TimeUnit.MILLISECONDS, true);
+    assertTrue(_limiter.getLimit() < limit);
+    assertEquals(1, _limiter.getDecreases());
+  }
+
+  @Test
+  public void decreaseOnLatency() {
+    for (int i = 0; i < 10; i++) {
+      saturate();
+      window(100, 1, TimeUnit.MILLISECONDS, false);
+    }
+    int limit = _limiter.getLimit();
+
+    window(100, 5, TimeUnit.MILLISECONDS, false);
+    assertEquals((int) (limit * AdaptiveLimiter.DECREASE), _limiter.getLimit());
+  }
+
+  @Test
+  public void increaseWhenSaturated() {
+    saturate();
+    window(100, 1, TimeUnit.MILLISECONDS, false);
+    assertEquals(6, _limiter.getLimit());
+    assertEquals(1, _limiter.getIncreases());
+
+    // unsaturated windows hold the limit
+    while (_limiter.getInflight() > 0) {
+      _limiter.release();
+    }
+    window(100, 1, TimeUnit.MILLISECONDS, false);
+    window(100, 1, TimeUnit.MILLISECONDS, false);
+    assertEquals(6, _limiter.getLimit());
+  }
+
+  @Test
+  public void limits() {
+    for (int i = 0; i < 100; i++) {
+      saturate();
+      window(100, 1, TimeUnit.MILLISECONDS, false);
+    }
+    assertEquals(100, _limiter.getLimit());
+
+    for (int i = 0; i < 100; i++) {
+      window(100, 1, TimeUnit.SECONDS, true);
+    }
+    assertEquals(4, _limiter.getLimit());
+  }
+}
@@ -0,0 +1,63 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.storm.abseil.Failures.Failure;
+
+/**
+ * Tests the grouping and bounds of {@link Failures}
+ */
+public class FailuresTest {
+
+  @Test
+  public void bounded() {
+    Failures failures = new Failures();
+
+    // every failure from a different frame
+    for (int i = 0; i < Failures.MAX_GROUPS * 10; i++) {
+      IllegalStateException error = new IllegalStateException();
+      error.setStackTrace(new StackTraceElement[] { new StackTraceElement("Task", "run", "Task.java", i) });
+      failures.record(error);
+    }
+
+    assertEquals(Failures.MAX_GROUPS * 10, failures.getCount());
+    assertTrue(failures.getFailures().size() <= Failures.MAX_GROUPS + 1);
+
+    long count = 0;
+    for (Failure failure : failures.getFailures()) {
+      count += failure.getCount();
+      assertTrue(failure.getSamples().size() <= Failures.SAMPLES);
+    }
+    assertEquals(failures.getCount(), count);
+  }
+
+  @Test
+  public void grouped() {
+    Failures failures = new Failures();
+    for (int i = 0; i < 1000; i++) {
+      failures.record(new IllegalArgumentException("task " + i));
+    }
+
+    assertEquals(1000, failures.getCount());
+    assertEquals(1, failures.getFailures().size());
+
+    Failure failure = failures.getFailures().iterator().next();
+    assertEquals(IllegalArgumentException.class.getName(), failure.getType());
+    assertEquals(1000, failure.getCount());
+    assertEquals(Failures.SAMPLES, failure.getSamples().size());
+    assertTrue(failure.getFirst() <= failure.getLast());
+  }
+
+  @Test
+  public void merge() {
+    Failures one = new Failures(), two = new Failures();
+    one.record(new IllegalStateException());
+    two.record(new IllegalStateException());
+    two.record(new UnsupportedOperationException());
+
+    one.merge(two);
+    assertEquals(3, one.getCount());
+  }
+}
@@ -0,0 +1,106 @@
+package org.storm.abseil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests the {@link VirtualTaskExecutor} runs tasks on virtual threads and frees the permits of tasks that never ran
+ */
+public class VirtualTaskExecutorTest {
+  /**
+   * Tasks run on virtual threads when the JVM has them
+   */
+  @Test(timeout = 5000)
+  public void virtual() throws Exception {
+    ThreadFactory factory = VirtualTaskExecutor.virtualThreadFactory();
+    Assume.assumeTrue("virtual threads aren't supported by this JVM", factory != null);
+
+    final AtomicReference<Thread> ran = new AtomicReference<>();
+    VirtualTaskExecutor executor = new VirtualTaskExecutor(2, null);
+    executor.execute(() -> ran.set(Thread.currentThread()));
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+    Thread thread = ran.get();
+    assertNotNull(thread);
+    assertTrue(thread.getName().startsWith(VirtualTaskExecutor.THREAD_NAME));
+    assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+  }
+
+  /**
+   * A thread that can't be started is rejected and its permit freed for the next task
+   */
+  @Test(timeout = 5000)
+  public void failedStart() throws Exception {
+    final AtomicInteger threads = new AtomicInteger();
+    VirtualTaskExecutor executor = new VirtualTaskExecutor(1, (r) -> {
+      if (threads.getAndIncrement() == 0) throw new OutOfMemoryError("unable to create native thread");
+      return new Thread(r);
+    });
+
+    try {
+      executor.execute(() -> {});
+      fail("expected a rejection");
+    } catch (RejectedExecutionException e) {
+      assertTrue(e.getCause() instanceof OutOfMemoryError);
+    }
+    assertEquals(0, executor.getActiveCount());
+
+    // the only permit was freed
+    final CountDownLatch ran = new CountDownLatch(1);
+    executor.execute(ran::countDown);
+    assertTrue(ran.await(1, TimeUnit.SECONDS));
+  }
+
+  /**
+   * A caller waiting for a permit when the executor shuts down is rejected rather than starting a thread
+   */
+  @Test(timeout = 5000)
+  public void shutdownWhileWaiting() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean ran = new AtomicBoolean();
+    final AtomicBoolean rejected = new AtomicBoolean();
+    VirtualTaskExecutor executor = new VirtualTaskExecutor(1, null);
+    executor.execute(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    Thread waiting = new Thread(() -> {
+      try {
+        executor.execute(() -> ran.set(true));
+      } catch (RejectedExecutionException e) {
+        rejected.set(true);
+      }
+    });
+    waiting.start();
+    while (waiting.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+
+    executor.shutdown();
+    release.countDown();
+    waiting.join(1000);
+
+    assertTrue(rejected.get());
+    assertFalse(ran.get());
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+  }
+}
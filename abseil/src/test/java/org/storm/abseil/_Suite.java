@@ -3,7 +3,24 @@ package org.storm.abseil;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.storm.abseil.cli.LoadGeneratorTest;
+import org.storm.abseil.remote.RemoteAbseilTest;
+import org.storm.abseil.supplier.ArrivalSupplierTest;
+import org.storm.abseil.supplier.PulseSupplierTest;
+import org.storm.abseil.utils.HistogramTest;
+import org.storm.abseil.utils.RateLimiterTest;
+import org.storm.abseil.utils.TimerWheelTest;
 
 @RunWith(Suite.class)
-@SuiteClasses({ AbseilShutdownTest.class, AbseilTimeoutTest.class, AbseilFinishTest.class })
+@SuiteClasses({ AbseilShutdownTest.class, AbseilTimeoutTest.class, AbseilFinishTest.class,
+    AbseilBatchTest.class, AbseilForkJoinTest.class,
+    AbseilResultsTest.class, AbseilSubscriberTest.class,
+    AbseilPriorityTest.class, AbseilTaskTimeoutTest.class,
+    AbseilRetryTest.class, AbseilCircuitBreakerTest.class, AbseilBulkheadTest.class,
+    AbseilMetricsTest.class, AbseilFlightRecorderTest.class, AbseilDrainTest.class,
+    AbseilPipelineTest.class, AbseilStateTest.class,
+    VirtualTaskExecutorTest.class, AdaptiveLimiterTest.class, FailuresTest.class,
+    HistogramTest.class, RateLimiterTest.class, TimerWheelTest.class,
+    ArrivalSupplierTest.class, PulseSupplierTest.class,
+    LoadGeneratorTest.class, RemoteAbseilTest.class })
 public class _Suite {}
@@ -0,0 +1,119 @@
+package org.storm.abseil.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.cli.LoadGenerator.Profile;
+import org.storm.abseil.supplier.ArrivalSupplier;
+
+/**
+ * Tests the arrival profile, option parsing and report of the {@link LoadGenerator}
+ */
+public class LoadGeneratorTest {
+  private static void assertInvalid(String rate, String ramp, String duration, String pulse) {
+    try {
+      LoadGenerator.profile(rate, ramp, duration, pulse);
+      fail("expected " + rate + " " + ramp + " " + duration + " " + pulse + " to be invalid");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void invalid() {
+    assertInvalid("0", "0", "60", null);
+    assertInvalid("100", "-1", "60", null);
+    assertInvalid("100", "0", "0", null);
+    assertInvalid("100", "0", "60", "1000,60");
+    assertInvalid("100", "0", "60", "1000,-1,5");
+    assertInvalid("100", "0", "60", "fast,60,5");
+
+    // pulses without a rate
+    assertInvalid("100", "0", "60", "0,60,5");
+    assertInvalid("100", "0", "60", "-10,60,5");
+  }
+
+  @Test
+  public void parse() {
+    Profile profile = LoadGenerator.profile("500", "30", "300", "2000,60,5");
+    assertEquals(500, profile._rate, 0);
+    assertEquals(30, profile._ramp, 0);
+    assertEquals(300, profile._duration, 0);
+    assertEquals(2000, profile._pulseRate, 0);
+    assertEquals(60, profile._pulseEvery, 0);
+    assertEquals(5, profile._pulseLength, 0);
+    assertEquals(330, profile.getTotal(), 0);
+
+    // no pulses, whatever their rate
+    profile = LoadGenerator.profile("500", "0", "60", "0,0,0");
+    assertEquals(0, profile._pulseEvery, 0);
+    assertEquals(500, profile.applyAsDouble(30), 0);
+  }
+
+  /**
+   * Pulses start with the steady state, at their period, and last their length
+   */
+  @Test
+  public void pulses() {
+    Profile profile = new Profile(100, 10, 60, 1000, 20, 5);
+    assertEquals(50, profile.applyAsDouble(5), 0);
+    assertEquals(1000, profile.applyAsDouble(10), 0);
+    assertEquals(1000, profile.applyAsDouble(14.9), 0);
+    assertEquals(100, profile.applyAsDouble(15), 0);
+    assertEquals(100, profile.applyAsDouble(29.9), 0);
+    assertEquals(1000, profile.applyAsDouble(30), 0);
+    assertEquals(100, profile.applyAsDouble(55), 0);
+  }
+
+  @Test
+  public void ramp() {
+    Profile profile = new Profile(100, 10, 60, 0, 0, 0);
+    assertEquals(0, profile.applyAsDouble(0), 0);
+    assertEquals(25, profile.applyAsDouble(2.5), 0);
+    assertEquals(50, profile.applyAsDouble(5), 0);
+    assertEquals(100, profile.applyAsDouble(10), 0);
+    assertEquals(70, profile.getTotal(), 0);
+  }
+
+  @Test(timeout = 5000)
+  public void report() {
+    Profile profile = new Profile(1000, 0, 1, 0, 0, 0);
+    ArrivalSupplier arrivals = new ArrivalSupplier(() -> () -> {}, profile, 10, TimeUnit.MILLISECONDS);
+    Monitor monitor = new Monitor();
+    Runnable task;
+    while ((task = arrivals.get()) != null) {
+      long startedAt = monitor.startTask();
+      task.run();
+      monitor.success();
+      monitor.stopTask(startedAt);
+    }
+    long issued = arrivals.getIssued();
+    assertTrue(issued > 0);
+
+    String[] lines = LoadGenerator.report(arrivals, monitor, profile, TimeUnit.SECONDS.toNanos(2)).split(
+        System.lineSeparator());
+    assertEquals(5, lines.length);
+    assertEquals(String.format("issued %d tasks in 2.0s, %.1f/s (steady state target 1000.0/s)", issued, issued
+        / 2.0), lines[0]);
+    assertTrue(lines[1], lines[1].startsWith("completed " + issued + ", failed 0, max arrival lag "));
+    assertEquals(String.format("%-10s%12s%12s%12s%12s%12s", "", "p50", "p90", "p99", "p99.9", "max"), lines[2]);
+    assertTrue(lines[3], lines[3].startsWith("response  ") && lines[3].endsWith("  from intended arrival"));
+    assertTrue(lines[4], lines[4].startsWith("service   ") && lines[4].endsWith("  from start"));
+  }
+
+  /**
+   * The steady state rate holds after the ramp up until the end
+   */
+  @Test
+  public void steady() {
+    Profile profile = new Profile(100, 10, 60, 0, 0, 0);
+    assertEquals(100, profile.applyAsDouble(10), 0);
+    assertEquals(100, profile.applyAsDouble(40), 0);
+    assertEquals(100, profile.applyAsDouble(70), 0);
+  }
+}
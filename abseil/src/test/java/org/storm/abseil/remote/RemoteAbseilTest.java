@@ -0,0 +1,297 @@
+package org.storm.abseil.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.storm.abseil.Abseil;
+import org.storm.abseil.Monitor;
+import org.storm.abseil.remote.Protocol.Connection;
+import org.storm.abseil.remote.Protocol.Done;
+import org.storm.abseil.remote.Protocol.Request;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests a {@link Coordinator} leasing tasks to {@link Worker} processes on localhost, and that neither end reads
+ * anything from an end without the secret or of a class it doesn't expect
+ */
+public class RemoteAbseilTest {
+  /**
+   * Serializable task that takes a few millis
+   */
+  static class SleepTask implements Runnable, Serializable {
+    private static final long serialVersionUID = -2755208421738826545L;
+
+    private final long        _millis;
+
+    SleepTask(long millis) {
+      _millis = millis;
+    }
+
+    @Override
+    public void run() {
+      Sleep.fixed(_millis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @return worker process connected to the coordinator
+   */
+  private static Process worker(Coordinator coordinator, int threads) throws Exception {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    ProcessBuilder worker = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class
+        .getName(), "localhost", String.valueOf(coordinator.getPort()), SleepTask.class.getName(), String.valueOf(
+            threads));
+    worker.environment().put(Worker.SECRET_ENV, coordinator.getSecret());
+    return worker.redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start();
+  }
+
+  /**
+   * Waits for the coordinator to reissue a lease
+   */
+  private static void awaitReissued(Coordinator coordinator) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (coordinator.getReissued() == 0 && System.nanoTime() < deadline) {
+      Sleep.fixed(10, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static Supplier<Runnable> tasks(int tasks, long millis) {
+    AtomicInteger supplied = new AtomicInteger();
+    return () -> (supplied.getAndIncrement() < tasks) ? new SleepTask(millis) : null;
+  }
+
+  /**
+   * A worker whose tasks aren't allowed reads no lease; the lease it was sent is reissued
+   */
+  @Test(timeout = 30000)
+  public void disallowedTask() throws Exception {
+    try (Coordinator coordinator = new Coordinator(tasks(10, 1), 0, 5, 30, TimeUnit.SECONDS)) {
+      Future<Monitor> future = coordinator.start();
+
+      Worker worker = new Worker("localhost", coordinator.getPort(), coordinator.getSecret(), "java.lang.String");
+      Monitor monitor = worker.process(Abseil.builder().build()).get(10, TimeUnit.SECONDS);
+      assertEquals(0, monitor.getTotal().longValue());
+
+      awaitReissued(coordinator);
+      assertEquals(1, coordinator.getReissued());
+      assertFalse(future.isDone());
+    }
+  }
+
+  /**
+   * A lease that loses every worker it is issued to is abandoned, its tasks counted as failed
+   */
+  @Test(timeout = 30000)
+  public void abandoned() throws Exception {
+    try (Coordinator coordinator = new Coordinator(tasks(4, 1), 0, 5, 30, TimeUnit.SECONDS)) {
+      Future<Monitor> future = coordinator.start();
+
+      while (!future.isDone()) {
+        Worker worker = new Worker("localhost", coordinator.getPort(), coordinator.getSecret(), "java.lang.String");
+        worker.process(Abseil.builder().build()).get(10, TimeUnit.SECONDS);
+      }
+
+      Monitor monitor = future.get();
+      assertEquals(4, monitor.getTotal().longValue());
+      assertEquals(4, monitor.getFail().longValue());
+      assertEquals(1, coordinator.getAbandoned());
+      assertEquals(Coordinator.MAX_ISSUES, coordinator.getLeases());
+    }
+  }
+
+  /**
+   * A supplier that throws fails processing, and workers are told to stop
+   */
+  @Test(timeout = 30000)
+  public void supplierFails() throws Exception {
+    AtomicInteger supplied = new AtomicInteger();
+    Supplier<Runnable> tasks = () -> {
+      if (supplied.incrementAndGet() > 3) throw new IllegalStateException("supplier failed");
+      return new SleepTask(1);
+    };
+
+    try (Coordinator coordinator = new Coordinator(tasks, 0, 5, 30, TimeUnit.SECONDS)) {
+      Future<Monitor> future = coordinator.start();
+
+      Worker worker = new Worker("localhost", coordinator.getPort(), coordinator.getSecret(), SleepTask.class
+          .getName());
+      assertEquals(0, worker.process(Abseil.builder().build()).get(10, TimeUnit.SECONDS).getTotal().longValue());
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail("expected processing to fail");
+      } catch (ExecutionException e) {
+        assertEquals("supplier failed", e.getCause().getMessage());
+      }
+    }
+  }
+
+  /**
+   * Tasks that don't serialize are counted as failed instead of being leased
+   */
+  @Test(timeout = 30000)
+  public void unserializableTask() throws Exception {
+    AtomicInteger supplied = new AtomicInteger();
+    Supplier<Runnable> tasks = () -> {
+      int task = supplied.incrementAndGet();
+      if (task > 10) return null;
+      return (task % 2 == 0) ? new SleepTask(1) : () -> {};
+    };
+
+    try (Coordinator coordinator = new Coordinator(tasks, 0, 5, 30, TimeUnit.SECONDS)) {
+      Future<Monitor> future = coordinator.start();
+
+      Worker worker = new Worker("localhost", coordinator.getPort(), coordinator.getSecret(), SleepTask.class
+          .getName());
+      worker.process(Abseil.builder().build()).get(10, TimeUnit.SECONDS);
+
+      Monitor monitor = future.get(10, TimeUnit.SECONDS);
+      assertEquals(10, monitor.getTotal().longValue());
+      assertEquals(5, monitor.getSuccess().longValue());
+      assertEquals(5, monitor.getFail().longValue());
+      assertEquals(0, coordinator.getReissued());
+    }
+  }
+
+  /**
+   * A worker that sends anything but the protocol messages is disconnected before it is read
+   */
+  @Test(timeout = 30000)
+  public void disallowedMessage() throws Exception {
+    try (Coordinator coordinator = new Coordinator(tasks(10, 1), 0, 5, 30, TimeUnit.SECONDS)) {
+      coordinator.start();
+
+      try (Connection connection = new Connection(new Socket("localhost", coordinator.getPort()), coordinator
+          .getSecret(), false, Protocol.fromCoordinator(SleepTask.class.getName()))) {
+        connection.write(new SleepTask(1));
+        connection.write(new Request());
+        connection.read();
+        fail("expected the coordinator to disconnect");
+      } catch (IOException e) {
+        // expected
+      }
+      assertEquals(0, coordinator.getLeases());
+    }
+  }
+
+  /**
+   * A lease is reported as a compact summary that merges to the same counts on the coordinator
+   */
+  @Test
+  public void summary() throws Exception {
+    Monitor monitor = new Monitor();
+    for (int i = 0; i < 10000; i++) {
+      long startedAt = monitor.startTask();
+      if (i % 100 == 0) {
+        monitor.fail(new IllegalStateException("failed " + i));
+      } else {
+        monitor.success();
+      }
+      monitor.stopTask(startedAt - (i % 10) * 1000000L);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(new Done(1, monitor.summarize()));
+    }
+    assertTrue(bytes.size() + " bytes", bytes.size() < 16 * 1024);
+
+    Done done;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      in.setObjectInputFilter(Protocol.FROM_WORKER);
+      done = (Done) in.readObject();
+    }
+
+    Monitor merged = new Monitor().merge(done._summary);
+    assertEquals(monitor.getTotal(), merged.getTotal());
+    assertEquals(monitor.getSuccess(), merged.getSuccess());
+    assertEquals(monitor.getFail(), merged.getFail());
+    assertEquals(monitor.getAggregate(), merged.getAggregate());
+    assertEquals(monitor.getP99(), merged.getP99());
+    assertEquals(monitor.getMax(), merged.getMax());
+    assertEquals(1, merged.getFails().size());
+    assertEquals(100, merged.getFails().iterator().next().getCount());
+  }
+
+  @Test(timeout = 60000)
+  public void workers() throws Exception {
+    final int tasks = 1000;
+    try (Coordinator coordinator = new Coordinator(tasks(tasks, 2), 0, 50, 30, TimeUnit.SECONDS)) {
+      Future<Monitor> future = coordinator.start();
+      Process first = worker(coordinator, 2), second = worker(coordinator, 2);
+
+      Monitor monitor = future.get(50, TimeUnit.SECONDS);
+      assertEquals(tasks, monitor.getTotal().longValue());
+      assertEquals(tasks, monitor.getSuccess().longValue());
+      assertEquals(tasks / 50, coordinator.getLeases());
+      assertEquals(0, coordinator.getReissued());
+
+      assertTrue(first.waitFor(10, TimeUnit.SECONDS));
+      assertTrue(second.waitFor(10, TimeUnit.SECONDS));
+      assertEquals(0, first.exitValue());
+      assertEquals(0, second.exitValue());
+    }
+  }
+
+  /**
+   * A worker killed while holding a lease; its lease is reissued to the next worker
+   */
+  @Test(timeout = 60000)
+  public void reissue() throws Exception {
+    final int tasks = 200;
+    try (Coordinator coordinator = new Coordinator(tasks(tasks, 10), 0, 20, 30, TimeUnit.SECONDS)) {
+      Future<Monitor> future = coordinator.start();
+
+      Process dying = worker(coordinator, 1);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+      while (coordinator.getLeases() == 0 && System.nanoTime() < deadline) {
+        Sleep.fixed(10, TimeUnit.MILLISECONDS);
+      }
+      dying.destroyForcibly().waitFor();
+
+      Process survivor = worker(coordinator, 4);
+      Monitor monitor = future.get(50, TimeUnit.SECONDS);
+      assertEquals(tasks, monitor.getSuccess().longValue());
+      assertEquals(tasks, monitor.getTotal().longValue());
+      assertTrue(coordinator.getReissued() >= 1);
+      assertTrue(survivor.waitFor(10, TimeUnit.SECONDS));
+    }
+  }
+
+  /**
+   * A worker without the secret is refused before either end reads an object
+   */
+  @Test(timeout = 30000)
+  public void wrongSecret() throws Exception {
+    try (Coordinator coordinator = new Coordinator(tasks(10, 1), 0, 5, 30, TimeUnit.SECONDS)) {
+      coordinator.start();
+
+      Worker worker = new Worker("localhost", coordinator.getPort(), "wrong", SleepTask.class.getName());
+      try {
+        CompletableFuture<Monitor> future = worker.process(Abseil.builder().build());
+        fail("expected the worker to be refused, processed " + future.get());
+      } catch (IOException e) {
+        // expected
+      }
+      assertEquals(0, coordinator.getLeases());
+    }
+  }
+}
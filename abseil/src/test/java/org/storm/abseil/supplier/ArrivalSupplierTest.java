@@ -0,0 +1,74 @@
+package org.storm.abseil.supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.storm.abseil.utils.Sleep;
+
+/**
+ * Tests that {@link ArrivalSupplier} hands out tasks at the rate of its profile and measures responses from the
+ * intended arrivals
+ */
+public class ArrivalSupplierTest {
+  /**
+   * Tasks are handed out at the rate for the duration, then no more
+   */
+  @Test(timeout = 5000)
+  public void rate() {
+    ArrivalSupplier arrivals = new ArrivalSupplier(() -> () -> {}, (seconds) -> 100, 500, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    int tasks = 0;
+    while (arrivals.get() != null) {
+      tasks++;
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(50, tasks);
+    assertEquals(50, arrivals.getIssued());
+    assertTrue("elapsed " + elapsed, elapsed >= 480 && elapsed < 1000);
+  }
+
+  /**
+   * A slow task delays the tasks behind it; their responses count the wait from the intended arrival
+   */
+  @Test(timeout = 5000)
+  public void corrected() {
+    ArrivalSupplier arrivals = new ArrivalSupplier(() -> () -> Sleep.fixed(50, TimeUnit.MILLISECONDS),
+        (seconds) -> 100, 200, TimeUnit.MILLISECONDS);
+
+    // a single worker; a closed loop would see 50ms each
+    Runnable task;
+    while ((task = arrivals.get()) != null) {
+      task.run();
+    }
+
+    assertTrue(arrivals.getMaxLag() >= TimeUnit.MILLISECONDS.toNanos(100));
+    assertTrue(arrivals.getResponses().getMax() >= TimeUnit.MILLISECONDS.toNanos(150));
+    assertEquals(arrivals.getIssued(), arrivals.getResponses().getCount());
+  }
+
+  /**
+   * Periods with no arrivals are skipped rather than ending the schedule
+   */
+  @Test(timeout = 5000)
+  public void idle() {
+    ArrivalSupplier arrivals = new ArrivalSupplier(() -> () -> {}, (seconds) -> (seconds < 0.2) ? 0 : 100, 300,
+        TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    assertNotNull(arrivals.get());
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("elapsed " + elapsed, elapsed >= 190);
+
+    int tasks = 1;
+    while (arrivals.get() != null) {
+      tasks++;
+    }
+    assertTrue("tasks " + tasks, tasks >= 9 && tasks <= 11);
+    assertNull(arrivals.get());
+  }
+}
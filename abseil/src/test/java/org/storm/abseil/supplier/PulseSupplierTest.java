@@ -0,0 +1,113 @@
+package org.storm.abseil.supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link PulseSupplier} bursts wait for each other, the gap and the max burst duration
+ */
+public class PulseSupplierTest {
+  /**
+   * @return supplier of empty tasks, null after the given number of tasks
+   */
+  private static Supplier<Runnable> tasks(int tasks) {
+    AtomicInteger supplied = new AtomicInteger();
+    return () -> (supplied.getAndIncrement() < tasks) ? () -> {} : null;
+  }
+
+  private static List<Runnable> burst(Supplier<Runnable> pulse, int burst) {
+    List<Runnable> tasks = new ArrayList<>();
+    for (int i = 0; i < burst; i++) {
+      Runnable task = pulse.get();
+      assertNotNull(task);
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
+  @Test(timeout = 5000)
+  public void waitsForBurst() throws Exception {
+    Supplier<Runnable> pulse = PulseSupplier.decorate(tasks(6), 3);
+    List<Runnable> first = burst(pulse, 3);
+
+    // completes the first burst later, the next get waits for it
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      executor.schedule(() -> first.forEach(Runnable::run), 100, TimeUnit.MILLISECONDS);
+      long start = System.nanoTime();
+      burst(pulse, 3);
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void gap() {
+    Supplier<Runnable> pulse = PulseSupplier.decorate(tasks(4), 2, 100, 0, TimeUnit.MILLISECONDS);
+    burst(pulse, 2).forEach(Runnable::run);
+
+    long start = System.nanoTime();
+    burst(pulse, 2).forEach(Runnable::run);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(95));
+    assertNull(pulse.get());
+  }
+
+  /**
+   * The end of the tasks part way through a burst is passed on as null, not wrapped in a task
+   */
+  @Test(timeout = 5000)
+  public void endOfTasks() {
+    Supplier<Runnable> pulse = PulseSupplier.decorate(tasks(5), 3);
+    burst(pulse, 3).forEach(Runnable::run);
+
+    List<Runnable> last = burst(pulse, 2);
+    assertNull(pulse.get());
+    last.forEach(Runnable::run);
+    assertNull(pulse.get());
+  }
+
+  /**
+   * The upstream supplier isn't asked again once it ran out
+   */
+  @Test(timeout = 5000)
+  public void exhausted() {
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<Runnable> tasks = tasks(2);
+    Supplier<Runnable> pulse = PulseSupplier.decorate(() -> {
+      calls.incrementAndGet();
+      return tasks.get();
+    }, 4);
+
+    burst(pulse, 2).forEach(Runnable::run);
+    for (int i = 0; i < 4; i++) {
+      assertNull(pulse.get());
+    }
+    assertEquals(3, calls.get());
+  }
+
+  @Test(timeout = 5000)
+  public void maxBurst() {
+    Supplier<Runnable> pulse = PulseSupplier.decorate(tasks(4), 2, 0, 100, TimeUnit.MILLISECONDS);
+
+    // never completed, the next burst starts once the burst ran for its max duration
+    long start = System.nanoTime();
+    burst(pulse, 2);
+    assertEquals(2, burst(pulse, 2).size());
+    long waited = System.nanoTime() - start;
+    assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(95));
+    assertTrue(waited < TimeUnit.SECONDS.toNanos(1));
+  }
+}
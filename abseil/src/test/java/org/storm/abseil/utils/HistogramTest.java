@@ -0,0 +1,135 @@
+package org.storm.abseil.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests the precision and merging of {@link Histogram} percentiles
+ */
+public class HistogramTest {
+
+  /**
+   * asserts the actual value is within the precision of the histogram from the expected value
+   */
+  void assertPrecise(long expected, long actual) {
+    assertTrue(expected + " ~ " + actual, Math.abs(expected - actual) <= Math.max(1, expected / 128));
+  }
+
+  @Test
+  public void buckets() {
+    for (long value : new long[] { 0, 1, 127, 128, 129, 255, 256, 1000, 123456789, Long.MAX_VALUE }) {
+      int index = Histogram.indexOf(value);
+      assertTrue(index >= 0 && index < Histogram.BUCKETS);
+      assertTrue(value <= Histogram.highestValue(index));
+      assertTrue(index == 0 || value > Histogram.highestValue(index - 1));
+    }
+  }
+
+  @Test
+  public void empty() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99.0));
+  }
+
+  /**
+   * Values beyond the highest share the top bucket and are reported as the max
+   */
+  @Test
+  public void highest() {
+    assertTrue(Histogram.BUCKETS * Long.BYTES <= 40 * 1024);
+    assertEquals(Histogram.BUCKETS - 1, Histogram.indexOf(Long.MAX_VALUE));
+
+    Histogram histogram = new Histogram();
+    histogram.record(1000);
+    histogram.record(Histogram.HIGHEST * 2);
+    assertPrecise(1000, histogram.getValueAtPercentile(50.0));
+    assertEquals(Histogram.HIGHEST * 2, histogram.getValueAtPercentile(100.0));
+  }
+
+  @Test
+  public void merge() {
+    Histogram fast = new Histogram(), slow = new Histogram();
+    for (int i = 1; i <= 900; i++) {
+      fast.record(1000);
+    }
+    for (int i = 1; i <= 100; i++) {
+      slow.record(1000000);
+    }
+
+    Histogram merged = new Histogram().merge(fast).merge(slow);
+    assertEquals(1000, merged.getCount());
+    assertPrecise(1000, merged.getValueAtPercentile(90.0));
+    assertPrecise(1000000, merged.getValueAtPercentile(90.1));
+    assertEquals(1000000, merged.getMax());
+  }
+
+  @Test
+  public void percentiles() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 100000; value++) {
+      histogram.record(value * 1000);
+    }
+
+    assertEquals(100000, histogram.getCount());
+    assertPrecise(50000000, histogram.getValueAtPercentile(50.0));
+    assertPrecise(99000000, histogram.getValueAtPercentile(99.0));
+    assertPrecise(99900000, histogram.getValueAtPercentile(99.9));
+    assertEquals(100000000, histogram.getValueAtPercentile(100.0));
+  }
+
+  /**
+   * A snapshot is serialized with only the buckets that counted a value and merges into a histogram like the original
+   */
+  @Test
+  public void serialized() throws Exception {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value % 10 * 1000000);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(histogram.snapshot());
+    }
+    assertTrue(bytes.size() + " bytes", bytes.size() < 1024);
+
+    Histogram.Snapshot snapshot;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      snapshot = (Histogram.Snapshot) in.readObject();
+    }
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(9000000, snapshot.getMax());
+
+    Histogram merged = new Histogram().merge(snapshot);
+    assertEquals(1000, merged.getCount());
+    assertEquals(histogram.getValueAtPercentile(50.0), merged.getValueAtPercentile(50.0));
+    assertEquals(histogram.getValueAtPercentile(99.0), merged.getValueAtPercentile(99.0));
+  }
+
+  /**
+   * A snapshot keeps the counts it was taken with while the histogram records on
+   */
+  @Test
+  public void snapshot() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 100; value++) {
+      histogram.record(value);
+    }
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    histogram.record(1000000);
+    assertEquals(100, snapshot.getCount());
+    assertEquals(100, snapshot.getMax());
+    assertEquals(50, snapshot.getValueAtPercentile(50.0));
+    assertEquals(100, snapshot.getValueAtPercentile(100.0));
+    assertEquals(1000000, histogram.getValueAtPercentile(100.0));
+  }
+}
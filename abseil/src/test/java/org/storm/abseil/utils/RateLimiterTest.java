@@ -0,0 +1,87 @@
+package org.storm.abseil.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the pacing of {@link RateLimiter} permits
+ */
+public class RateLimiterTest {
+  /**
+   * @return millis taken to acquire the permits
+   */
+  private static long acquire(RateLimiter limiter, int permits) {
+    long start = System.nanoTime();
+    for (int i = 0; i < permits; i++) {
+      limiter.acquire();
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  /**
+   * Never faster than the rate; slower only by scheduling noise
+   */
+  @Test(timeout = 5000)
+  public void rate() {
+    RateLimiter limiter = new RateLimiter(20_000, 16);
+    acquire(limiter, 1_000); // warm up
+
+    long millis = acquire(limiter, 10_000);
+    assertTrue("too fast " + millis, millis >= 500 * 0.95);
+    assertTrue("too slow " + millis, millis < 500 * 1.5);
+  }
+
+  @Test(timeout = 5000)
+  public void setRate() {
+    RateLimiter limiter = new RateLimiter(1_000, 1);
+    acquire(limiter, 50);
+
+    limiter.setRate(5_000);
+    assertEquals(5_000, limiter.getRate(), 1);
+
+    long millis = acquire(limiter, 1_000);
+    assertTrue("too fast " + millis, millis >= 200 * 0.95);
+    assertTrue("too slow " + millis, millis < 200 * 1.5);
+  }
+
+  /**
+   * An idle limiter hands out the burst at once, then paces
+   */
+  @Test(timeout = 5000)
+  public void burst() throws Exception {
+    RateLimiter limiter = new RateLimiter(10, 5);
+    Thread.sleep(10);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      limiter.acquire();
+    }
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 20);
+
+    limiter.acquire();
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+  }
+
+  @Test(timeout = 5000)
+  public void interrupted() {
+    RateLimiter limiter = new RateLimiter(1, 1);
+    assertTrue(limiter.acquire());
+
+    Thread.currentThread().interrupt();
+    try {
+      assertFalse(limiter.acquire());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidRate() {
+    new RateLimiter(0, 1);
+  }
+}
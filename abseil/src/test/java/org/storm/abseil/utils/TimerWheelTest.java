@@ -0,0 +1,96 @@
+package org.storm.abseil.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.storm.abseil.utils.TimerWheel.Timeout;
+
+/**
+ * Tests the expiration and cancellation of {@link TimerWheel} timeouts
+ */
+public class TimerWheelTest {
+  TimerWheel _wheel = new TimerWheel("TimerWheelTest", 1, TimeUnit.MILLISECONDS, 8);
+
+  /**
+   * Timeouts further out than a full rotation of the wheel should wait out their remaining rounds
+   */
+  @Test(timeout = 5000)
+  public void expires() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long start = System.nanoTime();
+
+    Timeout timeout = _wheel.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+    latch.await();
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("expired early " + elapsed, elapsed >= 50);
+    assertTrue("expired late " + elapsed, elapsed < 1000);
+    assertTrue(timeout.isExpired());
+    assertEquals(0, _wheel.getPending());
+  }
+
+  /**
+   * Timeouts expire in the order of their deadlines, whichever order they were scheduled in
+   */
+  @Test(timeout = 5000)
+  public void ordered() throws Exception {
+    final List<Integer> expired = new CopyOnWriteArrayList<>();
+    final CountDownLatch latch = new CountDownLatch(4);
+
+    for (int delay : new int[] { 40, 5, 25, 15 }) {
+      _wheel.schedule(() -> {
+        expired.add(delay);
+        latch.countDown();
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+    latch.await();
+
+    assertEquals(List.of(5, 15, 25, 40), expired);
+    assertEquals(0, _wheel.getPending());
+  }
+
+  /**
+   * A timeout scheduled while the wheel sleeps toward a far off timeout wakes it
+   */
+  @Test(timeout = 5000)
+  public void wakes() throws Exception {
+    TimerWheel wheel = new TimerWheel("TimerWheelTest - wakes", 1, TimeUnit.MILLISECONDS, 4096);
+    Timeout far = wheel.schedule(() -> {}, 1, TimeUnit.HOURS);
+    Thread.sleep(20);
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long start = System.nanoTime();
+    wheel.schedule(latch::countDown, 10, TimeUnit.MILLISECONDS);
+    assertTrue("slept through", latch.await(2, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 10);
+
+    assertTrue(far.cancel());
+    while (wheel.getPending() > 0) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void cancel() throws Exception {
+    final AtomicInteger fired = new AtomicInteger();
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    Timeout cancelled = _wheel.schedule(fired::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+    _wheel.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.cancel());
+
+    latch.await();
+    assertEquals(0, fired.get());
+    assertTrue(cancelled.isCancelled());
+    assertFalse(cancelled.isExpired());
+  }
+}